@@ -0,0 +1,46 @@
+// EjecutarBenchmarks.java
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Corre la suite completa con 1, 2, 4, ... hasta N hilos, con el perfilador de GC
+ * (tasa de asignación) activado, y deja un JSON por cantidad de hilos.
+ * Uso: java -jar target/benchmarks.jar [maxHilos=procesadores] [regexBenchmarks=.*]
+ * Para una corrida puntual también se puede usar directamente org.openjdk.jmh.Main
+ * (java -cp target/benchmarks.jar org.openjdk.jmh.Main -t 4 -prof gc MatrizBenchmark).
+ */
+public class EjecutarBenchmarks {
+
+    public static void main(String[] args) throws RunnerException {
+        int maxHilos = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        String incluir = args.length > 1 ? args[1] : "benchmarks\\..*Benchmark";
+
+        for (int hilos : cantidadesDeHilos(maxHilos)) {
+            Options opciones = new OptionsBuilder()
+                    .include(incluir)
+                    .threads(hilos)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("resultados-" + hilos + "-hilos.json")
+                    .build();
+            new Runner(opciones).run();
+        }
+    }
+
+    /** Potencias de dos hasta maxHilos, más maxHilos si no es potencia de dos. */
+    private static List<Integer> cantidadesDeHilos(int maxHilos) {
+        List<Integer> cantidades = new ArrayList<>();
+        for (int h = 1; h < maxHilos; h *= 2) cantidades.add(h);
+        cantidades.add(Math.max(1, maxHilos));
+        return cantidades;
+    }
+}
@@ -0,0 +1,88 @@
+// MatrizBenchmark.java
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+/**
+ * Camino caliente de MatrizCasilleros: ocupar un casillero aleatorio y liberarlo,
+ * con la matriz precargada a distintos niveles de ocupación, y el recorrido de getEstadisticas.
+ * La matriz es compartida por todos los hilos del benchmark (Scope.Benchmark), como en la simulación.
+ * En ZONAS hay una zona por hilo del benchmark y cada hilo ocupa desde la suya, como un preparador.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatrizBenchmark {
+
+    /** Filas x columnas. 10x20 es la configuración de Main. */
+    @Param({"10x20", "100x100", "500x500"})
+    public String tamano;
+
+    /** Fracción de casilleros ocupados antes de medir. */
+    @Param({"0.0", "0.5", "0.9", "0.99"})
+    public double ocupacion;
+
+    @Param({"BLOQUEO_GLOBAL", "FRANJAS", "ZONAS"})
+    public String modo;
+
+    @Param({"OBJETOS", "COMPACTO"})
+    public String almacen;
+
+    private Object matriz;
+
+    /** Zona propia de cada hilo del benchmark (-1 fuera de ZONAS). */
+    @State(Scope.Thread)
+    public static class Zona {
+        int zona;
+
+        @Setup(Level.Trial)
+        public void asignar(MatrizBenchmark benchmark) {
+            zona = Puente.asignarZona(benchmark.matriz);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void preparar(BenchmarkParams parametros) {
+        String[] dimensiones = tamano.split("x");
+        int filas = Integer.parseInt(dimensiones[0]);
+        int columnas = Integer.parseInt(dimensiones[1]);
+        matriz = Puente.nuevaMatriz(filas, columnas, modo, almacen, parametros.getThreads());
+
+        // Cada ocupar/liberar medido deja la ocupación igual, así que alcanza con precargar una vez
+        int aOcupar = (int) (filas * (long) columnas * ocupacion);
+        for (int i = 0; i < aOcupar; i++) {
+            if (Puente.ocuparCasilleroAleatorio(matriz) < 0) break;
+        }
+    }
+
+    /** Ocupa un casillero aleatorio y lo libera. Devuelve el ID para que no se elimine como código muerto. */
+    @Benchmark
+    public int ocuparYLiberar(Zona zona) {
+        int id = Puente.ocuparCasilleroAleatorio(matriz, zona.zona);
+        if (id >= 0) Puente.liberarCasillero(matriz, id);
+        return id;
+    }
+
+    /** Recorrido completo para contar estados (lo usa el logger en cada tick). */
+    @Benchmark
+    public String estadisticas() {
+        return Puente.getEstadisticas(matriz);
+    }
+}
@@ -0,0 +1,202 @@
+// Puente.java
+package benchmarks;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Acceso a las clases de la simulación, que están en el paquete por defecto y por lo
+ * tanto no se pueden importar desde un paquete con nombre (JMH exige uno).
+ * Los MethodHandle son static final con tipos borrados a Object, así que el JIT los
+ * trata como constantes y las llamadas con invokeExact se inlinean igual que una directa.
+ */
+final class Puente {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    private static final Class<?> MATRIZ = clase("MatrizCasilleros");
+    private static final Class<?> REGISTRO = clase("RegistroPedidos");
+    private static final Class<?> PEDIDO = clase("Pedido");
+    private static final Class<?> MODO = clase("ModoConcurrencia");
+    private static final Class<?> TIPO_ALMACEN = clase("TipoAlmacenamiento");
+    // Consola de las matrices creadas acá: el anuncio de creación no se mezcla con la salida de JMH
+    private static final PrintStream SALIDA_NULA = new PrintStream(OutputStream.nullOutputStream());
+
+    // (int, int, Object, Object) -> Object
+    private static final MethodHandle NUEVA_MATRIZ = constructor(MATRIZ, int.class, int.class, MODO, TIPO_ALMACEN);
+    // (int, int, Object, Object, int, Object) -> Object
+    private static final MethodHandle NUEVA_MATRIZ_ZONAS = constructor(MATRIZ, int.class, int.class, MODO, TIPO_ALMACEN, int.class, PrintStream.class);
+    // (Object) -> int
+    private static final MethodHandle OCUPAR_ALEATORIO = metodo(MATRIZ, "ocuparCasilleroAleatorio", int.class);
+    private static final MethodHandle ASIGNAR_ZONA = metodo(MATRIZ, "asignarZona", int.class);
+    // (Object, int) -> int
+    private static final MethodHandle OCUPAR_EN_ZONA = metodo(MATRIZ, "ocuparCasilleroAleatorio", int.class, int.class);
+    // (Object, int) -> void
+    private static final MethodHandle LIBERAR = metodo(MATRIZ, "liberarCasillero", void.class, int.class);
+    // (Object) -> Object (devuelve un String)
+    private static final MethodHandle ESTADISTICAS = metodo(MATRIZ, "getEstadisticas", String.class);
+
+    // () -> Object
+    private static final MethodHandle NUEVO_REGISTRO = constructor(REGISTRO);
+    private static final MethodHandle NUEVO_PEDIDO = constructor(PEDIDO);
+    // (Object) -> Object
+    private static final MethodHandle TOMAR_PREPARACION = metodo(REGISTRO, "tomarDePreparacionAleatorio", PEDIDO);
+    private static final MethodHandle TOMAR_TRANSITO = metodo(REGISTRO, "tomarDeTransitoAleatorio", PEDIDO);
+    private static final MethodHandle TOMAR_ENTREGADOS = metodo(REGISTRO, "tomarDeEntregadosAleatorio", PEDIDO);
+    // (Object, Object) -> void
+    private static final MethodHandle AGREGAR_PREPARACION = metodo(REGISTRO, "agregarAPreparacion", void.class, PEDIDO);
+    private static final MethodHandle AGREGAR_TRANSITO = metodo(REGISTRO, "agregarATransito", void.class, PEDIDO);
+    private static final MethodHandle AGREGAR_ENTREGADOS = metodo(REGISTRO, "agregarAEntregados", void.class, PEDIDO);
+
+    private Puente() {}
+
+    // --- MatrizCasilleros ---
+
+    static Object nuevaMatriz(int filas, int columnas, String modo, String tipoAlmacen) {
+        try {
+            return (Object) NUEVA_MATRIZ.invokeExact(filas, columnas, valorEnum(MODO, modo), valorEnum(TIPO_ALMACEN, tipoAlmacen));
+        } catch (Throwable t) {
+            throw propagar(t);
+        }
+    }
+
+    /** @param zonas Cantidad de zonas en modo ZONAS (se ignora en los otros modos). */
+    static Object nuevaMatriz(int filas, int columnas, String modo, String tipoAlmacen, int zonas) {
+        try {
+            return (Object) NUEVA_MATRIZ_ZONAS.invokeExact(filas, columnas, valorEnum(MODO, modo), valorEnum(TIPO_ALMACEN, tipoAlmacen), zonas,
+                    (Object) SALIDA_NULA);
+        } catch (Throwable t) {
+            throw propagar(t);
+        }
+    }
+
+    static int ocuparCasilleroAleatorio(Object matriz) {
+        try {
+            return (int) OCUPAR_ALEATORIO.invokeExact(matriz);
+        } catch (Throwable t) {
+            throw propagar(t);
+        }
+    }
+
+    /** @param zona Zona propia de asignarZona, o -1 para ninguna. */
+    static int ocuparCasilleroAleatorio(Object matriz, int zona) {
+        try {
+            return (int) OCUPAR_EN_ZONA.invokeExact(matriz, zona);
+        } catch (Throwable t) {
+            throw propagar(t);
+        }
+    }
+
+    static int asignarZona(Object matriz) {
+        try {
+            return (int) ASIGNAR_ZONA.invokeExact(matriz);
+        } catch (Throwable t) {
+            throw propagar(t);
+        }
+    }
+
+    static void liberarCasillero(Object matriz, int casilleroId) {
+        try {
+            LIBERAR.invokeExact(matriz, casilleroId);
+        } catch (Throwable t) {
+            throw propagar(t);
+        }
+    }
+
+    static String getEstadisticas(Object matriz) {
+        try {
+            return (String) (Object) ESTADISTICAS.invokeExact(matriz);
+        } catch (Throwable t) {
+            throw propagar(t);
+        }
+    }
+
+    // --- RegistroPedidos ---
+
+    static Object nuevoRegistro() {
+        try {
+            return (Object) NUEVO_REGISTRO.invokeExact();
+        } catch (Throwable t) {
+            throw propagar(t);
+        }
+    }
+
+    static Object nuevoPedido() {
+        try {
+            return (Object) NUEVO_PEDIDO.invokeExact();
+        } catch (Throwable t) {
+            throw propagar(t);
+        }
+    }
+
+    /** @param etapa PREPARACION, TRANSITO o ENTREGADOS. */
+    static Object tomarAleatorio(Object registro, Etapa etapa) {
+        try {
+            switch (etapa) {
+                case PREPARACION: return (Object) TOMAR_PREPARACION.invokeExact(registro);
+                case TRANSITO: return (Object) TOMAR_TRANSITO.invokeExact(registro);
+                default: return (Object) TOMAR_ENTREGADOS.invokeExact(registro);
+            }
+        } catch (Throwable t) {
+            throw propagar(t);
+        }
+    }
+
+    static void agregar(Object registro, Etapa etapa, Object pedido) {
+        try {
+            switch (etapa) {
+                case PREPARACION: AGREGAR_PREPARACION.invokeExact(registro, pedido); break;
+                case TRANSITO: AGREGAR_TRANSITO.invokeExact(registro, pedido); break;
+                default: AGREGAR_ENTREGADOS.invokeExact(registro, pedido); break;
+            }
+        } catch (Throwable t) {
+            throw propagar(t);
+        }
+    }
+
+    /** Etapas del registro que tienen toma aleatoria. */
+    enum Etapa { PREPARACION, TRANSITO, ENTREGADOS }
+
+    // --- Resolución ---
+
+    private static Class<?> clase(String nombre) {
+        try {
+            return Class.forName(nombre);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("No se encontró la clase " + nombre + " (¿se compiló ../Codigo?)", e);
+        }
+    }
+
+    private static MethodHandle constructor(Class<?> clase, Class<?>... parametros) {
+        try {
+            MethodHandle mh = LOOKUP.findConstructor(clase, MethodType.methodType(void.class, parametros));
+            return mh.asType(mh.type().erase());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Constructor no encontrado en " + clase.getName(), e);
+        }
+    }
+
+    private static MethodHandle metodo(Class<?> clase, String nombre, Class<?> retorno, Class<?>... parametros) {
+        try {
+            MethodHandle mh = LOOKUP.findVirtual(clase, nombre, MethodType.methodType(retorno, parametros));
+            return mh.asType(mh.type().erase());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Método " + nombre + " no encontrado en " + clase.getName(), e);
+        }
+    }
+
+    private static Object valorEnum(Class<?> clase, String nombre) {
+        for (Object constante : clase.getEnumConstants()) {
+            if (((Enum<?>) constante).name().equals(nombre)) return constante;
+        }
+        throw new IllegalArgumentException(nombre + " no es un valor de " + clase.getName());
+    }
+
+    private static RuntimeException propagar(Throwable t) {
+        if (t instanceof RuntimeException) return (RuntimeException) t;
+        if (t instanceof Error) throw (Error) t;
+        return new IllegalStateException(t);
+    }
+}
@@ -0,0 +1,61 @@
+// RegistroBenchmark.java
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Camino caliente de RegistroPedidos: tomar un pedido aleatorio de una etapa y volver a
+ * agregarlo, con la etapa precargada a distintas profundidades. Tomar y reponer mantiene
+ * la profundidad constante durante la medición.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegistroBenchmark {
+
+    /** Pedidos en la etapa antes de medir. */
+    @Param({"1", "100", "10000", "100000"})
+    public int profundidad;
+
+    @Param({"PREPARACION", "TRANSITO", "ENTREGADOS"})
+    public String etapa;
+
+    private Puente.Etapa etapaElegida;
+    private Object registro;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        etapaElegida = Puente.Etapa.valueOf(etapa);
+        registro = Puente.nuevoRegistro();
+        for (int i = 0; i < profundidad; i++) {
+            Puente.agregar(registro, etapaElegida, Puente.nuevoPedido());
+        }
+    }
+
+    /**
+     * Toma aleatoria y reposición. Con más hilos que profundidad la toma puede volver vacía;
+     * eso también se mide, porque es lo que ve un trabajador con la etapa vacía.
+     */
+    @Benchmark
+    public Object tomarYReponer() {
+        Object pedido = Puente.tomarAleatorio(registro, etapaElegida);
+        if (pedido != null) Puente.agregar(registro, etapaElegida, pedido);
+        return pedido;
+    }
+}
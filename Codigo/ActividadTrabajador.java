@@ -0,0 +1,56 @@
+// ActividadTrabajador.java
+
+/**
+ * Actividad de un trabajador para monitoreo: pedidos procesados, tiempo ocupado y estado actual.
+ * La escribe solo el hilo del trabajador (campos volatile de un único escritor, sin locks ni CAS)
+ * y la leen los exportadores de métricas.
+ */
+public class ActividadTrabajador {
+    public static final int ESPERANDO = 0;
+    public static final int TRABAJANDO = 1;
+    public static final int TERMINADO = 2;
+
+    private final String rol;
+    private volatile String nombre;
+    private volatile int estado = ESPERANDO;
+    private volatile long procesados;
+    private volatile long nanosOcupado;
+    private long inicioTrabajo; // Solo lo usa el hilo del trabajador
+
+    ActividadTrabajador(String rol) {
+        this.rol = rol;
+        this.nombre = rol;
+    }
+
+    /** Al arrancar el hilo: toma su nombre para identificar al trabajador en las métricas. */
+    public void iniciar(String nombreHilo) {
+        this.nombre = nombreHilo;
+    }
+
+    /** El trabajador obtuvo trabajo (un pedido, un lote o un casillero) y empieza a procesarlo. */
+    public void inicioTrabajo() {
+        inicioTrabajo = System.nanoTime();
+        estado = TRABAJANDO;
+    }
+
+    /**
+     * Terminó de procesar, incluida su demora.
+     * @param cantidad Pedidos procesados en este trabajo.
+     */
+    public void finTrabajo(int cantidad) {
+        // Un único escritor (el trabajador): los += sobre volatile no compiten entre sí
+        nanosOcupado += System.nanoTime() - inicioTrabajo;
+        procesados += cantidad;
+        estado = ESPERANDO;
+    }
+
+    public void terminar() {
+        estado = TERMINADO;
+    }
+
+    public String getRol() { return rol; }
+    public String getNombre() { return nombre; }
+    public int getEstado() { return estado; }
+    public long getProcesados() { return procesados; }
+    public long getNanosOcupado() { return nanosOcupado; }
+}
@@ -0,0 +1,28 @@
+// ActividadTrabajadores.java
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Conjunto de ActividadTrabajador de una simulación. Los trabajadores se dan de alta una vez
+ * al construirse; leer la lista (desde los exportadores) no toma locks.
+ */
+public class ActividadTrabajadores {
+    private final List<ActividadTrabajador> trabajadores = new CopyOnWriteArrayList<>();
+
+    /**
+     * Da de alta un trabajador.
+     * @param rol Rol del trabajador ("preparador", "despachador", etc.).
+     * @return Su registro de actividad, que el trabajador actualiza.
+     */
+    public ActividadTrabajador nuevo(String rol) {
+        ActividadTrabajador actividad = new ActividadTrabajador(rol);
+        trabajadores.add(actividad);
+        return actividad;
+    }
+
+    /** Vista de solo lectura; se puede recorrer mientras se agregan trabajadores. */
+    public List<ActividadTrabajador> getTrabajadores() {
+        return Collections.unmodifiableList(trabajadores);
+    }
+}
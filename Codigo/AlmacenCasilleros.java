@@ -0,0 +1,23 @@
+// AlmacenCasilleros.java
+/**
+ * Almacenamiento del estado y contador de uso de los casilleros, indexado por ID lineal
+ * (fila * numCols + columna). Las transiciones son atómicas (CAS): devuelven false si el
+ * casillero no estaba en el estado de origen. MatrizCasilleros valida los IDs antes de llamar.
+ */
+interface AlmacenCasilleros {
+    EstadoCasillero getEstado(int id);
+    int getContadorUso(int id);
+
+    /** VACIO -> OCUPADO, incrementando el contador de uso. */
+    boolean ocupar(int id);
+    /** OCUPADO -> VACIO. */
+    boolean liberar(int id);
+    /** OCUPADO -> FUERA_DE_SERVICIO. */
+    boolean ponerFueraDeServicio(int id);
+
+    /**
+     * Estimación de los bytes de heap que ocupa este almacenamiento
+     * (asumiendo compressed oops, cabecera de objeto de 12 bytes y alineación a 8).
+     */
+    long getBytesEstimados();
+}
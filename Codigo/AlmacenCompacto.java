@@ -0,0 +1,62 @@
+// AlmacenCompacto.java
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Almacenamiento compacto (struct-of-arrays): un int por casillero en un AtomicIntegerArray.
+ * Los 2 bits bajos guardan el ordinal de EstadoCasillero y los 30 restantes el contador de uso,
+ * así ocupar (cambio de estado + incremento del contador) es un único CAS.
+ * Ocupa 4 bytes por casillero, sin objetos ni punteros por celda.
+ */
+class AlmacenCompacto implements AlmacenCasilleros {
+    private static final int BITS_ESTADO = 2;
+    private static final int MASCARA_ESTADO = (1 << BITS_ESTADO) - 1;
+    private static final int MAX_USOS = (1 << (32 - BITS_ESTADO)) - 1;
+    private static final EstadoCasillero[] ESTADOS = EstadoCasillero.values();
+
+    private static final int VACIO = EstadoCasillero.VACIO.ordinal();
+    private static final int OCUPADO = EstadoCasillero.OCUPADO.ordinal();
+    private static final int FUERA_DE_SERVICIO = EstadoCasillero.FUERA_DE_SERVICIO.ordinal();
+
+    private final AtomicIntegerArray celdas;
+
+    AlmacenCompacto(int totalCasilleros) {
+        // Todas las celdas arrancan en 0 = VACIO con 0 usos
+        this.celdas = new AtomicIntegerArray(totalCasilleros);
+    }
+
+    private static int estadoDe(int celda) { return celda & MASCARA_ESTADO; }
+    private static int usosDe(int celda) { return celda >>> BITS_ESTADO; }
+    private static int empaquetar(int usos, int estado) { return (usos << BITS_ESTADO) | estado; }
+
+    @Override public EstadoCasillero getEstado(int id) { return ESTADOS[estadoDe(celdas.get(id))]; }
+    @Override public int getContadorUso(int id) { return usosDe(celdas.get(id)); }
+
+    @Override
+    public boolean ocupar(int id) {
+        while (true) {
+            int actual = celdas.get(id);
+            if (estadoDe(actual) != VACIO) return false;
+            // El contador satura en MAX_USOS en lugar de desbordar sobre el estado
+            int usos = Math.min(usosDe(actual) + 1, MAX_USOS);
+            if (celdas.compareAndSet(id, actual, empaquetar(usos, OCUPADO))) return true;
+        }
+    }
+
+    @Override public boolean liberar(int id) { return transicion(id, OCUPADO, VACIO); }
+    @Override public boolean ponerFueraDeServicio(int id) { return transicion(id, OCUPADO, FUERA_DE_SERVICIO); }
+
+    /** Cambia el estado conservando el contador de uso. */
+    private boolean transicion(int id, int desde, int hacia) {
+        while (true) {
+            int actual = celdas.get(id);
+            if (estadoDe(actual) != desde) return false;
+            if (celdas.compareAndSet(id, actual, empaquetar(usosDe(actual), hacia))) return true;
+        }
+    }
+
+    @Override
+    public long getBytesEstimados() {
+        // AtomicIntegerArray (cabecera 16 con ref) + int[] interno (cabecera 16 + 4 por celda)
+        return 16 + 16 + 4L * celdas.length();
+    }
+}
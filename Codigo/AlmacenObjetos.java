@@ -0,0 +1,40 @@
+// AlmacenObjetos.java
+/**
+ * Almacenamiento original: un objeto Casillero por celda en una matriz 2D.
+ */
+class AlmacenObjetos implements AlmacenCasilleros {
+    // Casillero: cabecera 12 + id 4 + ref estado 4 + ref contador 4 = 24 bytes
+    // AtomicInteger: cabecera 12 + value 4 = 16 bytes; más 4 bytes de referencia en la fila
+    private static final long BYTES_POR_CASILLERO = 24 + 16 + 4;
+
+    private final Casillero[][] casilleros;
+    private final int numCols;
+
+    AlmacenObjetos(int numRows, int numCols) {
+        this.numCols = numCols;
+        this.casilleros = new Casillero[numRows][numCols];
+        // Inicializar la matriz 2D con casilleros y IDs lineales
+        for (int r = 0; r < numRows; r++) {
+            for (int c = 0; c < numCols; c++) {
+                casilleros[r][c] = new Casillero(r * numCols + c);
+            }
+        }
+    }
+
+    private Casillero get(int id) {
+        return casilleros[id / numCols][id % numCols];
+    }
+
+    @Override public EstadoCasillero getEstado(int id) { return get(id).getEstado(); }
+    @Override public int getContadorUso(int id) { return get(id).getContadorUso(); }
+    @Override public boolean ocupar(int id) { return get(id).ocupar(); }
+    @Override public boolean liberar(int id) { return get(id).liberar(); }
+    @Override public boolean ponerFueraDeServicio(int id) { return get(id).ponerFueraDeServicio(); }
+
+    @Override
+    public long getBytesEstimados() {
+        long filas = casilleros.length;
+        // Arreglo externo + un arreglo de referencias por fila (cabecera 16) + objetos
+        return 16 + filas * 4 + filas * 16 + filas * numCols * BYTES_POR_CASILLERO;
+    }
+}
@@ -0,0 +1,560 @@
+// AnalizadorDiario.java
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Análisis posterior de una corrida a partir de su DiarioTransiciones, sin parsear el log:
+ * throughput de cada etapa por ventana de tiempo, percentiles de estadía por etapa y de
+ * extremo a extremo, uso de los casilleros por fila y columna de la matriz y fallidos por
+ * etapa.
+ *
+ * El archivo se parte en trozos de TAM_TROZO bytes que se recorren en paralelo, cada uno
+ * mapeado en memoria por separado (así un diario de varios GiB no pasa por el heap ni choca
+ * con el límite de 2 GiB de un mapeo). Cada trozo deja resultados parciales y lo que no pudo
+ * cerrar solo: los pedidos y casilleros que siguen abiertos al final del trozo y los que
+ * aparecen sin su comienzo. Después se combinan los trozos en orden, emparejando esos bordes;
+ * en memoria quedan solo los pedidos en curso, nunca la traza entera.
+ *
+ * Uso: java AnalizadorDiario diario.bin [--hilos=N] [--ventana=ms] [--csv=archivo]
+ */
+public class AnalizadorDiario {
+    // Múltiplo de TAM_SEGMENTO (y de TAM_REGISTRO): ningún registro queda partido entre trozos
+    static final long TAM_TROZO = 64L * DiarioTransiciones.TAM_SEGMENTO;
+    private static final int MAX_ETAPAS = 32;
+    private static final long VENTANA_MS = 1000;
+    // Hasta este tamaño se dibuja la matriz celda por celda; si no, solo filas y columnas extremas
+    private static final int MAX_FILAS_MAPA = 50;
+    private static final int MAX_COLUMNAS_MAPA = 40;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String archivo = null;
+        int hilos = Runtime.getRuntime().availableProcessors();
+        long ventanaMs = VENTANA_MS;
+        String archivoCsv = null;
+        for (String arg : args) {
+            if (arg.startsWith("--hilos=")) hilos = Integer.parseInt(arg.substring("--hilos=".length()));
+            else if (arg.startsWith("--ventana=")) ventanaMs = Long.parseLong(arg.substring("--ventana=".length()));
+            else if (arg.startsWith("--csv=")) archivoCsv = arg.substring("--csv=".length());
+            else if (archivo == null && !arg.startsWith("--")) archivo = arg;
+            else {
+                System.err.println("Argumento no reconocido: " + arg);
+                return;
+            }
+        }
+        if (archivo == null || hilos <= 0 || ventanaMs <= 0) {
+            System.err.println("Uso: java AnalizadorDiario diario.bin [--hilos=N] [--ventana=ms] [--csv=archivo]");
+            return;
+        }
+
+        long inicio = System.nanoTime();
+        Informe informe;
+        try {
+            informe = analizar(Path.of(archivo), hilos, ventanaMs);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return;
+        }
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        informe.imprimir();
+        System.out.printf(Locale.ROOT, "Analizados %d registros (%.1f MiB) en %.2f s con %d hilos.%n",
+                informe.registros, informe.bytes / (1024.0 * 1024), segundos, hilos);
+        if (archivoCsv != null) {
+            informe.escribirCsv(archivoCsv);
+            System.out.println("Throughput por ventana guardado en: " + archivoCsv);
+        }
+    }
+
+    /**
+     * Recorre el diario en paralelo y combina los trozos.
+     * @throws IllegalArgumentException Si el archivo no es un diario de transiciones.
+     */
+    public static Informe analizar(Path archivo, int hilos, long ventanaMs) throws IOException, InterruptedException {
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            long tamano = canal.size();
+            ByteBuffer encabezado = ByteBuffer.allocate(DiarioTransiciones.TAM_ENCABEZADO);
+            while (encabezado.hasRemaining() && canal.read(encabezado, encabezado.position()) > 0) { }
+            if (encabezado.position() < DiarioTransiciones.TAM_ENCABEZADO
+                    || encabezado.getInt(DiarioTransiciones.ENC_MAGICO) != DiarioTransiciones.MAGICO
+                    || encabezado.getInt(DiarioTransiciones.ENC_TAM_REGISTRO) != DiarioTransiciones.TAM_REGISTRO) {
+                throw new IllegalArgumentException(archivo + " no es un diario de transiciones.");
+            }
+            int filas = encabezado.getInt(DiarioTransiciones.ENC_FILAS);
+            int columnas = encabezado.getInt(DiarioTransiciones.ENC_COLUMNAS);
+            long origen = encabezado.getLong(DiarioTransiciones.ENC_CREADO);
+
+            List<Callable<Trozo>> tareas = new ArrayList<>();
+            for (long desde = DiarioTransiciones.TAM_ENCABEZADO; desde < tamano; ) {
+                long hasta = Math.min(tamano, (desde / TAM_TROZO + 1) * TAM_TROZO);
+                tareas.add(new Trozo(canal, desde, hasta, filas * columnas, origen, ventanaMs));
+                desde = hasta;
+            }
+            Informe informe = new Informe(filas, columnas, origen, ventanaMs, tamano,
+                    encabezado.getInt(DiarioTransiciones.ENC_CERRADO) != 0);
+            // Los trozos se combinan en orden a medida que terminan; como mucho 2 por hilo en
+            // vuelo, así los parciales (un arreglo por casillero cada uno) no se acumulan
+            ArrayDeque<Future<Trozo>> enVuelo = new ArrayDeque<>();
+            ForkJoinPool pool = new ForkJoinPool(hilos);
+            try {
+                int siguiente = 0;
+                while (siguiente < tareas.size() || !enVuelo.isEmpty()) {
+                    while (siguiente < tareas.size() && enVuelo.size() < 2 * hilos) {
+                        enVuelo.addLast(pool.submit(tareas.get(siguiente)));
+                        tareas.set(siguiente++, null);
+                    }
+                    try {
+                        informe.combinar(enVuelo.pollFirst().get());
+                    } catch (ExecutionException e) {
+                        throw new IOException("Error analizando un trozo del diario", e.getCause());
+                    }
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+            informe.terminar();
+            return informe;
+        }
+    }
+
+    /** Pedido en curso: dónde está y desde cuándo. */
+    private static final class Vivo {
+        final int id;
+        long creacion = -1;     // Ingreso a la etapa 0 (-1 = antes de este trozo)
+        long ultimo;            // Ingreso a la etapa actual
+        int etapa;
+        boolean sinComienzo;    // Apareció sin su ingreso anterior: se completa al combinar
+        long primero;           // Su primer registro en el trozo (si sinComienzo)
+        long fin = -1;          // Su final, si fue en el trozo y sinComienzo
+
+        Vivo(int id) { this.id = id; }
+    }
+
+    /** Porción del diario recorrida por un hilo, con sus resultados parciales y sus bordes. */
+    private static final class Trozo implements Callable<Trozo> {
+        private final FileChannel canal;
+        private final long desde;
+        private final long hasta;
+        private final long origen;
+        private final long ventanaMs;
+
+        long registros;
+        long descartados;
+        long minMillis = Long.MAX_VALUE;
+        long maxMillis = Long.MIN_VALUE;
+        int etapas;                                            // Mayor etapa vista + 1
+        final long[][] salidas = new long[MAX_ETAPAS][];       // [etapa][ventana]
+        long[] verificadosVentana = new long[0];
+        long[] fallidosVentana = new long[0];
+        final HistogramaLatencia[] estadia = new HistogramaLatencia[MAX_ETAPAS];
+        final HistogramaLatencia extremoAExtremo = new HistogramaLatencia();
+        final long[] fallidosEtapa = new long[MAX_ETAPAS + 1]; // El último: sin tomar
+        long verificados;
+
+        // Casilleros (por ID lineal); se crean al empezar el recorrido, no al armar las tareas
+        private final int casilleros;
+        int[] usos;
+        long[] msOcupado;
+        long[] ocupadoDesde;       // -1 = no ocupado dentro del trozo
+        long[] primeraLiberacion;  // Liberación sin ocupación previa en el trozo
+        byte[] estadoFinal;        // 0 = sin registros, 1 = ocupado, 2 = libre o fuera
+        boolean[] fuera;
+
+        // Pedidos
+        private final Map<Integer, Vivo> vivos = new HashMap<>();
+        final List<Vivo> sinComienzo = new ArrayList<>();
+        List<Vivo> abiertos;
+
+        Trozo(FileChannel canal, long desde, long hasta, int casilleros, long origen, long ventanaMs) {
+            this.canal = canal;
+            this.desde = desde;
+            this.hasta = hasta;
+            this.origen = origen;
+            this.ventanaMs = ventanaMs;
+            this.casilleros = casilleros;
+        }
+
+        @Override
+        public Trozo call() throws IOException {
+            usos = new int[casilleros];
+            msOcupado = new long[casilleros];
+            ocupadoDesde = new long[casilleros];
+            primeraLiberacion = new long[casilleros];
+            estadoFinal = new byte[casilleros];
+            fuera = new boolean[casilleros];
+            Arrays.fill(ocupadoDesde, -1);
+            Arrays.fill(primeraLiberacion, -1);
+            MappedByteBuffer datos = canal.map(FileChannel.MapMode.READ_ONLY, desde, hasta - desde);
+            int limite = datos.capacity() - DiarioTransiciones.TAM_REGISTRO;
+            for (int o = 0; o <= limite; o += DiarioTransiciones.TAM_REGISTRO) {
+                int codigo = datos.getInt(o + DiarioTransiciones.REG_TIPO);
+                if (codigo == 0) continue; // Lugar vacío (o el resto del último segmento)
+                int pedido = datos.getInt(o + DiarioTransiciones.REG_PEDIDO);
+                int casillero = datos.getInt(o + DiarioTransiciones.REG_CASILLERO);
+                long millis = datos.getLong(o + DiarioTransiciones.REG_MILLIS);
+                int etapa = datos.getInt(o + DiarioTransiciones.REG_ETAPA);
+                DiarioTransiciones.Tipo tipo = DiarioTransiciones.Tipo.deCodigo(codigo);
+                if (tipo == null || datos.getInt(o + DiarioTransiciones.REG_SUMA)
+                        != DiarioTransiciones.suma(codigo, pedido, casillero, millis, etapa)) {
+                    descartados++;
+                    continue;
+                }
+                registros++;
+                minMillis = Math.min(minMillis, millis);
+                maxMillis = Math.max(maxMillis, millis);
+                switch (tipo) {
+                    case INGRESO: ingreso(pedido, casillero, etapa, millis); break;
+                    case VERIFICADO: finalizado(pedido, etapa, millis, true); break;
+                    case FALLIDO: finalizado(pedido, etapa, millis, false); break;
+                    case CASILLERO_LIBERADO: liberado(casillero, millis, false); break;
+                    case CASILLERO_FUERA_DE_SERVICIO: liberado(casillero, millis, true); break;
+                }
+            }
+            abiertos = new ArrayList<>(vivos.values());
+            vivos.clear();
+            return this;
+        }
+
+        private void ingreso(int pedido, int casillero, int etapa, long millis) {
+            if (etapa < 0 || etapa >= MAX_ETAPAS) return;
+            etapas = Math.max(etapas, etapa + 1);
+            if (casillero >= 0 && casillero < usos.length) {
+                usos[casillero]++;
+                ocupadoDesde[casillero] = millis;
+                estadoFinal[casillero] = 1;
+            }
+            Vivo v = vivos.get(pedido);
+            if (v == null) {
+                v = new Vivo(pedido);
+                if (etapa == 0) {
+                    v.creacion = millis;
+                } else {
+                    comienzoAfuera(v, millis);
+                }
+                vivos.put(pedido, v);
+            } else {
+                cerrarEstadia(v, millis);
+            }
+            v.ultimo = millis;
+            v.etapa = etapa;
+        }
+
+        private void finalizado(int pedido, int etapa, long millis, boolean verificado) {
+            int v0 = ventana(millis);
+            if (verificado) {
+                verificados++;
+                verificadosVentana = sumar(verificadosVentana, v0);
+            } else {
+                fallidosEtapa[etapa >= 0 && etapa < MAX_ETAPAS ? etapa : MAX_ETAPAS]++;
+                fallidosVentana = sumar(fallidosVentana, v0);
+            }
+            Vivo v = vivos.remove(pedido);
+            if (v == null) { // Ingresó en un trozo anterior
+                v = new Vivo(pedido);
+                comienzoAfuera(v, millis);
+                v.fin = millis;
+                return;
+            }
+            cerrarEstadia(v, millis);
+            if (v.sinComienzo) v.fin = millis;
+            else if (v.creacion >= 0) extremoAExtremo.registrar((millis - v.creacion) * 1_000_000);
+        }
+
+        private void comienzoAfuera(Vivo v, long millis) {
+            v.sinComienzo = true;
+            v.primero = millis;
+            sinComienzo.add(v);
+        }
+
+        private void cerrarEstadia(Vivo v, long millis) {
+            estadia(v.etapa).registrar((millis - v.ultimo) * 1_000_000);
+            contarSalida(v.etapa, millis);
+        }
+
+        HistogramaLatencia estadia(int etapa) {
+            if (estadia[etapa] == null) estadia[etapa] = new HistogramaLatencia();
+            return estadia[etapa];
+        }
+
+        void contarSalida(int etapa, long millis) {
+            salidas[etapa] = sumar(salidas[etapa] == null ? new long[0] : salidas[etapa], ventana(millis));
+        }
+
+        private void liberado(int casillero, long millis, boolean fueraDeServicio) {
+            if (casillero < 0 || casillero >= usos.length) return;
+            if (ocupadoDesde[casillero] >= 0) {
+                msOcupado[casillero] += millis - ocupadoDesde[casillero];
+                ocupadoDesde[casillero] = -1;
+            } else if (estadoFinal[casillero] == 0) {
+                primeraLiberacion[casillero] = millis; // Lo ocupó un pedido de un trozo anterior
+            }
+            estadoFinal[casillero] = 2;
+            if (fueraDeServicio) fuera[casillero] = true;
+        }
+
+        int ventana(long millis) {
+            return (int) Math.max(0, (millis - origen) / ventanaMs);
+        }
+    }
+
+    /** Incrementa la posición 'i', agrandando el arreglo si hace falta. */
+    private static long[] sumar(long[] arreglo, int i) {
+        if (i >= arreglo.length) arreglo = Arrays.copyOf(arreglo, Math.max(i + 1, arreglo.length * 2));
+        arreglo[i]++;
+        return arreglo;
+    }
+
+    private static long[] sumar(long[] destino, long[] origen) {
+        if (origen == null) return destino;
+        if (destino.length < origen.length) destino = Arrays.copyOf(destino, origen.length);
+        for (int i = 0; i < origen.length; i++) destino[i] += origen[i];
+        return destino;
+    }
+
+    /** Resultado combinado del diario completo. */
+    public static final class Informe {
+        private final int filas;
+        private final int columnas;
+        private final long origen;
+        private final long ventanaMs;
+        private final long bytes;
+        private final boolean cerradoLimpio;
+
+        long registros;
+        long descartados;
+        long minMillis = Long.MAX_VALUE;
+        long maxMillis = Long.MIN_VALUE;
+        int etapas;
+        final long[][] salidas = new long[MAX_ETAPAS][];
+        long[] verificadosVentana = new long[0];
+        long[] fallidosVentana = new long[0];
+        final HistogramaLatencia[] estadia = new HistogramaLatencia[MAX_ETAPAS];
+        final HistogramaLatencia extremoAExtremo = new HistogramaLatencia();
+        final long[] fallidosEtapa = new long[MAX_ETAPAS + 1];
+        long verificados;
+        final long[] usos;
+        final long[] msOcupado;
+        final long[] ocupadoDesde;
+        final boolean[] fuera;
+        // Pedidos abiertos al final de los trozos ya combinados
+        private final Map<Integer, Vivo> abiertos = new HashMap<>();
+
+        Informe(int filas, int columnas, long origen, long ventanaMs, long bytes, boolean cerradoLimpio) {
+            this.filas = filas;
+            this.columnas = columnas;
+            this.origen = origen;
+            this.ventanaMs = ventanaMs;
+            this.bytes = bytes;
+            this.cerradoLimpio = cerradoLimpio;
+            int n = filas * columnas;
+            this.usos = new long[n];
+            this.msOcupado = new long[n];
+            this.ocupadoDesde = new long[n];
+            this.fuera = new boolean[n];
+            Arrays.fill(ocupadoDesde, -1);
+        }
+
+        /** Agrega un trozo; se llama en el orden del archivo. */
+        void combinar(Trozo t) {
+            registros += t.registros;
+            descartados += t.descartados;
+            minMillis = Math.min(minMillis, t.minMillis);
+            maxMillis = Math.max(maxMillis, t.maxMillis);
+            etapas = Math.max(etapas, t.etapas);
+            for (int e = 0; e < MAX_ETAPAS; e++) {
+                if (t.salidas[e] != null) salidas[e] = sumar(salidas[e] == null ? new long[0] : salidas[e], t.salidas[e]);
+                if (t.estadia[e] != null) estadia(e).sumar(t.estadia[e]);
+            }
+            verificadosVentana = sumar(verificadosVentana, t.verificadosVentana);
+            fallidosVentana = sumar(fallidosVentana, t.fallidosVentana);
+            extremoAExtremo.sumar(t.extremoAExtremo);
+            for (int e = 0; e <= MAX_ETAPAS; e++) fallidosEtapa[e] += t.fallidosEtapa[e];
+            verificados += t.verificados;
+
+            for (int c = 0; c < usos.length; c++) {
+                usos[c] += t.usos[c];
+                msOcupado[c] += t.msOcupado[c];
+                if (t.primeraLiberacion[c] >= 0 && ocupadoDesde[c] >= 0) {
+                    msOcupado[c] += t.primeraLiberacion[c] - ocupadoDesde[c];
+                }
+                if (t.estadoFinal[c] == 1) ocupadoDesde[c] = t.ocupadoDesde[c];
+                else if (t.estadoFinal[c] == 2) ocupadoDesde[c] = -1;
+                fuera[c] |= t.fuera[c];
+            }
+
+            // Pedidos que cruzan el borde: su estadía anterior y, si terminaron, su latencia total
+            for (Vivo v : t.sinComienzo) {
+                Vivo anterior = abiertos.remove(v.id);
+                if (anterior == null) continue; // Empezó antes del diario (corrida recuperada)
+                estadia(anterior.etapa).registrar((v.primero - anterior.ultimo) * 1_000_000);
+                salidas[anterior.etapa] = sumar(salidas[anterior.etapa] == null ? new long[0] : salidas[anterior.etapa],
+                        (int) Math.max(0, (v.primero - origen) / ventanaMs));
+                if (v.fin >= 0) {
+                    if (anterior.creacion >= 0) extremoAExtremo.registrar((v.fin - anterior.creacion) * 1_000_000);
+                } else {
+                    v.creacion = anterior.creacion;
+                }
+            }
+            for (Vivo v : t.abiertos) abiertos.put(v.id, v);
+        }
+
+        /** Cierra las ocupaciones que siguen abiertas al final de la traza. */
+        void terminar() {
+            for (int c = 0; c < usos.length; c++) {
+                if (ocupadoDesde[c] >= 0) msOcupado[c] += maxMillis - ocupadoDesde[c];
+            }
+        }
+
+        private HistogramaLatencia estadia(int etapa) {
+            if (estadia[etapa] == null) estadia[etapa] = new HistogramaLatencia();
+            return estadia[etapa];
+        }
+
+        /** Ventanas hasta el último registro (los arreglos pueden tener lugar de sobra al final). */
+        private int cantidadVentanas() {
+            return registros > 0 ? (int) Math.max(0, (maxMillis - origen) / ventanaMs) + 1 : 0;
+        }
+
+        /** Uso de un casillero: fracción de la traza que estuvo ocupado. */
+        private double uso(int c, long duracion) {
+            return duracion > 0 ? (double) msOcupado[c] / duracion : 0;
+        }
+
+        void imprimir() {
+            long duracion = registros > 0 ? maxMillis - minMillis : 0;
+            System.out.printf(Locale.ROOT, "Diario de una matriz de %dx%d, %s, %d registros (%d descartados), %.1f s de traza.%n",
+                    filas, columnas, cerradoLimpio ? "cerrado limpio" : "NO cerrado (la corrida no terminó)",
+                    registros, descartados, duracion / 1000.0);
+
+            System.out.println();
+            System.out.println("--- Throughput por etapa (salidas/s por ventana de " + ventanaMs + " ms) ---");
+            StringBuilder titulo = new StringBuilder(String.format("%8s", "t(s)"));
+            for (int e = 0; e < etapas; e++) titulo.append(String.format("%10s", "etapa" + e));
+            titulo.append(String.format("%12s%10s", "verificados", "fallidos"));
+            System.out.println(titulo);
+            double porSegundo = 1000.0 / ventanaMs;
+            for (int i = 0; i < cantidadVentanas(); i++) {
+                StringBuilder fila = new StringBuilder(String.format(Locale.ROOT, "%8.1f", i * ventanaMs / 1000.0));
+                for (int e = 0; e < etapas; e++) fila.append(String.format(Locale.ROOT, "%10.1f", valor(salidas[e], i) * porSegundo));
+                fila.append(String.format(Locale.ROOT, "%12.1f%10.1f", valor(verificadosVentana, i) * porSegundo,
+                        valor(fallidosVentana, i) * porSegundo));
+                System.out.println(fila);
+            }
+
+            System.out.println();
+            System.out.println("--- Latencias ---");
+            for (int e = 0; e < etapas; e++) {
+                if (estadia[e] != null) System.out.println("Estadía etapa " + e + ": " + estadia[e].resumen());
+            }
+            System.out.println("Extremo a extremo: " + extremoAExtremo.resumen());
+            if (!abiertos.isEmpty()) System.out.println("Pedidos sin terminar al final de la traza: " + abiertos.size());
+
+            System.out.println();
+            System.out.println("--- Fallidos por etapa ---");
+            long fallidos = 0;
+            for (long f : fallidosEtapa) fallidos += f;
+            System.out.println("Verificados: " + verificados + " | Fallidos: " + fallidos);
+            for (int e = 0; e < etapas; e++) {
+                System.out.printf(Locale.ROOT, "  etapa %d: %d (%.1f%%)%n", e, fallidosEtapa[e],
+                        fallidos > 0 ? 100.0 * fallidosEtapa[e] / fallidos : 0);
+            }
+            if (fallidosEtapa[MAX_ETAPAS] > 0) System.out.println("  sin tomar: " + fallidosEtapa[MAX_ETAPAS]);
+
+            System.out.println();
+            imprimirMapa(duracion);
+        }
+
+        private static long valor(long[] serie, int i) {
+            return serie != null && i < serie.length ? serie[i] : 0;
+        }
+
+        /** Uso (%) de cada casillero, o por fila y por columna si la matriz es grande. '*' = fuera de servicio. */
+        private void imprimirMapa(long duracion) {
+            System.out.println("--- Uso de casilleros (% del tiempo ocupado) ---");
+            double[] porFila = new double[filas];
+            double[] porColumna = new double[columnas];
+            long totalUsos = 0;
+            int totalFuera = 0;
+            for (int f = 0; f < filas; f++) {
+                for (int c = 0; c < columnas; c++) {
+                    int id = f * columnas + c;
+                    double u = uso(id, duracion);
+                    porFila[f] += u / columnas;
+                    porColumna[c] += u / filas;
+                    totalUsos += usos[id];
+                    if (fuera[id]) totalFuera++;
+                }
+            }
+            if (filas <= MAX_FILAS_MAPA && columnas <= MAX_COLUMNAS_MAPA) {
+                StringBuilder cabecera = new StringBuilder("      ");
+                for (int c = 0; c < columnas; c++) cabecera.append(String.format("%4d", c));
+                System.out.println(cabecera.append("  | fila"));
+                for (int f = 0; f < filas; f++) {
+                    StringBuilder linea = new StringBuilder(String.format("%5d ", f));
+                    for (int c = 0; c < columnas; c++) {
+                        int id = f * columnas + c;
+                        linea.append(String.format("%3d", Math.round(uso(id, duracion) * 100))).append(fuera[id] ? '*' : ' ');
+                    }
+                    System.out.println(linea.append(String.format(Locale.ROOT, "  | %3.0f", porFila[f] * 100)));
+                }
+                StringBuilder pie = new StringBuilder("  col ");
+                for (int c = 0; c < columnas; c++) pie.append(String.format("%4d", Math.round(porColumna[c] * 100)));
+                System.out.println(pie);
+            } else {
+                System.out.println("Filas más usadas:     " + extremos(porFila, true));
+                System.out.println("Filas menos usadas:   " + extremos(porFila, false));
+                System.out.println("Columnas más usadas:   " + extremos(porColumna, true));
+                System.out.println("Columnas menos usadas: " + extremos(porColumna, false));
+            }
+            double promedio = 0;
+            for (double u : porFila) promedio += u / filas;
+            System.out.printf(Locale.ROOT, "Uso medio %.1f%%, %d ocupaciones, %d casilleros fuera de servicio.%n",
+                    promedio * 100, totalUsos, totalFuera);
+        }
+
+        /** Los 5 índices con mayor (o menor) valor, como "3:82% 7:80% ...". */
+        private static String extremos(double[] valores, boolean mayores) {
+            Integer[] indices = new Integer[valores.length];
+            for (int i = 0; i < indices.length; i++) indices[i] = i;
+            Arrays.sort(indices, (a, b) -> mayores ? Double.compare(valores[b], valores[a]) : Double.compare(valores[a], valores[b]));
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < Math.min(5, indices.length); i++) {
+                sb.append(String.format(Locale.ROOT, "%d:%.0f%% ", indices[i], valores[indices[i]] * 100));
+            }
+            return sb.toString().trim();
+        }
+
+        /** Serie de throughput por ventana: t_s, salidas de cada etapa, verificados y fallidos (por segundo). */
+        void escribirCsv(String archivo) throws IOException {
+            double porSegundo = 1000.0 / ventanaMs;
+            try (PrintWriter salida = new PrintWriter(Files.newBufferedWriter(Path.of(archivo), StandardCharsets.UTF_8))) {
+                StringBuilder encabezado = new StringBuilder("t_s");
+                for (int e = 0; e < etapas; e++) encabezado.append(",etapa").append(e).append("_s");
+                salida.println(encabezado.append(",verificados_s,fallidos_s"));
+                for (int i = 0; i < cantidadVentanas(); i++) {
+                    StringBuilder fila = new StringBuilder(String.format(Locale.ROOT, "%.3f", i * ventanaMs / 1000.0));
+                    for (int e = 0; e < etapas; e++) fila.append(String.format(Locale.ROOT, ",%.2f", valor(salidas[e], i) * porSegundo));
+                    fila.append(String.format(Locale.ROOT, ",%.2f,%.2f", valor(verificadosVentana, i) * porSegundo,
+                            valor(fallidosVentana, i) * porSegundo));
+                    salida.println(fila);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,359 @@
+// ArchivoPedidos.java
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Archivo de los pedidos terminados (verificados y fallidos). Reemplaza a las colas de
+ * objetos Pedido que el registro guardaba para siempre: de cada pedido quedan solo
+ * primitivos en columnas (id, resultado, etapa de la que salió, casillero que usó, creación
+ * y fin), unos 26 bytes por pedido, en bloques de FILAS_POR_BLOQUE filas.
+ *
+ * Con un archivo de desborde, los bloques llenos que excedan 'bloquesEnMemoria' se vuelcan
+ * a disco y la memoria queda acotada sin importar cuántos pedidos se procesen. El constructor
+ * sin argumentos (el del registro por defecto) hace lo mismo con un archivo temporal, que se
+ * crea recién al primer volcado y se borra al salir la JVM: las corridas chicas no tocan el
+ * disco. Con desborde null en el otro constructor todo queda en memoria, igual de compacto
+ * pero creciendo unos 26 bytes por pedido.
+ *
+ * Se recorre con un Cursor, que lee los bloques de a uno (los volcados desde el disco) sin
+ * crear un objeto por fila. El recorrido es para el análisis al terminar la corrida: con
+ * trabajadores agregando a la vez puede omitir filas agregadas después de empezar.
+ */
+public class ArchivoPedidos implements Closeable {
+    public static final int FILAS_POR_BLOQUE = 4096;
+    // Bloques llenos que quedan en memoria cuando hay archivo de desborde
+    public static final int BLOQUES_EN_MEMORIA = 2;
+
+    private static final EstadoPedido[] RESULTADOS = EstadoPedido.values();
+
+    // null = solo en memoria, o temporal todavía sin crear. Se escribe bajo escritura
+    private volatile Path desborde;
+    private final boolean temporal;      // Desborde a un archivo temporal creado al primer volcado
+    private final int bloquesEnMemoria;
+
+    // Agregado: un lock corto que solo copia primitivos (uno por pedido o por lote)
+    private final ReentrantLock lock = FabricaLocks.crear("archivo.pedidos");
+    private final ArrayDeque<Bloque> llenos = new ArrayDeque<>(); // Bajo lock
+    private Bloque actual = new Bloque();                         // Bajo lock
+    private long filas;                                           // Bajo lock
+
+    // Volcado: un solo hilo escribe a la vez, así los bloques quedan en disco en orden
+    private final ReentrantLock escritura = new ReentrantLock();
+    private DataOutputStream salida;          // Bajo escritura; se abre con el primer volcado
+    private volatile int bloquesEnDisco;
+    private volatile long filasEnDisco;
+    private volatile boolean volcadoFallido;  // Tras un error de E/S todo queda en memoria
+    private boolean cerrado;                  // Bajo escritura
+
+    /**
+     * Archivo con memoria acotada: los bloques llenos que excedan BLOQUES_EN_MEMORIA se vuelcan
+     * a un archivo temporal, que se borra al terminar la JVM.
+     */
+    public ArchivoPedidos() {
+        this(null, BLOQUES_EN_MEMORIA, true);
+    }
+
+    /**
+     * @param desborde Archivo donde volcar los bloques llenos (se reemplaza si existe), o null
+     *                 para dejar todo en memoria.
+     * @param bloquesEnMemoria Bloques llenos que se conservan en memoria antes de volcar.
+     */
+    public ArchivoPedidos(Path desborde, int bloquesEnMemoria) {
+        this(desborde, bloquesEnMemoria, false);
+    }
+
+    private ArchivoPedidos(Path desborde, int bloquesEnMemoria, boolean temporal) {
+        if (bloquesEnMemoria < 0) throw new IllegalArgumentException("bloquesEnMemoria no puede ser negativo.");
+        this.desborde = desborde;
+        this.temporal = temporal;
+        this.bloquesEnMemoria = bloquesEnMemoria;
+    }
+
+    /**
+     * Registra un pedido que acaba de llegar a un estado final.
+     * @param p El pedido (su etapa tomada y su último casillero todavía son los de la corrida).
+     * @param resultado VERIFICADO o FALLIDO.
+     * @param nanosFinal Marca de tiempo del final, del mismo reloj que la creación.
+     */
+    public void agregar(Pedido p, EstadoPedido resultado, long nanosFinal) {
+        boolean volcar;
+        lock.lock();
+        try {
+            actual.escribir(p, resultado, nanosFinal);
+            volcar = rotarSiLleno();
+        } finally {
+            lock.unlock();
+        }
+        if (volcar) volcar(false);
+    }
+
+    /** Como agregar, para un lote que terminó en el mismo instante: un solo lock. */
+    public void agregarLote(Iterable<Pedido> lote, EstadoPedido resultado, long nanosFinal) {
+        boolean volcar = false;
+        lock.lock();
+        try {
+            for (Pedido p : lote) {
+                actual.escribir(p, resultado, nanosFinal);
+                volcar |= rotarSiLleno();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (volcar) volcar(false);
+    }
+
+    /** Bajo lock: pasa el bloque actual a llenos si se completó. @return true si hay que volcar. */
+    private boolean rotarSiLleno() {
+        filas++;
+        if (actual.filas < FILAS_POR_BLOQUE) return false;
+        llenos.addLast(actual);
+        actual = new Bloque();
+        return (desborde != null || temporal) && !volcadoFallido && llenos.size() > bloquesEnMemoria;
+    }
+
+    /**
+     * Escribe en disco los bloques llenos más viejos hasta dejar 'bloquesEnMemoria' (o todos,
+     * con 'todos'). El bloque sale de memoria recién después de escrito, así que en ningún
+     * momento falta de los dos lados.
+     */
+    private void volcar(boolean todos) {
+        escritura.lock();
+        try {
+            while (!volcadoFallido) {
+                Bloque b;
+                lock.lock();
+                try {
+                    if (llenos.size() <= (todos ? 0 : bloquesEnMemoria)) return;
+                    b = llenos.peekFirst(); // Solo este hilo los saca: sigue siendo el primero al terminar
+                } finally {
+                    lock.unlock();
+                }
+                escribirEnDisco(b);
+                lock.lock();
+                try {
+                    llenos.pollFirst();
+                    bloquesEnDisco++;
+                    filasEnDisco += b.filas;
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } catch (IOException e) {
+            volcadoFallido = true;
+            System.err.println("No se pudo volcar el archivo de pedidos a " + (desborde != null ? desborde : "un archivo temporal") + ": " + e.getMessage()
+                    + ". Los pedidos terminados quedan en memoria.");
+        } finally {
+            escritura.unlock();
+        }
+    }
+
+    private void escribirEnDisco(Bloque b) throws IOException {
+        if (cerrado) throw new IOException("el archivo ya está cerrado");
+        if (salida == null) {
+            if (desborde == null) { // Temporal: se crea recién cuando hace falta
+                Path archivo = Files.createTempFile("pedidos-", ".bin");
+                archivo.toFile().deleteOnExit();
+                desborde = archivo;
+            }
+            salida = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(desborde)));
+        }
+        b.escribir(salida);
+    }
+
+    /**
+     * Con archivo de desborde, vuelca también lo que queda en memoria (el bloque parcial
+     * incluido) y cierra el archivo, que queda completo para leerlo después. Se puede seguir
+     * recorriendo; no se puede seguir agregando. Un temporal que nunca se creó no se crea.
+     */
+    @Override
+    public void close() throws IOException {
+        if (desborde == null) return;
+        lock.lock();
+        try {
+            if (actual.filas > 0) {
+                llenos.addLast(actual);
+                actual = new Bloque();
+            }
+        } finally {
+            lock.unlock();
+        }
+        volcar(true);
+        escritura.lock();
+        try {
+            if (salida != null && !cerrado) salida.close();
+            cerrado = true;
+        } finally {
+            escritura.unlock();
+        }
+    }
+
+    /** Pedidos registrados desde el inicio. */
+    public long getCantidad() {
+        lock.lock();
+        try {
+            return filas;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Pedidos que ya están en el archivo de desborde. */
+    public long getCantidadEnDisco() {
+        return filasEnDisco;
+    }
+
+    public Path getDesborde() { return desborde; }
+
+    /** Resumen de una línea para el log. */
+    public String resumen() {
+        long total = getCantidad();
+        long enDisco = getCantidadEnDisco();
+        return "Archivo de pedidos terminados: " + total + " pedidos, " + (total - enDisco) + " en memoria"
+                + (desborde != null ? ", " + enDisco + " en " + desborde : "")
+                + (volcadoFallido ? " (volcado fallido)" : "");
+    }
+
+    /**
+     * Recorre el archivo en el orden en que se agregaron los pedidos: primero los bloques en
+     * disco y después los que siguen en memoria.
+     */
+    public Cursor recorrer() throws IOException {
+        int enDisco;
+        List<Bloque> enMemoria = new ArrayList<>();
+        escritura.lock(); // Sin volcados en curso: cada bloque está de un solo lado
+        try {
+            if (salida != null && !cerrado) salida.flush();
+            lock.lock();
+            try {
+                enDisco = bloquesEnDisco;
+                enMemoria.addAll(llenos);
+                if (actual.filas > 0) enMemoria.add(actual.copia());
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            escritura.unlock();
+        }
+        DataInputStream entrada = enDisco > 0
+                ? new DataInputStream(new BufferedInputStream(Files.newInputStream(desborde)))
+                : null;
+        return new Cursor(entrada, enDisco, enMemoria);
+    }
+
+    /**
+     * Lectura secuencial, fila por fila, sobre un bloque a la vez. Los getters devuelven los
+     * valores de la fila actual, después de que siguiente() devolvió true.
+     */
+    public static final class Cursor implements Closeable {
+        private final DataInputStream entrada;
+        private int pendientesEnDisco;
+        private final List<Bloque> enMemoria;
+        private int siguienteEnMemoria;
+        private final Bloque lectura = new Bloque(); // Se reutiliza para los bloques del disco
+        private Bloque bloque;
+        private int fila = -1;
+
+        private Cursor(DataInputStream entrada, int enDisco, List<Bloque> enMemoria) {
+            this.entrada = entrada;
+            this.pendientesEnDisco = enDisco;
+            this.enMemoria = enMemoria;
+        }
+
+        /** Avanza a la fila siguiente. @return false si no quedan filas. */
+        public boolean siguiente() throws IOException {
+            while (bloque == null || ++fila >= bloque.filas) {
+                if (pendientesEnDisco > 0) {
+                    lectura.leer(entrada);
+                    pendientesEnDisco--;
+                    bloque = lectura;
+                } else if (siguienteEnMemoria < enMemoria.size()) {
+                    bloque = enMemoria.get(siguienteEnMemoria++);
+                } else {
+                    return false;
+                }
+                fila = -1;
+            }
+            return true;
+        }
+
+        public int getId() { return bloque.ids[fila]; }
+        public EstadoPedido getResultado() { return RESULTADOS[bloque.resultados[fila]]; }
+        /** Etapa de la que salió hacia el estado final (-1 si nunca fue tomado, p. ej. rechazado al entrar). */
+        public int getEtapa() { return bloque.etapas[fila]; }
+        /** Último casillero que ocupó (-1 si ninguno). */
+        public int getCasilleroId() { return bloque.casilleros[fila]; }
+        public long getNanosCreacion() { return bloque.creaciones[fila]; }
+        public long getNanosFinal() { return bloque.finales[fila]; }
+        /** Latencia extremo a extremo del pedido. */
+        public long getNanosTotal() { return bloque.finales[fila] - bloque.creaciones[fila]; }
+
+        @Override
+        public void close() throws IOException {
+            if (entrada != null) entrada.close();
+        }
+    }
+
+    /** FILAS_POR_BLOQUE filas en columnas de primitivos. */
+    private static final class Bloque {
+        final int[] ids = new int[FILAS_POR_BLOQUE];
+        final byte[] resultados = new byte[FILAS_POR_BLOQUE];
+        final byte[] etapas = new byte[FILAS_POR_BLOQUE];
+        final int[] casilleros = new int[FILAS_POR_BLOQUE];
+        final long[] creaciones = new long[FILAS_POR_BLOQUE];
+        final long[] finales = new long[FILAS_POR_BLOQUE];
+        int filas;
+
+        void escribir(Pedido p, EstadoPedido resultado, long nanosFinal) {
+            int i = filas++;
+            ids[i] = p.getId();
+            resultados[i] = (byte) resultado.ordinal();
+            etapas[i] = (byte) p.getEtapaTomado();
+            casilleros[i] = p.getCasilleroUsado();
+            creaciones[i] = p.getNanosCreacion();
+            finales[i] = nanosFinal;
+        }
+
+        Bloque copia() {
+            Bloque c = new Bloque();
+            System.arraycopy(ids, 0, c.ids, 0, filas);
+            System.arraycopy(resultados, 0, c.resultados, 0, filas);
+            System.arraycopy(etapas, 0, c.etapas, 0, filas);
+            System.arraycopy(casilleros, 0, c.casilleros, 0, filas);
+            System.arraycopy(creaciones, 0, c.creaciones, 0, filas);
+            System.arraycopy(finales, 0, c.finales, 0, filas);
+            c.filas = filas;
+            return c;
+        }
+
+        // En disco: la cantidad de filas y después cada columna entera
+        void escribir(DataOutputStream salida) throws IOException {
+            salida.writeInt(filas);
+            for (int i = 0; i < filas; i++) salida.writeInt(ids[i]);
+            salida.write(resultados, 0, filas);
+            salida.write(etapas, 0, filas);
+            for (int i = 0; i < filas; i++) salida.writeInt(casilleros[i]);
+            for (int i = 0; i < filas; i++) salida.writeLong(creaciones[i]);
+            for (int i = 0; i < filas; i++) salida.writeLong(finales[i]);
+        }
+
+        void leer(DataInputStream entrada) throws IOException {
+            filas = entrada.readInt();
+            for (int i = 0; i < filas; i++) ids[i] = entrada.readInt();
+            entrada.readFully(resultados, 0, filas);
+            entrada.readFully(etapas, 0, filas);
+            for (int i = 0; i < filas; i++) casilleros[i] = entrada.readInt();
+            for (int i = 0; i < filas; i++) creaciones[i] = entrada.readLong();
+            for (int i = 0; i < filas; i++) finales[i] = entrada.readLong();
+        }
+    }
+}
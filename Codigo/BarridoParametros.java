@@ -0,0 +1,220 @@
+// BarridoParametros.java
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Barrido de parámetros para planificar capacidad: corre el producto cartesiano de los
+ * valores dados, cada combinación como una Simulacion aislada (su propia matriz, registro,
+ * logger e hilos), varias a la vez en un ForkJoinPool, e imprime una tabla con throughput,
+ * tasa de fallo, uso de casilleros y latencia de cada una.
+ *
+ * Uso: java BarridoParametros [--paralelo=N] [--repeticiones=R] [--csv=archivo] [--logs=directorio] parametro=valores...
+ *   valores: lista "2,3,4", rango entero "1..4" o rango con paso "0.80..0.95:0.05".
+ *   Los parámetros son los de ConfiguracionSimulacion.set; los no nombrados quedan como en Main.
+ * Ejemplo: java BarridoParametros totalPedidos=200 despachadores=1..4 probDespacho=0.8,0.9
+ *
+ * Las corridas simultáneas comparten CPU: con mucho paralelismo la duración de cada una
+ * crece y el throughput medido baja. Para comparar tiempos conviene un paralelismo moderado
+ * y repeticiones.
+ */
+public class BarridoParametros {
+    private static final String DIRECTORIO_LOGS = "barrido";
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int paralelo = Runtime.getRuntime().availableProcessors();
+        int repeticiones = 1;
+        String archivoCsv = null;
+        String directorioLogs = DIRECTORIO_LOGS;
+        Map<String, List<String>> grilla = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--paralelo=")) paralelo = Integer.parseInt(arg.substring("--paralelo=".length()));
+            else if (arg.startsWith("--repeticiones=")) repeticiones = Integer.parseInt(arg.substring("--repeticiones=".length()));
+            else if (arg.startsWith("--csv=")) archivoCsv = arg.substring("--csv=".length());
+            else if (arg.startsWith("--logs=")) directorioLogs = arg.substring("--logs=".length());
+            else if (arg.contains("=")) {
+                int igual = arg.indexOf('=');
+                grilla.put(arg.substring(0, igual), expandir(arg.substring(igual + 1)));
+            } else {
+                System.err.println("Argumento no reconocido: " + arg);
+                return;
+            }
+        }
+        if (paralelo <= 0 || repeticiones <= 0) {
+            System.err.println("--paralelo y --repeticiones deben ser positivos.");
+            return;
+        }
+
+        // Armar todas las configuraciones antes de correr: un valor inválido se informa enseguida
+        List<Map<String, String>> combinaciones = combinar(grilla);
+        Files.createDirectories(Path.of(directorioLogs));
+        List<ConfiguracionSimulacion> configuraciones = new ArrayList<>();
+        // Los trabajadores anuncian inicio y fin por consola: cada corrida escribe en una salida
+        // descartada, sin tocar System.out del proceso (los errores siguen a System.err)
+        ConfiguracionSimulacion base = new ConfiguracionSimulacion()
+                .archivoMetricas(null)   // Sin series por corrida
+                .puertoMetricas(-1)      // Ni endpoints compitiendo por puertos
+                .salida(new PrintStream(OutputStream.nullOutputStream()));
+        for (Map<String, String> combinacion : combinaciones) {
+            for (int r = 0; r < repeticiones; r++) {
+                ConfiguracionSimulacion config = base.copia();
+                try {
+                    for (Map.Entry<String, String> p : combinacion.entrySet()) config.set(p.getKey(), p.getValue());
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Configuración inválida " + combinacion + ": " + e.getMessage());
+                    return;
+                }
+                int numero = configuraciones.size() + 1;
+                config.archivoLog(Path.of(directorioLogs, "simulacion_" + numero + ".log").toString());
+                if (config.getArchivoPedidos() != null) { // Cada corrida con sus propios archivos
+                    config.archivoPedidos(Path.of(directorioLogs, "pedidos_" + numero + ".bin").toString());
+                }
+                if (config.getArchivoDiario() != null) {
+                    config.archivoDiario(Path.of(directorioLogs, "diario_" + numero + ".bin").toString());
+                }
+                configuraciones.add(config);
+            }
+        }
+        System.out.printf("Barrido: %d combinaciones x %d repeticiones = %d simulaciones, %d en paralelo. Logs en %s/%n",
+                combinaciones.size(), repeticiones, configuraciones.size(), paralelo, directorioLogs);
+
+        List<Callable<ResultadoSimulacion>> tareas = new ArrayList<>();
+        for (ConfiguracionSimulacion config : configuraciones) {
+            tareas.add(() -> new Simulacion(config).ejecutar());
+        }
+
+        List<Future<ResultadoSimulacion>> resultados;
+        long inicio = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(paralelo);
+        try {
+            resultados = pool.invokeAll(tareas);
+        } finally {
+            pool.shutdown();
+        }
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+
+        List<String> columnas = new ArrayList<>(grilla.keySet());
+        List<List<String>> filas = new ArrayList<>();
+        for (int i = 0; i < resultados.size(); i++) {
+            filas.add(fila(i + 1, combinaciones.get(i / repeticiones), i % repeticiones + 1, resultados.get(i)));
+        }
+        imprimirTabla(encabezado(columnas), filas);
+        System.out.printf(Locale.ROOT, "Barrido completado en %.1f s.%n", segundos);
+        if (archivoCsv != null) {
+            escribirCsv(archivoCsv, encabezado(columnas), filas);
+            System.out.println("Resultados guardados en: " + archivoCsv);
+        }
+    }
+
+    /** "2,3,4" -> [2, 3, 4]; "1..4" -> [1, 2, 3, 4]; "0.8..0.9:0.05" -> [0.80, 0.85, 0.90]. */
+    static List<String> expandir(String valores) {
+        List<String> lista = new ArrayList<>();
+        for (String parte : valores.split(",")) {
+            int rango = parte.indexOf("..");
+            if (rango < 0) {
+                lista.add(parte.trim());
+                continue;
+            }
+            String resto = parte.substring(rango + 2);
+            int dosPuntos = resto.indexOf(':');
+            BigDecimal desde = new BigDecimal(parte.substring(0, rango).trim());
+            BigDecimal hasta = new BigDecimal((dosPuntos < 0 ? resto : resto.substring(0, dosPuntos)).trim());
+            BigDecimal paso = dosPuntos < 0 ? BigDecimal.ONE : new BigDecimal(resto.substring(dosPuntos + 1).trim());
+            if (paso.signum() <= 0) throw new IllegalArgumentException("El paso debe ser positivo: " + parte);
+            for (BigDecimal v = desde; v.compareTo(hasta) <= 0; v = v.add(paso)) {
+                lista.add(v.toPlainString());
+            }
+        }
+        return lista;
+    }
+
+    /** Producto cartesiano de la grilla, en el orden de los parámetros (el último varía más rápido). */
+    static List<Map<String, String>> combinar(Map<String, List<String>> grilla) {
+        List<Map<String, String>> combinaciones = new ArrayList<>();
+        combinaciones.add(new LinkedHashMap<>());
+        for (Map.Entry<String, List<String>> parametro : grilla.entrySet()) {
+            List<Map<String, String>> siguientes = new ArrayList<>();
+            for (Map<String, String> parcial : combinaciones) {
+                for (String valor : parametro.getValue()) {
+                    Map<String, String> c = new LinkedHashMap<>(parcial);
+                    c.put(parametro.getKey(), valor);
+                    siguientes.add(c);
+                }
+            }
+            combinaciones = siguientes;
+        }
+        return combinaciones;
+    }
+
+    private static List<String> encabezado(List<String> parametros) {
+        List<String> encabezado = new ArrayList<>();
+        encabezado.add("#");
+        encabezado.addAll(parametros);
+        encabezado.addAll(List.of("rep", "duracion_s", "pedidos_s", "fallo_%", "uso_casilleros_%",
+                "fuera_servicio", "e2e_p50_ms", "e2e_p99_ms", "estado"));
+        return encabezado;
+    }
+
+    private static List<String> fila(int numero, Map<String, String> combinacion, int repeticion,
+                                     Future<ResultadoSimulacion> futuro) throws InterruptedException {
+        List<String> fila = new ArrayList<>();
+        fila.add(String.valueOf(numero));
+        fila.addAll(combinacion.values());
+        fila.add(String.valueOf(repeticion));
+        try {
+            ResultadoSimulacion r = futuro.get();
+            fila.add(String.format(Locale.ROOT, "%.2f", r.getDuracionMs() / 1000.0));
+            fila.add(String.format(Locale.ROOT, "%.1f", r.getThroughput()));
+            fila.add(String.format(Locale.ROOT, "%.1f", r.getTasaFallo() * 100));
+            fila.add(String.format(Locale.ROOT, "%.1f", r.getUtilizacionCasilleros() * 100));
+            fila.add(r.getCasillerosFueraDeServicio() + "/" + r.getTotalCasilleros());
+            fila.add(String.format(Locale.ROOT, "%.1f", r.getLatenciaP50Nanos() / 1e6));
+            fila.add(String.format(Locale.ROOT, "%.1f", r.getLatenciaP99Nanos() / 1e6));
+            fila.add(r.isSinCasilleros() ? "sin_casilleros" : (r.isBalanceCorrecto() ? "ok" : "desbalance"));
+        } catch (ExecutionException e) {
+            for (int i = 0; i < 7; i++) fila.add("-");
+            fila.add("error: " + e.getCause());
+        }
+        return fila;
+    }
+
+    private static void imprimirTabla(List<String> encabezado, List<List<String>> filas) {
+        int[] anchos = new int[encabezado.size()];
+        for (int c = 0; c < anchos.length; c++) {
+            anchos[c] = encabezado.get(c).length();
+            for (List<String> fila : filas) anchos[c] = Math.max(anchos[c], fila.get(c).length());
+        }
+        imprimirFila(encabezado, anchos);
+        for (List<String> fila : filas) imprimirFila(fila, anchos);
+    }
+
+    private static void imprimirFila(List<String> fila, int[] anchos) {
+        StringBuilder sb = new StringBuilder();
+        for (int c = 0; c < anchos.length; c++) {
+            if (c > 0) sb.append("  ");
+            sb.append(String.format("%" + anchos[c] + "s", fila.get(c)));
+        }
+        System.out.println(sb);
+    }
+
+    private static void escribirCsv(String archivo, List<String> encabezado, List<List<String>> filas) throws IOException {
+        try (PrintWriter salida = new PrintWriter(Files.newBufferedWriter(Path.of(archivo), StandardCharsets.UTF_8))) {
+            salida.println(String.join(",", encabezado));
+            for (List<String> fila : filas) salida.println(String.join(",", fila));
+        }
+    }
+}
@@ -0,0 +1,359 @@
+// BolsaAleatoria.java
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bolsa concurrente de la que se toman elementos al azar.
+ * Está dividida en segmentos, cada uno con su lock y un arreglo que se compacta
+ * con "swap-remove", así que agregar y tomar son O(1) y no crean objetos
+ * (salvo cuando un segmento tiene que crecer).
+ * Los productores eligen un segmento al azar. El consumidor elige el segmento con
+ * probabilidad proporcional a su tamaño (según una lectura sin lock de los tamaños) y
+ * después uniformemente dentro de él, así que cada elemento tiene la misma probabilidad
+ * de salir sin importar en qué segmento quedó. La elección solo se aparta de la uniforme
+ * cuando los tamaños cambian entre la lectura y el lock (entonces se pasa al siguiente
+ * segmento con elementos). Un lote sale del segmento elegido y, si no alcanza, de los
+ * siguientes: dentro del lote los elementos de un mismo segmento salen juntos.
+ * Un semáforo cuenta los elementos disponibles, lo que permite esperar (con timeout)
+ * hasta que llegue uno en lugar de reintentar con sleeps. Al cerrar la bolsa se agrega
+ * un único permiso de más, la "ficha de cierre": quien la toma y no encuentra nada la
+ * devuelve antes de irse, así que despierta al siguiente en espera y, en cadena, a todos.
+ * Cerrada y vacía, las tomas dejan de bloquear.
+ * @param <T> Tipo de los elementos.
+ */
+public class BolsaAleatoria<T> implements ColaEtapa<T> {
+    private static final int CAPACIDAD_INICIAL_SEGMENTO = 16;
+
+    private static final class Segmento {
+        final ReentrantLock lock;
+        Object[] items = new Object[CAPACIDAD_INICIAL_SEGMENTO]; // Protegido por lock
+        volatile int tamano; // Escrito bajo lock, leído sin lock para saltear vacíos
+
+        Segmento(ReentrantLock lock) {
+            this.lock = lock;
+        }
+    }
+
+    private final Segmento[] segmentos;
+    // Un permiso por elemento agregado y aún no tomado, más la ficha de cierre si está cerrada
+    private final Semaphore disponibles = new Semaphore(0);
+    private volatile boolean cerrada = false;
+    // Generador de las elecciones al azar; null = ThreadLocalRandom del hilo que llama
+    private volatile Random generador;
+
+    /**
+     * Crea una bolsa con un segmento por procesador disponible (al menos 2).
+     */
+    public BolsaAleatoria() {
+        this("bolsa");
+    }
+
+    /**
+     * Crea una bolsa con un segmento por procesador disponible (al menos 2).
+     * @param nombreLock Nombre con el que FabricaLocks informa la contención de sus segmentos.
+     */
+    public BolsaAleatoria(String nombreLock) {
+        this(Math.max(2, Runtime.getRuntime().availableProcessors()), nombreLock);
+    }
+
+    /**
+     * Crea una bolsa con la cantidad de segmentos indicada.
+     * @param cantidadSegmentos Cantidad de segmentos (más segmentos, menos contención).
+     */
+    public BolsaAleatoria(int cantidadSegmentos) {
+        this(cantidadSegmentos, "bolsa");
+    }
+
+    /**
+     * Crea una bolsa con la cantidad de segmentos indicada.
+     * @param cantidadSegmentos Cantidad de segmentos (más segmentos, menos contención).
+     * @param nombreLock Nombre con el que FabricaLocks informa la contención de sus segmentos.
+     */
+    public BolsaAleatoria(int cantidadSegmentos, String nombreLock) {
+        if (cantidadSegmentos <= 0) {
+            throw new IllegalArgumentException("La cantidad de segmentos debe ser positiva.");
+        }
+        segmentos = new Segmento[cantidadSegmentos];
+        for (int i = 0; i < cantidadSegmentos; i++) {
+            segmentos[i] = new Segmento(FabricaLocks.crear(nombreLock));
+        }
+    }
+
+    /**
+     * Fija el generador de todas las elecciones al azar, para corridas reproducibles con
+     * semilla (SimulacionEventos). Un Random compartido serializa a los hilos que lo usan:
+     * solo tiene sentido con un único hilo. null vuelve a ThreadLocalRandom.
+     */
+    public void setGeneradorAleatorio(Random generador) {
+        this.generador = generador;
+    }
+
+    private Random aleatorio() {
+        Random g = generador;
+        return g != null ? g : ThreadLocalRandom.current();
+    }
+
+    /**
+     * Agrega un elemento en un segmento elegido al azar.
+     * @param item El elemento a agregar (no null).
+     */
+    @Override
+    public void agregar(T item) {
+        if (item == null) throw new NullPointerException("No se pueden agregar elementos null.");
+        Segmento s = segmentos[aleatorio().nextInt(segmentos.length)];
+        s.lock.lock();
+        try {
+            int n = s.tamano;
+            if (n == s.items.length) {
+                Object[] nuevo = new Object[n * 2];
+                System.arraycopy(s.items, 0, nuevo, 0, n);
+                s.items = nuevo;
+            }
+            s.items[n] = item;
+            s.tamano = n + 1;
+        } finally {
+            s.lock.unlock();
+        }
+        // Despierta a un consumidor en espera, si hay
+        disponibles.release();
+    }
+
+    /**
+     * Agrega varios elementos tomando un único lock: todos van al mismo segmento,
+     * elegido al azar. La elección sigue siendo uniforme dentro de cada segmento.
+     * @param items Los elementos a agregar (ninguno null).
+     */
+    @Override
+    public void agregarLote(Collection<? extends T> items) {
+        int cantidad = items.size();
+        if (cantidad == 0) return;
+        for (T item : items) {
+            if (item == null) throw new NullPointerException("No se pueden agregar elementos null.");
+        }
+        Segmento s = segmentos[aleatorio().nextInt(segmentos.length)];
+        s.lock.lock();
+        try {
+            int n = s.tamano;
+            if (n + cantidad > s.items.length) {
+                Object[] nuevo = new Object[Math.max(s.items.length * 2, n + cantidad)];
+                System.arraycopy(s.items, 0, nuevo, 0, n);
+                s.items = nuevo;
+            }
+            for (T item : items) {
+                s.items[n++] = item;
+            }
+            s.tamano = n;
+        } finally {
+            s.lock.unlock();
+        }
+        disponibles.release(cantidad);
+    }
+
+    /**
+     * Quita y devuelve un elemento al azar, sin esperar.
+     * @return Un elemento, o null si la bolsa está vacía.
+     */
+    @Override
+    public T tomar() {
+        if (!disponibles.tryAcquire()) return null;
+        return extraerConPermiso();
+    }
+
+    /**
+     * Quita y devuelve un elemento al azar, esperando hasta que haya uno,
+     * venza el timeout o se cierre la bolsa.
+     * @param timeout Tiempo máximo de espera.
+     * @param unidad Unidad del timeout.
+     * @return Un elemento, o null si venció el timeout o la bolsa se cerró vacía.
+     * @throws InterruptedException Si el hilo es interrumpido mientras espera.
+     */
+    @Override
+    public T tomar(long timeout, TimeUnit unidad) throws InterruptedException {
+        if (!disponibles.tryAcquire(timeout, unidad)) return null;
+        return extraerConPermiso();
+    }
+
+    /**
+     * Quita hasta 'max' elementos al azar sin esperar y los agrega a 'destino'.
+     * @return La cantidad de elementos agregados a 'destino' (0 si la bolsa está vacía).
+     */
+    @Override
+    public int tomarLote(int max, List<? super T> destino) {
+        if (max <= 0 || !disponibles.tryAcquire()) return 0;
+        return extraerLoteConPermiso(max, destino);
+    }
+
+    /**
+     * Quita hasta 'max' elementos al azar, esperando hasta que haya al menos uno,
+     * venza el timeout o se cierre la bolsa. No espera a completar el lote.
+     * @return La cantidad de elementos agregados a 'destino' (0 si venció el timeout o se cerró vacía).
+     * @throws InterruptedException Si el hilo es interrumpido mientras espera.
+     */
+    @Override
+    public int tomarLote(int max, List<? super T> destino, long timeout, TimeUnit unidad) throws InterruptedException {
+        if (max <= 0 || !disponibles.tryAcquire(timeout, unidad)) return 0;
+        return extraerLoteConPermiso(max, destino);
+    }
+
+    /**
+     * Con un permiso ya adquirido, suma los permisos disponibles hasta 'max' y extrae esa
+     * cantidad recorriendo los segmentos desde uno al azar, con un lock por segmento visitado.
+     */
+    @SuppressWarnings("unchecked")
+    private int extraerLoteConPermiso(int max, List<? super T> destino) {
+        int pedidos = 1;
+        while (pedidos < max && disponibles.tryAcquire()) pedidos++;
+
+        Random rnd = aleatorio();
+        int n = segmentos.length;
+        int obtenidos = 0;
+        int inicio = elegirSegmento(rnd);
+        for (int vuelta = 0; obtenidos < pedidos; vuelta++) {
+            Segmento s = segmentos[(inicio + vuelta) % n];
+            if (s.tamano != 0) {
+                s.lock.lock();
+                try {
+                    int tam = s.tamano;
+                    while (tam > 0 && obtenidos < pedidos) {
+                        int idx = rnd.nextInt(tam);
+                        destino.add((T) s.items[idx]);
+                        s.items[idx] = s.items[tam - 1];
+                        s.items[--tam] = null;
+                        obtenidos++;
+                    }
+                    s.tamano = tam;
+                } finally {
+                    s.lock.unlock();
+                }
+            }
+            // Cerrada puede haber un permiso más que elementos (la ficha): basta con una vuelta completa
+            if (cerrada && vuelta >= n - 1) break;
+            // Vuelta completa sin terminar: otro consumidor se adelantó en los segmentos que miramos
+            if (vuelta % n == n - 1) esperarReintento(vuelta / n);
+        }
+        // Los permisos que sobraron (solo cerrada) vuelven, para que la ficha siga pasando
+        if (obtenidos < pedidos) disponibles.release(pedidos - obtenidos);
+        return obtenidos;
+    }
+
+    /**
+     * Extrae un elemento habiendo adquirido un permiso. Mientras la bolsa está abierta,
+     * cada permiso corresponde a un elemento ya publicado, así que siempre aparece uno;
+     * una vez cerrada el permiso puede ser la ficha de cierre: si no hay nada se devuelve
+     * (despierta al siguiente) y se devuelve null.
+     */
+    private T extraerConPermiso() {
+        for (int intento = 0; ; intento++) {
+            T item = extraer();
+            if (item != null) return item;
+            if (cerrada) {
+                disponibles.release();
+                return null;
+            }
+            // Otro consumidor con permiso nos ganó el segmento que miramos; reintentar
+            esperarReintento(intento);
+        }
+    }
+
+    /**
+     * Espera creciente entre reintentos: unas vueltas de spin, después yield y por último
+     * park de hasta 1 ms, para no quemar CPU si el elemento que nos toca tarda en aparecer.
+     * También la usa ColaOrdenada.
+     */
+    static void esperarReintento(int intento) {
+        if (intento < 8) {
+            Thread.onSpinWait();
+        } else if (intento < 16) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(Math.min(1_000_000L, 1_000L << Math.min(intento - 16, 10)));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T extraer() {
+        Random rnd = aleatorio();
+        int n = segmentos.length;
+        int inicio = elegirSegmento(rnd);
+        for (int i = 0; i < n; i++) {
+            Segmento s = segmentos[(inicio + i) % n];
+            if (s.tamano == 0) continue; // Lectura sin lock: solo para saltear vacíos
+            s.lock.lock();
+            try {
+                int tam = s.tamano;
+                if (tam == 0) continue; // Otro consumidor lo vació
+                int idx = rnd.nextInt(tam);
+                Object item = s.items[idx];
+                // Swap-remove: el último ocupa el lugar del elegido
+                s.items[idx] = s.items[tam - 1];
+                s.items[tam - 1] = null;
+                s.tamano = tam - 1;
+                return (T) item;
+            } finally {
+                s.lock.unlock();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Elige un segmento con probabilidad proporcional a su tamaño, leyendo los tamaños sin
+     * lock (O(segmentos), sin crear objetos). Si la bolsa parece vacía, uno al azar.
+     */
+    private int elegirSegmento(Random rnd) {
+        int n = segmentos.length;
+        int total = 0;
+        for (Segmento s : segmentos) total += s.tamano;
+        if (total <= 0) return rnd.nextInt(n);
+        int r = rnd.nextInt(total);
+        for (int i = 0; i < n; i++) {
+            r -= segmentos[i].tamano;
+            if (r < 0) return i;
+        }
+        return rnd.nextInt(n); // Los tamaños bajaron entre las dos lecturas
+    }
+
+    /**
+     * Cierra la bolsa: despierta a los consumidores que esperan y hace que las tomas
+     * con timeout ya no bloqueen cuando está vacía. Los elementos que queden pueden seguir
+     * tomándose y agregándose, para que los trabajadores vacíen la etapa al terminar.
+     */
+    @Override
+    public void cerrar() {
+        if (cerrada) return;
+        cerrada = true;
+        disponibles.release(); // La ficha de cierre: pasa de consumidor en consumidor
+    }
+
+    public boolean estaCerrada() { return cerrada; }
+
+    /**
+     * @return true si ningún segmento tiene elementos (lectura sin lock).
+     */
+    @Override
+    public boolean estaVacia() {
+        for (Segmento s : segmentos) {
+            if (s.tamano != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Cantidad de elementos sumando los segmentos, sin lock: O(segmentos), no O(elementos).
+     * @return La cantidad aproximada si hay operaciones concurrentes.
+     */
+    @Override
+    public int tamano() {
+        int total = 0;
+        for (Segmento s : segmentos) {
+            total += s.tamano;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,80 @@
+// CapacidadEtapa.java
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cuántos trabajadores de una etapa están activos. MotorEtapas lanza el máximo de trabajadores
+ * de cada etapa y cada uno tiene un número fijo (0, 1, 2...); solo toman pedidos los que tienen
+ * número menor a 'activos', el resto queda estacionado hasta que RebalanceadorEtapas sube la
+ * capacidad. Bajar la capacidad no interrumpe a nadie: el trabajador termina su pedido y se
+ * estaciona en la vuelta siguiente.
+ */
+public class CapacidadEtapa {
+    private final int minimo;
+    private final int maximo;
+    private volatile int activos; // Se lee sin lock en cada vuelta de los trabajadores
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition cambio = lock.newCondition();
+
+    /**
+     * @param minimo Menor cantidad de activos permitida (al menos 1, para que la etapa se vacíe).
+     * @param maximo Mayor cantidad de activos (trabajadores lanzados).
+     * @param iniciales Activos al arrancar, acotados a [minimo, maximo].
+     */
+    public CapacidadEtapa(int minimo, int maximo, int iniciales) {
+        if (minimo < 1 || maximo < minimo) {
+            throw new IllegalArgumentException("Límites inválidos: mínimo " + minimo + ", máximo " + maximo);
+        }
+        this.minimo = minimo;
+        this.maximo = maximo;
+        this.activos = Math.max(minimo, Math.min(maximo, iniciales));
+    }
+
+    public int getMinimo() { return minimo; }
+    public int getMaximo() { return maximo; }
+    public int getActivos() { return activos; }
+
+    /** @return true si el trabajador con ese número puede tomar pedidos (lectura sin lock). */
+    public boolean estaActivo(int numero) {
+        return numero < activos;
+    }
+
+    /**
+     * Cambia la cantidad de activos y despierta a los estacionados.
+     * @param cantidad Nueva cantidad, acotada a [minimo, maximo].
+     * @return La cantidad efectivamente aplicada.
+     */
+    public int setActivos(int cantidad) {
+        int nueva = Math.max(minimo, Math.min(maximo, cantidad));
+        lock.lock();
+        try {
+            activos = nueva;
+            cambio.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        return nueva;
+    }
+
+    /**
+     * Estaciona al trabajador hasta que quede activo o venza el timeout.
+     * @return true si el trabajador quedó activo.
+     * @throws InterruptedException Si el hilo es interrumpido mientras espera.
+     */
+    public boolean esperarActivacion(int numero, long timeout, TimeUnit unidad) throws InterruptedException {
+        if (numero < activos) return true;
+        long restante = unidad.toNanos(timeout);
+        lock.lock();
+        try {
+            while (numero >= activos) {
+                if (restante <= 0) return false;
+                restante = cambio.awaitNanos(restante);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,15 +1,15 @@
 // --- Clases de Datos ---
 // Casillero.java
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.ReentrantLock; // Aunque no lo usemos activamente aquí si bloqueamos en Matriz
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 public class Casillero {
     private final int id;
     private volatile EstadoCasillero estado; // volatile para visibilidad entre hilos
     private final AtomicInteger contadorUso = new AtomicInteger(0);
-    // Lock individual podría ser útil para operaciones atómicas complejas,
-    // pero por simplicidad, bloquearemos en MatrizCasilleros.
-    // private final ReentrantLock lock = new ReentrantLock();
+    // CAS sobre 'estado' sin agregar un objeto atómico por casillero
+    private static final AtomicReferenceFieldUpdater<Casillero, EstadoCasillero> ESTADO =
+            AtomicReferenceFieldUpdater.newUpdater(Casillero.class, EstadoCasillero.class, "estado");
 
     public Casillero(int id) {
         this.id = id;
@@ -20,20 +20,26 @@ public class Casillero {
     public EstadoCasillero getEstado() { return estado; }
     public int getContadorUso() { return contadorUso.get(); }
 
-    // Las actualizaciones de estado y contador se harán desde MatrizCasilleros
-    // bajo el bloqueo de la matriz para asegurar atomicidad en las operaciones
-    // que involucran búsqueda y actualización.
-    void ocupar() {
-        this.estado = EstadoCasillero.OCUPADO;
+    // Las transiciones de estado se hacen por CAS: solo una gana si varios hilos
+    // intentan la misma transición, y una transición ilegal (p.ej. liberar un
+    // casillero VACIO) devuelve false sin modificar nada.
+    // MatrizCasilleros se encarga de mantener su índice de libres en consecuencia.
+
+    /** VACIO -> OCUPADO. Incrementa el contador de uso si tiene éxito. */
+    boolean ocupar() {
+        if (!ESTADO.compareAndSet(this, EstadoCasillero.VACIO, EstadoCasillero.OCUPADO)) return false;
         this.contadorUso.incrementAndGet();
+        return true;
     }
 
-    void liberar() {
-        this.estado = EstadoCasillero.VACIO;
+    /** OCUPADO -> VACIO. */
+    boolean liberar() {
+        return ESTADO.compareAndSet(this, EstadoCasillero.OCUPADO, EstadoCasillero.VACIO);
     }
 
-    void ponerFueraDeServicio() {
-        this.estado = EstadoCasillero.FUERA_DE_SERVICIO;
+    /** OCUPADO -> FUERA_DE_SERVICIO. */
+    boolean ponerFueraDeServicio() {
+        return ESTADO.compareAndSet(this, EstadoCasillero.OCUPADO, EstadoCasillero.FUERA_DE_SERVICIO);
     }
 
     @Override
@@ -0,0 +1,56 @@
+// ColaEtapa.java
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cola de entrada de una etapa del flujo. Qué elemento devuelve cada toma depende de la
+ * implementación (ver PoliticaSeleccion): al azar, el más viejo, el más nuevo o por prioridad.
+ * Todas son thread-safe, permiten esperar con timeout a que llegue un elemento y se pueden
+ * cerrar para despertar a quienes esperan; cerradas siguen aceptando y entregando elementos
+ * para que los trabajadores vacíen la etapa.
+ * @param <T> Tipo de los elementos.
+ */
+public interface ColaEtapa<T> {
+
+    /** Agrega un elemento (no null). */
+    void agregar(T item);
+
+    /** Agrega varios elementos con una sola operación cuando la implementación lo permite. */
+    void agregarLote(Collection<? extends T> items);
+
+    /**
+     * Quita un elemento sin esperar.
+     * @return Un elemento, o null si la cola está vacía.
+     */
+    T tomar();
+
+    /**
+     * Quita un elemento, esperando hasta que haya uno, venza el timeout o se cierre la cola.
+     * @return Un elemento, o null si venció el timeout o la cola se cerró vacía.
+     * @throws InterruptedException Si el hilo es interrumpido mientras espera.
+     */
+    T tomar(long timeout, TimeUnit unidad) throws InterruptedException;
+
+    /**
+     * Quita hasta 'max' elementos sin esperar y los agrega a 'destino'.
+     * @return La cantidad de elementos agregados a 'destino'.
+     */
+    int tomarLote(int max, List<? super T> destino);
+
+    /**
+     * Quita hasta 'max' elementos, esperando solo hasta que haya al menos uno.
+     * @return La cantidad de elementos agregados a 'destino' (0 si venció el timeout o se cerró vacía).
+     * @throws InterruptedException Si el hilo es interrumpido mientras espera.
+     */
+    int tomarLote(int max, List<? super T> destino, long timeout, TimeUnit unidad) throws InterruptedException;
+
+    /** Despierta a quienes esperan; las tomas con timeout dejan de bloquear. */
+    void cerrar();
+
+    /** @return true si no hay elementos (lectura sin lock, aproximada con actividad concurrente). */
+    boolean estaVacia();
+
+    /** @return Cantidad de elementos, aproximada con actividad concurrente. */
+    int tamano();
+}
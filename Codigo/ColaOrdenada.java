@@ -0,0 +1,126 @@
+// ColaOrdenada.java
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ColaEtapa sobre una Queue concurrente del JDK, que define el orden de las tomas:
+ * ConcurrentLinkedQueue (FIFO), un ConcurrentLinkedDeque usado como pila (LIFO) o una
+ * PriorityBlockingQueue (PRIORIDAD). No elige al azar, así que tomar no sortea ni recorre
+ * segmentos. Igual que BolsaAleatoria, un semáforo cuenta los elementos disponibles para
+ * poder esperar con timeout, y al cerrar se agrega un único permiso de más (la ficha de
+ * cierre) que cada consumidor que no encuentra nada devuelve, despertando al siguiente.
+ * @param <T> Tipo de los elementos.
+ */
+public class ColaOrdenada<T> implements ColaEtapa<T> {
+    private final Queue<T> cola; // Debe ser thread-safe
+    // Un permiso por elemento agregado y aún no tomado, más la ficha de cierre si está cerrada
+    private final Semaphore disponibles = new Semaphore(0);
+    private volatile boolean cerrada = false;
+
+    /**
+     * @param cola Cola thread-safe vacía que fija el orden de salida.
+     */
+    public ColaOrdenada(Queue<T> cola) {
+        this.cola = cola;
+    }
+
+    @Override
+    public void agregar(T item) {
+        if (item == null) throw new NullPointerException("No se pueden agregar elementos null.");
+        cola.offer(item);
+        disponibles.release();
+    }
+
+    @Override
+    public void agregarLote(Collection<? extends T> items) {
+        int cantidad = items.size();
+        if (cantidad == 0) return;
+        for (T item : items) {
+            if (item == null) throw new NullPointerException("No se pueden agregar elementos null.");
+        }
+        for (T item : items) {
+            cola.offer(item);
+        }
+        disponibles.release(cantidad);
+    }
+
+    @Override
+    public T tomar() {
+        if (!disponibles.tryAcquire()) return null;
+        return extraerConPermiso();
+    }
+
+    @Override
+    public T tomar(long timeout, TimeUnit unidad) throws InterruptedException {
+        if (!disponibles.tryAcquire(timeout, unidad)) return null;
+        return extraerConPermiso();
+    }
+
+    @Override
+    public int tomarLote(int max, List<? super T> destino) {
+        if (max <= 0 || !disponibles.tryAcquire()) return 0;
+        return extraerLoteConPermiso(max, destino);
+    }
+
+    @Override
+    public int tomarLote(int max, List<? super T> destino, long timeout, TimeUnit unidad) throws InterruptedException {
+        if (max <= 0 || !disponibles.tryAcquire(timeout, unidad)) return 0;
+        return extraerLoteConPermiso(max, destino);
+    }
+
+    /** Con un permiso adquirido, suma los disponibles hasta 'max' y extrae esa cantidad. */
+    private int extraerLoteConPermiso(int max, List<? super T> destino) {
+        int pedidos = 1;
+        while (pedidos < max && disponibles.tryAcquire()) pedidos++;
+        int obtenidos = 0;
+        while (obtenidos < pedidos) {
+            T item = extraerConPermiso();
+            if (item == null) {
+                // Cerrada y vacía: ese permiso ya volvió; los demás vuelven para que la ficha siga pasando
+                disponibles.release(pedidos - obtenidos - 1);
+                break;
+            }
+            destino.add(item);
+            obtenidos++;
+        }
+        return obtenidos;
+    }
+
+    /**
+     * Abierta, cada permiso corresponde a un elemento ya ofrecido a la cola, así que el poll
+     * lo encuentra; cerrada el permiso puede ser la ficha: si está vacía se devuelve
+     * (despierta al siguiente) y se devuelve null.
+     */
+    private T extraerConPermiso() {
+        for (int intento = 0; ; intento++) {
+            T item = cola.poll();
+            if (item != null) return item;
+            if (cerrada) {
+                disponibles.release();
+                return null;
+            }
+            // El release del productor puede adelantarse a que el offer sea visible en otra pila/cola
+            BolsaAleatoria.esperarReintento(intento);
+        }
+    }
+
+    @Override
+    public void cerrar() {
+        if (cerrada) return;
+        cerrada = true;
+        disponibles.release(); // Ficha de cierre
+    }
+
+    @Override
+    public boolean estaVacia() {
+        return cola.isEmpty();
+    }
+
+    @Override
+    public int tamano() {
+        return cola.size(); // O(n) en ConcurrentLinkedQueue/Deque: solo para informes
+    }
+}
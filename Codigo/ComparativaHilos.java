@@ -0,0 +1,176 @@
+// ComparativaHilos.java
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Compara memoria y throughput de los trabajadores con hilos de plataforma y con hilos virtuales.
+ * Lanza la misma cantidad de trabajadores reales (proporción 3/2/3/2 como en Main) contra una
+ * matriz y un registro propios durante una ventana fija, y mide pedidos finalizados por segundo,
+ * pico de heap usado, pico de memoria residente (Linux) y pico de hilos de plataforma vivos.
+ *
+ * Uso: java ComparativaHilos [trabajadores=10000] [segundos=10] [modo=todos]
+ *
+ * Los preparadores arrancan recién cuando están lanzados todos los trabajadores, así que el
+ * arranque no deja trabajo acumulado para la ventana. Eso tiene un costo con hilos de plataforma
+ * en pocas CPU: mientras se crean los últimos, miles de trabajadores ociosos vencen su espera
+ * cada 100 ms y se disputan la CPU. En una máquina de 1 CPU con JDK 21 (ventana de 10 s):
+ *
+ *   2000 trabajadores   PLATAFORMA   917 ms de arranque, 3303 pedidos/s, 285 MiB residentes, 2006 hilos
+ *                       VIRTUALES    106 ms de arranque, 4606 pedidos/s, 145 MiB residentes, 9 hilos
+ *   10000 trabajadores  VIRTUALES    510-578 ms de arranque, 6150-8940 pedidos/s (dos corridas),
+ *                                    168-183 MiB residentes, 9 hilos
+ *                       PLATAFORMA   sin cifra: tras más de 5 minutos iba por unos 5300 hilos
+ *                                    lanzados. Para medirla hace falta una máquina con más núcleos.
+ *
+ * La comparación necesita JDK 21 o superior: en JVMs anteriores el modo VIRTUALES cae a
+ * hilos de plataforma, su fila se marca con '*' y las dos filas miden lo mismo.
+ */
+public class ComparativaHilos {
+    private static final long INTERVALO_MUESTREO_MS = 100;
+    private static boolean ventanaCortada; // Algún modo se quedó sin casilleros durante la ventana
+
+    public static void main(String[] args) throws InterruptedException {
+        int trabajadores = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int segundos = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        ModoHilos[] modos = args.length > 2 ? new ModoHilos[] { ModoHilos.valueOf(args[2]) } : ModoHilos.values();
+
+        System.out.println("Comparativa de modos de hilos: " + trabajadores + " trabajadores, ventana de " + segundos + " s");
+        if (!ModoHilos.virtualesDisponibles()) {
+            System.out.println("ADVERTENCIA: esta JVM (" + System.getProperty("java.version")
+                    + ") no soporta hilos virtuales; el modo VIRTUALES usará hilos de plataforma.");
+        }
+
+        String[] resultados = new String[modos.length];
+        for (int i = 0; i < modos.length; i++) {
+            System.gc();
+            Thread.sleep(500);
+            resultados[i] = ejecutar(modos[i], trabajadores, segundos);
+        }
+
+        System.out.printf("%n%-11s | %10s | %12s | %12s | %14s | %12s%n",
+                "Modo", "Arranque", "Pedidos/s", "Heap pico", "Residente pico", "Hilos plat.");
+        for (String fila : resultados) {
+            System.out.println(fila);
+        }
+        if (ventanaCortada) {
+            System.out.println("! Se agotaron los casilleros durante la ventana: probar con menos segundos.");
+        }
+        if (!ModoHilos.virtualesDisponibles()) {
+            System.out.println("* Sin hilos virtuales en esta JVM: la fila VIRTUALES usó hilos de plataforma. "
+                    + "Para comparar los modos, correr con JDK 21+.");
+        }
+    }
+
+    private static String ejecutar(ModoHilos modo, int trabajadores, int segundos) throws InterruptedException {
+        int preparadores = Math.max(1, trabajadores * 3 / 10);
+        int despachadores = Math.max(1, trabajadores * 2 / 10);
+        int entregadores = Math.max(1, trabajadores * 3 / 10);
+        int verificadores = Math.max(1, trabajadores - preparadores - despachadores - entregadores);
+
+        // Casilleros de sobra para que el límite sea el trabajo de las etapas y no la matriz
+        int columnas = 400;
+        int filas = Math.max(Main.NUM_FILAS_CASILLEROS, trabajadores * 20 / columnas);
+        // Los trabajadores anuncian inicio y fin en la consola de la corrida: con miles de ellos se silencia
+        PrintStream nula = new PrintStream(OutputStream.nullOutputStream());
+        MatrizCasilleros matriz = new MatrizCasilleros(filas, columnas, ModoConcurrencia.FRANJAS, TipoAlmacenamiento.COMPACTO,
+                preparadores, nula);
+        RegistroPedidos registro = new RegistroPedidos(System::nanoTime,
+                Main.flujoEstandar(despachadores, entregadores, verificadores, 1));
+        registro.setSalida(nula);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicBoolean sinCasilleros = new AtomicBoolean(false);
+
+        MemoryMXBean memoria = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean hilos = ManagementFactory.getThreadMXBean();
+
+        ExecutorService executor = modo.crearExecutor("trabajador-" + modo.name().toLowerCase() + "-");
+        long inicio = System.nanoTime();
+        // Los preparadores esperan a que estén todos lanzados: si no, con miles de hilos de plataforma
+        // el arranque dura minutos, y en ese tiempo se procesan (y se gastan casilleros) fuera de la ventana
+        CountDownLatch largada = new CountDownLatch(1);
+        try {
+            for (int i = 0; i < preparadores; i++) {
+                PreparadorPedido preparador = new PreparadorPedido(registro, matriz, Main.DEMORA_BASE_PREPARADOR,
+                        Main.VARIACION_DEMORA, Integer.MAX_VALUE, running, sinCasilleros);
+                executor.submit(() -> {
+                    try {
+                        largada.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return; // Se cortó antes de empezar
+                    }
+                    preparador.run();
+                });
+            }
+            new MotorEtapas(registro, matriz, running).iniciar(executor);
+            long arranqueMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+            largada.countDown();
+
+            // Medir solo la ventana, con el sistema ya lanzado
+            int finalizadosInicio = registro.getInstantanea().getFinalizados();
+            long inicioVentana = System.nanoTime();
+            long finVentana = inicioVentana + TimeUnit.SECONDS.toNanos(segundos);
+            long heapPico = 0;
+            long residentePico = 0;
+            int hilosPico = 0;
+            while (System.nanoTime() < finVentana) {
+                heapPico = Math.max(heapPico, memoria.getHeapMemoryUsage().getUsed());
+                residentePico = Math.max(residentePico, memoriaResidente());
+                hilosPico = Math.max(hilosPico, hilos.getThreadCount());
+                Thread.sleep(INTERVALO_MUESTREO_MS);
+            }
+            int finalizados = registro.getInstantanea().getFinalizados() - finalizadosInicio;
+            double pedidosPorSegundo = finalizados / ((System.nanoTime() - inicioVentana) / 1e9);
+
+            String nombre = modo == ModoHilos.VIRTUALES && !ModoHilos.virtualesDisponibles() ? modo + "*" : modo.name();
+            if (sinCasilleros.get()) {
+                nombre += "!"; // La ventana se cortó: la fila no es comparable
+                ventanaCortada = true;
+            }
+            return String.format("%-11s | %8d ms | %12.1f | %9.1f MiB | %10s | %12d",
+                    nombre, arranqueMs, pedidosPorSegundo, heapPico / (1024.0 * 1024.0),
+                    residentePico > 0 ? String.format("%.1f MiB", residentePico / (1024.0 * 1024.0)) : "n/d",
+                    hilosPico);
+        } finally {
+            // Acá no interesa vaciar las etapas: se interrumpe a los trabajadores directamente
+            running.set(false);
+            registro.cerrar();
+            matriz.cerrar();
+            executor.shutdownNow();
+            executor.awaitTermination(60, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Lee VmRSS de /proc/self/status (solo Linux). Incluye las pilas nativas de los hilos
+     * de plataforma, que no aparecen en el heap.
+     * @return Bytes residentes, o 0 si no se puede leer.
+     */
+    private static long memoriaResidente() {
+        Path status = Paths.get("/proc/self/status");
+        if (!Files.isReadable(status)) return 0;
+        try {
+            List<String> lineas = Files.readAllLines(status);
+            for (String linea : lineas) {
+                if (linea.startsWith("VmRSS:")) {
+                    String[] partes = linea.trim().split("\\s+");
+                    return Long.parseLong(partes[1]) * 1024; // Viene en kB
+                }
+            }
+        } catch (Exception e) {
+            // Sin dato de memoria residente; se informa como n/d
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,104 @@
+// ComprobacionColas.java
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Comprueba dos propiedades de las colas de etapa:
+ * - Uniformidad de BolsaAleatoria: de 10 elementos en 4 segmentos, 7 cargados con agregarLote
+ *   (todos en el mismo segmento) y 3 sueltos, cada uno sale primero con probabilidad 0,1. Si
+ *   el segmento no se eligiera según su tamaño, los sueltos saldrían bastante más seguido.
+ * - Cierre con consumidores en espera (cada PoliticaSeleccion): 20 consumidores, la mitad
+ *   con tomar y la mitad con tomarLote, vacían 1000 elementos y cerrar() los despierta a todos.
+ *
+ * Uso: java ComprobacionColas [muestras=100000]
+ * Termina con código 1 si alguna comprobación falla.
+ */
+public class ComprobacionColas {
+    private static final int ELEMENTOS = 10;
+    private static final int EN_LOTE = 7;
+    private static final int SEGMENTOS = 4;
+    private static final double TOLERANCIA = 0.005; // Unos 5 desvíos con 100.000 muestras
+    private static final int CONSUMIDORES = 20;
+    private static final int PUBLICADOS = 1000;
+    private static final long ESPERA_CIERRE_MS = 5000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int muestras = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        boolean ok = comprobarUniformidad(muestras);
+        for (PoliticaSeleccion politica : PoliticaSeleccion.values()) {
+            ok &= comprobarCierre(politica);
+        }
+        if (!ok) System.exit(1);
+    }
+
+    /** Frecuencia con que cada elemento sale primero de una bolsa recién cargada. */
+    private static boolean comprobarUniformidad(int muestras) {
+        BolsaAleatoria<Integer> bolsa = new BolsaAleatoria<>(SEGMENTOS);
+        List<Integer> lote = new ArrayList<>();
+        for (int i = 0; i < EN_LOTE; i++) lote.add(i);
+        int[] primeros = new int[ELEMENTOS];
+        for (int m = 0; m < muestras; m++) {
+            bolsa.agregarLote(lote);
+            for (int i = EN_LOTE; i < ELEMENTOS; i++) bolsa.agregar(i);
+            primeros[bolsa.tomar()]++;
+            while (bolsa.tomar() != null) { } // Vaciar para la próxima muestra
+        }
+        double peor = 0;
+        StringBuilder frecuencias = new StringBuilder();
+        for (int i = 0; i < ELEMENTOS; i++) {
+            double p = (double) primeros[i] / muestras;
+            peor = Math.max(peor, Math.abs(p - 1.0 / ELEMENTOS));
+            frecuencias.append(i == 0 ? "" : " ").append(String.format(Locale.ROOT, "%.4f", p));
+        }
+        boolean correcta = peor <= TOLERANCIA;
+        System.out.println((correcta ? "OK    " : "FALLA ") + "uniformidad de BolsaAleatoria (" + muestras
+                + " muestras, esperado 0.1000 cada uno): " + frecuencias);
+        return correcta;
+    }
+
+    /** Consumidores esperando con timeout largo: al cerrar tienen que salir todos enseguida. */
+    private static boolean comprobarCierre(PoliticaSeleccion politica) throws InterruptedException {
+        ColaEtapa<Integer> cola = politica.crearCola("comprobacion", null);
+        CountDownLatch terminados = new CountDownLatch(CONSUMIDORES);
+        AtomicInteger tomados = new AtomicInteger();
+        for (int c = 0; c < CONSUMIDORES; c++) {
+            boolean porLotes = c % 2 == 1;
+            Thread consumidor = new Thread(() -> {
+                List<Integer> lote = new ArrayList<>();
+                try {
+                    while (true) {
+                        if (porLotes) {
+                            lote.clear();
+                            int n = cola.tomarLote(3, lote, 10, TimeUnit.SECONDS);
+                            if (n == 0) break;
+                            tomados.addAndGet(n);
+                        } else {
+                            if (cola.tomar(10, TimeUnit.SECONDS) == null) break;
+                            tomados.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                terminados.countDown();
+            }, "consumidor-" + c);
+            consumidor.setDaemon(true); // Si la comprobación falla, no retienen la JVM
+            consumidor.start();
+        }
+        for (int i = 0; i < PUBLICADOS; i++) cola.agregar(i);
+        Thread.sleep(100); // Que vacíen la cola y queden esperando
+        long inicio = System.nanoTime();
+        cola.cerrar();
+        boolean despiertos = terminados.await(ESPERA_CIERRE_MS, TimeUnit.MILLISECONDS);
+        long micros = (System.nanoTime() - inicio) / 1000;
+        boolean correcta = despiertos && tomados.get() == PUBLICADOS;
+        System.out.println((correcta ? "OK    " : "FALLA ") + "cierre de " + politica + ": "
+                + (CONSUMIDORES - terminados.getCount()) + "/" + CONSUMIDORES + " consumidores despiertos en "
+                + micros + " us, " + tomados.get() + "/" + PUBLICADOS + " tomados");
+        return correcta;
+    }
+}
@@ -0,0 +1,52 @@
+// ComprobacionCupo.java
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Comprueba que el cupo de pedidos repartido por CAS entre los preparadores no se pasa del
+ * objetivo: 8 preparadores con lotes de 7 y un objetivo de 103 (que no es múltiplo del lote)
+ * tienen que generar exactamente 103 pedidos, y cada preparador tiene que despedirse con
+ * "Objetivo de pedidos alcanzado". Si la simulación se detiene por falta de casilleros, solo
+ * se exige no pasarse del objetivo.
+ *
+ * Uso: java ComprobacionCupo [corridas=5]
+ * Termina con código 1 si alguna corrida falla.
+ */
+public class ComprobacionCupo {
+    private static final int PREPARADORES = 8;
+    private static final int LOTE = 7;
+    private static final int OBJETIVO = 103;
+
+    public static void main(String[] args) {
+        int corridas = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        boolean ok = true;
+        for (int i = 1; i <= corridas; i++) {
+            ByteArrayOutputStream consola = new ByteArrayOutputStream();
+            ConfiguracionSimulacion config = new ConfiguracionSimulacion()
+                    .totalPedidos(OBJETIVO).preparadores(PREPARADORES).tamanoLote(LOTE)
+                    .filas(10).columnas(10)
+                    .demoraPreparador(1).demoraDespachador(1).demoraEntregador(1).demoraVerificador(1)
+                    .variacionDemora(0)
+                    .salida(new PrintStream(consola, true, StandardCharsets.UTF_8));
+            ResultadoSimulacion r = new Simulacion(config).ejecutar();
+
+            int generados = r.getFoto().getGenerados();
+            int alcanzados = contar(consola.toString(StandardCharsets.UTF_8), "terminado. Objetivo de pedidos alcanzado.");
+            boolean correcta = r.isBalanceCorrecto() && (r.isSinCasilleros()
+                    ? generados <= OBJETIVO
+                    : generados == OBJETIVO && alcanzados == PREPARADORES);
+            System.out.println((correcta ? "OK    " : "FALLA ") + "corrida " + i + ": " + generados + " generados de "
+                    + OBJETIVO + ", " + alcanzados + "/" + PREPARADORES + " preparadores con el objetivo alcanzado"
+                    + (r.isSinCasilleros() ? " (detenida por falta de casilleros)" : ""));
+            ok &= correcta;
+        }
+        if (!ok) System.exit(1);
+    }
+
+    private static int contar(String texto, String buscado) {
+        int n = 0;
+        for (int i = texto.indexOf(buscado); i >= 0; i = texto.indexOf(buscado, i + 1)) n++;
+        return n;
+    }
+}
@@ -0,0 +1,75 @@
+// ComprobacionLimite.java
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Comprueba la contabilidad de lugares de LimiteEtapa:
+ * - Capacidad 2 con BLOQUEAR: se reservan los 2 lugares, se cierra y se publican 10 pedidos
+ *   más sin lugar. Al tomar los 12, vuelven exactamente 2 lugares (ni más ni menos).
+ * - Una reserva interrumpida con la etapa llena devuelve 0 y deja la interrupción marcada.
+ * - Simulaciones con capacidad 2 y cada PoliticaDesborde terminan con el balance correcto.
+ *
+ * Uso: java ComprobacionLimite
+ * Termina con código 1 si alguna comprobación falla.
+ */
+public class ComprobacionLimite {
+    private static final int CAPACIDAD = 2;
+    private static final int SIN_LUGAR = 10;
+
+    public static void main(String[] args) {
+        boolean ok = comprobarLugares();
+        ok &= comprobarInterrupcion();
+        for (PoliticaDesborde politica : PoliticaDesborde.values()) {
+            ok &= comprobarSimulacion(politica);
+        }
+        if (!ok) System.exit(1);
+    }
+
+    private static boolean comprobarLugares() {
+        ColaEtapa<Pedido> cola = new BolsaAleatoria<>();
+        LimiteEtapa limite = new LimiteEtapa(CAPACIDAD, PoliticaDesborde.BLOQUEAR, System::nanoTime);
+        int reservados = limite.reservar(CAPACIDAD);
+        for (int i = 0; i < reservados; i++) cola.agregar(new Pedido());
+        limite.cerrar();
+        for (int i = 0; i < SIN_LUGAR; i++) {
+            if (limite.reservar(1) == 0) limite.admitirSinLugar(1); // Cerrado: no espera
+            cola.agregar(new Pedido());
+        }
+        int tomados = 0;
+        while (cola.tomar() != null) {
+            limite.liberar(1, cola);
+            tomados++;
+        }
+        int devueltos = limite.reservar(100);
+        boolean correcta = reservados == CAPACIDAD && tomados == CAPACIDAD + SIN_LUGAR && devueltos == CAPACIDAD;
+        System.out.println((correcta ? "OK    " : "FALLA ") + "capacidad " + CAPACIDAD + " con " + SIN_LUGAR
+                + " pedidos sin lugar: " + tomados + " tomados, " + devueltos + " lugares libres al vaciar (esperado "
+                + CAPACIDAD + ")");
+        return correcta;
+    }
+
+    private static boolean comprobarInterrupcion() {
+        LimiteEtapa limite = new LimiteEtapa(CAPACIDAD, PoliticaDesborde.BLOQUEAR, System::nanoTime);
+        limite.reservar(CAPACIDAD); // Etapa llena
+        Thread.currentThread().interrupt();
+        int reservados = limite.reservar(3);
+        boolean marcada = Thread.interrupted(); // Limpia la marca para lo que sigue
+        boolean correcta = reservados == 0 && marcada;
+        System.out.println((correcta ? "OK    " : "FALLA ") + "reserva interrumpida con la etapa llena: "
+                + reservados + " lugares, interrupción " + (marcada ? "marcada" : "perdida"));
+        return correcta;
+    }
+
+    private static boolean comprobarSimulacion(PoliticaDesborde politica) {
+        ConfiguracionSimulacion config = new ConfiguracionSimulacion()
+                .totalPedidos(200).capacidadEtapa(CAPACIDAD, politica).tamanoLote(3)
+                .demoraPreparador(1).demoraDespachador(3).demoraEntregador(3).demoraVerificador(3)
+                .variacionDemora(0)
+                .salida(new PrintStream(OutputStream.nullOutputStream()));
+        ResultadoSimulacion r = new Simulacion(config).ejecutar();
+        boolean correcta = r.isBalanceCorrecto();
+        System.out.println((correcta ? "OK    " : "FALLA ") + "simulación con capacidad " + CAPACIDAD + " y " + politica
+                + ": " + r.getFoto().getGenerados() + " generados, balance " + (correcta ? "correcto" : "incorrecto"));
+        return correcta;
+    }
+}
@@ -0,0 +1,260 @@
+// ConfiguracionSimulacion.java
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Parámetros de una corrida de Simulacion. Arranca con los valores de las constantes de Main
+ * y se ajusta encadenando los métodos (como DefinicionEtapa), o por nombre con set(), que es
+ * lo que usa BarridoParametros para recorrer una grilla de configuraciones.
+ *
+ * No es thread-safe: cada simulación recibe su propia configuración (ver copia()).
+ */
+public class ConfiguracionSimulacion {
+    // Matriz y pedidos
+    private int filas = Main.NUM_FILAS_CASILLEROS;
+    private int columnas = Main.NUM_COLS_CASILLEROS;
+    private int totalPedidos = Main.TOTAL_PEDIDOS_A_PROCESAR;
+    private ModoConcurrencia modoConcurrencia = Main.MODO_CONCURRENCIA;
+
+    // Trabajadores, demoras (ms) y probabilidades
+    private int preparadores = Main.NUM_PREPARADORES;
+    private int despachadores = Main.NUM_DESPACHADORES;
+    private int entregadores = Main.NUM_ENTREGADORES;
+    private int verificadores = Main.NUM_VERIFICADORES;
+    private int demoraPreparador = Main.DEMORA_BASE_PREPARADOR;
+    private int demoraDespachador = Main.DEMORA_BASE_DESPACHADOR;
+    private int demoraEntregador = Main.DEMORA_BASE_ENTREGADOR;
+    private int demoraVerificador = Main.DEMORA_BASE_VERIFICADOR;
+    private int variacionDemora = Main.VARIACION_DEMORA;
+    private double probDespacho = Main.PROB_DESPACHO_OK;
+    private double probEntrega = Main.PROB_ENTREGA_OK;
+    private double probVerificacion = Main.PROB_VERIFICACION_OK;
+
+    // Etapas
+    private PoliticaSeleccion politicaSeleccion = Main.POLITICA_SELECCION;
+    private ModoHilos modoHilos = Main.MODO_HILOS;
+    private int tamanoLote = Main.TAMANO_LOTE;
+    private int capacidadEtapa = Main.CAPACIDAD_ETAPA;
+    private PoliticaDesborde desbordeEtapa = Main.DESBORDE_ETAPA;
+    private long intervaloRebalanceoMs = Main.INTERVALO_REBALANCEO_MS;
+    private int minTrabajadoresEtapa = Main.MIN_TRABAJADORES_ETAPA;
+    private int maxTrabajadoresEtapa = Main.MAX_TRABAJADORES_ETAPA;
+
+    // Salidas (null = desactivada)
+    private long intervaloLogMs = Main.INTERVALO_LOG_MS;
+    private String archivoLog = Main.ARCHIVO_LOG;
+    private String archivoMetricas = Main.ARCHIVO_METRICAS;
+    private FormatoMetricas formatoMetricas = Main.FORMATO_METRICAS;
+    private long intervaloMetricasMs = Main.INTERVALO_METRICAS_MS;
+    private double constanteEwmaSeg = Main.CONSTANTE_EWMA_SEG;
+    private int puertoMetricas = Main.PUERTO_METRICAS;
+    private String archivoPedidos = Main.ARCHIVO_PEDIDOS;
+    private String archivoDiario = Main.ARCHIVO_DIARIO;
+    private long intervaloDiarioMs = Main.INTERVALO_DIARIO_MS;
+    private PrintStream salida = System.out; // Consola de la corrida (no puede ser null)
+
+    public ConfiguracionSimulacion filas(int filas) { this.filas = positivo("filas", filas); return this; }
+    public ConfiguracionSimulacion columnas(int columnas) { this.columnas = positivo("columnas", columnas); return this; }
+    public ConfiguracionSimulacion totalPedidos(int totalPedidos) { this.totalPedidos = positivo("totalPedidos", totalPedidos); return this; }
+    /** @param modo Sincronización de la matriz; en ZONAS hay una zona por preparador. */
+    public ConfiguracionSimulacion modoConcurrencia(ModoConcurrencia modo) { this.modoConcurrencia = modo; return this; }
+    public ConfiguracionSimulacion preparadores(int cantidad) { this.preparadores = positivo("preparadores", cantidad); return this; }
+    public ConfiguracionSimulacion despachadores(int cantidad) { this.despachadores = positivo("despachadores", cantidad); return this; }
+    public ConfiguracionSimulacion entregadores(int cantidad) { this.entregadores = positivo("entregadores", cantidad); return this; }
+    public ConfiguracionSimulacion verificadores(int cantidad) { this.verificadores = positivo("verificadores", cantidad); return this; }
+    public ConfiguracionSimulacion demoraPreparador(int ms) { this.demoraPreparador = noNegativo("demoraPreparador", ms); return this; }
+    public ConfiguracionSimulacion demoraDespachador(int ms) { this.demoraDespachador = noNegativo("demoraDespachador", ms); return this; }
+    public ConfiguracionSimulacion demoraEntregador(int ms) { this.demoraEntregador = noNegativo("demoraEntregador", ms); return this; }
+    public ConfiguracionSimulacion demoraVerificador(int ms) { this.demoraVerificador = noNegativo("demoraVerificador", ms); return this; }
+    public ConfiguracionSimulacion variacionDemora(int ms) { this.variacionDemora = noNegativo("variacionDemora", ms); return this; }
+    public ConfiguracionSimulacion probDespacho(double p) { this.probDespacho = probabilidad("probDespacho", p); return this; }
+    public ConfiguracionSimulacion probEntrega(double p) { this.probEntrega = probabilidad("probEntrega", p); return this; }
+    public ConfiguracionSimulacion probVerificacion(double p) { this.probVerificacion = probabilidad("probVerificacion", p); return this; }
+    public ConfiguracionSimulacion politicaSeleccion(PoliticaSeleccion politica) { this.politicaSeleccion = politica; return this; }
+    public ConfiguracionSimulacion modoHilos(ModoHilos modo) { this.modoHilos = modo; return this; }
+    public ConfiguracionSimulacion tamanoLote(int tamano) { this.tamanoLote = positivo("tamanoLote", tamano); return this; }
+    public ConfiguracionSimulacion intervaloLogMs(long ms) { this.intervaloLogMs = ms; return this; }
+    public ConfiguracionSimulacion archivoLog(String archivo) { this.archivoLog = archivo; return this; }
+    /** @param archivo Archivo de la serie de métricas, o null para no exportarla. */
+    public ConfiguracionSimulacion archivoMetricas(String archivo) { this.archivoMetricas = archivo; return this; }
+    public ConfiguracionSimulacion formatoMetricas(FormatoMetricas formato) { this.formatoMetricas = formato; return this; }
+    public ConfiguracionSimulacion intervaloMetricasMs(long ms) { this.intervaloMetricasMs = ms; return this; }
+    public ConfiguracionSimulacion constanteEwmaSeg(double seg) { this.constanteEwmaSeg = seg; return this; }
+    /** @param puerto Puerto del endpoint Prometheus (0 = cualquiera libre, -1 = desactivado). */
+    public ConfiguracionSimulacion puertoMetricas(int puerto) { this.puertoMetricas = puerto; return this; }
+    /** @param archivo Archivo de desborde de los pedidos terminados, o null para dejarlos en memoria. */
+    public ConfiguracionSimulacion archivoPedidos(String archivo) { this.archivoPedidos = archivo; return this; }
+    /** @param archivo Diario de transiciones para recuperar la corrida, o null para no llevarlo. */
+    public ConfiguracionSimulacion archivoDiario(String archivo) { this.archivoDiario = archivo; return this; }
+    public ConfiguracionSimulacion intervaloDiarioMs(long ms) { this.intervaloDiarioMs = ms; return this; }
+    /**
+     * @param salida Dónde escriben sus mensajes de avance la simulación y sus trabajadores
+     *               (los errores siguen yendo a System.err). BarridoParametros la silencia por corrida.
+     */
+    public ConfiguracionSimulacion salida(PrintStream salida) {
+        if (salida == null) throw new IllegalArgumentException("La salida no puede ser null.");
+        this.salida = salida;
+        return this;
+    }
+
+    /** Capacidad de la cola de cada etapa (0 = sin límite) y qué hacer cuando está llena. */
+    public ConfiguracionSimulacion capacidadEtapa(int capacidad, PoliticaDesborde desborde) {
+        this.capacidadEtapa = noNegativo("capacidadEtapa", capacidad);
+        this.desbordeEtapa = desborde;
+        return this;
+    }
+
+    /** Rebalanceo entre etapas (intervalo <= 0 = desactivado) y límites de trabajadores por etapa. */
+    public ConfiguracionSimulacion rebalanceo(long intervaloMs, int minimo, int maximo) {
+        if (minimo < 1 || maximo < minimo) {
+            throw new IllegalArgumentException("Límites inválidos: mínimo " + minimo + ", máximo " + maximo);
+        }
+        this.intervaloRebalanceoMs = intervaloMs;
+        this.minTrabajadoresEtapa = minimo;
+        this.maxTrabajadoresEtapa = maximo;
+        return this;
+    }
+
+    /**
+     * Asigna un parámetro por nombre, con el valor como texto. Los nombres son los de los
+     * métodos de arriba; los compuestos se asignan por partes (capacidadEtapa, desbordeEtapa,
+     * intervaloRebalanceoMs, minTrabajadoresEtapa, maxTrabajadoresEtapa).
+     * @throws IllegalArgumentException Si el parámetro no existe o el valor no es válido.
+     */
+    public ConfiguracionSimulacion set(String parametro, String valor) {
+        switch (parametro) {
+            case "filas": return filas(Integer.parseInt(valor));
+            case "columnas": return columnas(Integer.parseInt(valor));
+            case "totalPedidos": return totalPedidos(Integer.parseInt(valor));
+            case "modoConcurrencia": return modoConcurrencia(ModoConcurrencia.valueOf(valor.toUpperCase(Locale.ROOT)));
+            case "preparadores": return preparadores(Integer.parseInt(valor));
+            case "despachadores": return despachadores(Integer.parseInt(valor));
+            case "entregadores": return entregadores(Integer.parseInt(valor));
+            case "verificadores": return verificadores(Integer.parseInt(valor));
+            case "demoraPreparador": return demoraPreparador(Integer.parseInt(valor));
+            case "demoraDespachador": return demoraDespachador(Integer.parseInt(valor));
+            case "demoraEntregador": return demoraEntregador(Integer.parseInt(valor));
+            case "demoraVerificador": return demoraVerificador(Integer.parseInt(valor));
+            case "variacionDemora": return variacionDemora(Integer.parseInt(valor));
+            case "probDespacho": return probDespacho(Double.parseDouble(valor));
+            case "probEntrega": return probEntrega(Double.parseDouble(valor));
+            case "probVerificacion": return probVerificacion(Double.parseDouble(valor));
+            case "politicaSeleccion": return politicaSeleccion(PoliticaSeleccion.valueOf(valor.toUpperCase(Locale.ROOT)));
+            case "modoHilos": return modoHilos(ModoHilos.valueOf(valor.toUpperCase(Locale.ROOT)));
+            case "tamanoLote": return tamanoLote(Integer.parseInt(valor));
+            case "capacidadEtapa": return capacidadEtapa(Integer.parseInt(valor), desbordeEtapa);
+            case "desbordeEtapa": return capacidadEtapa(capacidadEtapa, PoliticaDesborde.valueOf(valor.toUpperCase(Locale.ROOT)));
+            case "intervaloRebalanceoMs": return rebalanceo(Long.parseLong(valor), minTrabajadoresEtapa, maxTrabajadoresEtapa);
+            case "minTrabajadoresEtapa": return rebalanceo(intervaloRebalanceoMs, Integer.parseInt(valor), Math.max(maxTrabajadoresEtapa, Integer.parseInt(valor)));
+            case "maxTrabajadoresEtapa": return rebalanceo(intervaloRebalanceoMs, minTrabajadoresEtapa, Integer.parseInt(valor));
+            default: throw new IllegalArgumentException("Parámetro desconocido: " + parametro);
+        }
+    }
+
+    /** Una copia independiente, para variarla sin tocar el original. */
+    public ConfiguracionSimulacion copia() {
+        ConfiguracionSimulacion c = new ConfiguracionSimulacion();
+        c.filas = filas; c.columnas = columnas; c.totalPedidos = totalPedidos;
+        c.modoConcurrencia = modoConcurrencia;
+        c.preparadores = preparadores; c.despachadores = despachadores;
+        c.entregadores = entregadores; c.verificadores = verificadores;
+        c.demoraPreparador = demoraPreparador; c.demoraDespachador = demoraDespachador;
+        c.demoraEntregador = demoraEntregador; c.demoraVerificador = demoraVerificador;
+        c.variacionDemora = variacionDemora;
+        c.probDespacho = probDespacho; c.probEntrega = probEntrega; c.probVerificacion = probVerificacion;
+        c.politicaSeleccion = politicaSeleccion; c.modoHilos = modoHilos; c.tamanoLote = tamanoLote;
+        c.capacidadEtapa = capacidadEtapa; c.desbordeEtapa = desbordeEtapa;
+        c.intervaloRebalanceoMs = intervaloRebalanceoMs;
+        c.minTrabajadoresEtapa = minTrabajadoresEtapa; c.maxTrabajadoresEtapa = maxTrabajadoresEtapa;
+        c.intervaloLogMs = intervaloLogMs; c.archivoLog = archivoLog;
+        c.archivoMetricas = archivoMetricas; c.formatoMetricas = formatoMetricas;
+        c.intervaloMetricasMs = intervaloMetricasMs; c.constanteEwmaSeg = constanteEwmaSeg;
+        c.puertoMetricas = puertoMetricas; c.archivoPedidos = archivoPedidos;
+        c.archivoDiario = archivoDiario; c.intervaloDiarioMs = intervaloDiarioMs;
+        c.salida = salida;
+        return c;
+    }
+
+    /**
+     * El flujo del motor de etapas con estos parámetros: despacho (libera el casillero o lo
+     * deja fuera de servicio), entrega y verificación, con capacidad y límites de rebalanceo
+     * si están configurados.
+     */
+    public List<DefinicionEtapa> flujo() {
+        List<DefinicionEtapa> etapas = Arrays.asList(
+            new DefinicionEtapa("despachador", "Preparación")
+                .trabajadores(despachadores)
+                .demora(DistribucionDemora.uniforme(demoraDespachador, variacionDemora))
+                .probExito(probDespacho)
+                .liberaCasillero()
+                .transicion("despachado"),
+            new DefinicionEtapa("entregador", "Tránsito")
+                .trabajadores(entregadores)
+                .demora(DistribucionDemora.uniforme(demoraEntregador, variacionDemora))
+                .probExito(probEntrega)
+                .transicion("entregado"),
+            new DefinicionEtapa("verificador", "Entregados")
+                .trabajadores(verificadores)
+                .demora(DistribucionDemora.uniforme(demoraVerificador, variacionDemora))
+                .probExito(probVerificacion)
+                .transicion("verificado"));
+        for (DefinicionEtapa etapa : etapas) {
+            etapa.politica(politicaSeleccion).tamanoLote(tamanoLote).capacidad(capacidadEtapa, desbordeEtapa);
+            if (intervaloRebalanceoMs > 0) etapa.limites(minTrabajadoresEtapa, maxTrabajadoresEtapa);
+        }
+        return etapas;
+    }
+
+    public int getFilas() { return filas; }
+    public int getColumnas() { return columnas; }
+    public int getTotalPedidos() { return totalPedidos; }
+    public ModoConcurrencia getModoConcurrencia() { return modoConcurrencia; }
+    public int getPreparadores() { return preparadores; }
+    public int getDespachadores() { return despachadores; }
+    public int getEntregadores() { return entregadores; }
+    public int getVerificadores() { return verificadores; }
+    public int getDemoraPreparador() { return demoraPreparador; }
+    public int getDemoraDespachador() { return demoraDespachador; }
+    public int getDemoraEntregador() { return demoraEntregador; }
+    public int getDemoraVerificador() { return demoraVerificador; }
+    public int getVariacionDemora() { return variacionDemora; }
+    public double getProbDespacho() { return probDespacho; }
+    public double getProbEntrega() { return probEntrega; }
+    public double getProbVerificacion() { return probVerificacion; }
+    public PoliticaSeleccion getPoliticaSeleccion() { return politicaSeleccion; }
+    public ModoHilos getModoHilos() { return modoHilos; }
+    public int getTamanoLote() { return tamanoLote; }
+    public int getCapacidadEtapa() { return capacidadEtapa; }
+    public PoliticaDesborde getDesbordeEtapa() { return desbordeEtapa; }
+    public long getIntervaloRebalanceoMs() { return intervaloRebalanceoMs; }
+    public int getMinTrabajadoresEtapa() { return minTrabajadoresEtapa; }
+    public int getMaxTrabajadoresEtapa() { return maxTrabajadoresEtapa; }
+    public long getIntervaloLogMs() { return intervaloLogMs; }
+    public String getArchivoLog() { return archivoLog; }
+    public String getArchivoMetricas() { return archivoMetricas; }
+    public FormatoMetricas getFormatoMetricas() { return formatoMetricas; }
+    public long getIntervaloMetricasMs() { return intervaloMetricasMs; }
+    public double getConstanteEwmaSeg() { return constanteEwmaSeg; }
+    public int getPuertoMetricas() { return puertoMetricas; }
+    public String getArchivoPedidos() { return archivoPedidos; }
+    public String getArchivoDiario() { return archivoDiario; }
+    public long getIntervaloDiarioMs() { return intervaloDiarioMs; }
+    public PrintStream getSalida() { return salida; }
+
+    private static int positivo(String nombre, int valor) {
+        if (valor <= 0) throw new IllegalArgumentException(nombre + " debe ser positivo: " + valor);
+        return valor;
+    }
+
+    private static int noNegativo(String nombre, int valor) {
+        if (valor < 0) throw new IllegalArgumentException(nombre + " no puede ser negativo: " + valor);
+        return valor;
+    }
+
+    private static double probabilidad(String nombre, double valor) {
+        if (valor < 0 || valor > 1) throw new IllegalArgumentException(nombre + " debe estar entre 0 y 1: " + valor);
+        return valor;
+    }
+}
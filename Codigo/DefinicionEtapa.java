@@ -0,0 +1,156 @@
+// DefinicionEtapa.java
+import java.util.Comparator;
+
+/**
+ * Declaración de una etapa de procesamiento del flujo: de qué cola toma pedidos, cuántos
+ * trabajadores tiene, cómo elige el pedido, cuánto tarda, con qué probabilidad tiene éxito y
+ * a dónde manda el pedido según el resultado. MotorEtapas lanza los trabajadores y
+ * RegistroPedidos crea una cola de entrada por etapa, en el orden de la lista.
+ *
+ * Se configura encadenando los métodos antes de crear el registro; después no debe cambiar.
+ * Por defecto el éxito va a la etapa siguiente de la lista (o a VERIFICADOS si es la última)
+ * y el fallo a FALLIDOS.
+ */
+public class DefinicionEtapa {
+    /** Destino final de los pedidos exitosos de la última etapa. */
+    public static final String VERIFICADOS = "verificados";
+    /** Destino final de los pedidos que fallan. */
+    public static final String FALLIDOS = "fallidos";
+
+    private final String nombre;
+    private final String cola;
+    private int trabajadores = 1;
+    private int minTrabajadores = -1;      // -1 = igual a 'trabajadores' (sin rebalanceo)
+    private int maxTrabajadores = -1;
+    private PoliticaSeleccion politica = PoliticaSeleccion.ALEATORIA;
+    private Comparator<Pedido> prioridad = Comparator.comparingInt(Pedido::getId);
+    private DistribucionDemora demora = DistribucionDemora.constante(0);
+    private double probExito = 1.0;
+    private String siguiente;              // null = la etapa siguiente de la lista
+    private String siguienteSiFalla = FALLIDOS;
+    private boolean liberaCasillero = false;
+    private String transicion;             // Para el evento de JFR; null = el nombre de la etapa
+    private int tamanoLote = 1;
+    private int capacidad = 0;             // 0 = cola sin límite
+    private PoliticaDesborde desborde = PoliticaDesborde.BLOQUEAR;
+
+    /**
+     * @param nombre Nombre de la etapa y rol de sus trabajadores (por ejemplo "despachador").
+     * @param cola Nombre de su cola de entrada, el que aparece en logs y métricas (por ejemplo "Preparación").
+     */
+    public DefinicionEtapa(String nombre, String cola) {
+        if (nombre == null || cola == null) throw new IllegalArgumentException("La etapa necesita nombre y cola.");
+        this.nombre = nombre;
+        this.cola = cola;
+    }
+
+    public DefinicionEtapa trabajadores(int cantidad) {
+        if (cantidad < 0) throw new IllegalArgumentException("La cantidad de trabajadores no puede ser negativa.");
+        this.trabajadores = cantidad;
+        return this;
+    }
+
+    /**
+     * Límites para RebalanceadorEtapas: la etapa arranca con 'trabajadores' activos y el
+     * rebalanceo puede moverla entre 'minimo' y 'maximo'. Se lanzan 'maximo' hilos.
+     */
+    public DefinicionEtapa limites(int minimo, int maximo) {
+        if (minimo < 1 || maximo < minimo) {
+            throw new IllegalArgumentException("Límites inválidos: mínimo " + minimo + ", máximo " + maximo);
+        }
+        this.minTrabajadores = minimo;
+        this.maxTrabajadores = maximo;
+        return this;
+    }
+
+    public DefinicionEtapa politica(PoliticaSeleccion politica) {
+        this.politica = politica;
+        return this;
+    }
+
+    /** Orden de la política PRIORIDAD (el menor sale primero). */
+    public DefinicionEtapa prioridad(Comparator<Pedido> prioridad) {
+        this.prioridad = prioridad;
+        return this;
+    }
+
+    public DefinicionEtapa demora(DistribucionDemora demora) {
+        this.demora = demora;
+        return this;
+    }
+
+    public DefinicionEtapa probExito(double probExito) {
+        if (probExito < 0 || probExito > 1) throw new IllegalArgumentException("La probabilidad debe estar entre 0 y 1.");
+        this.probExito = probExito;
+        return this;
+    }
+
+    /** Etapa (por nombre) o VERIFICADOS a la que va el pedido si la etapa tiene éxito. */
+    public DefinicionEtapa siguiente(String etapa) {
+        this.siguiente = etapa;
+        return this;
+    }
+
+    /** Etapa (por nombre) o FALLIDOS a la que va el pedido si la etapa falla. */
+    public DefinicionEtapa siguienteSiFalla(String etapa) {
+        this.siguienteSiFalla = etapa;
+        return this;
+    }
+
+    /**
+     * La etapa resuelve el casillero del pedido: con éxito lo libera y con fallo lo pone
+     * fuera de servicio (lo que hacía el despachador). Un pedido sin casillero falla.
+     */
+    public DefinicionEtapa liberaCasillero() {
+        this.liberaCasillero = true;
+        return this;
+    }
+
+    /** Nombre de la transición exitosa en los eventos de JFR (por ejemplo "despachado"). */
+    public DefinicionEtapa transicion(String transicion) {
+        this.transicion = transicion;
+        return this;
+    }
+
+    /** Pedidos que cada trabajador toma y entrega por interacción con el registro. */
+    public DefinicionEtapa tamanoLote(int tamanoLote) {
+        if (tamanoLote <= 0) throw new IllegalArgumentException("El tamaño de lote debe ser positivo.");
+        this.tamanoLote = tamanoLote;
+        return this;
+    }
+
+    /**
+     * Acota la cola de entrada de la etapa a 'capacidad' pedidos; lo que no entra se resuelve
+     * con la política de desborde. 0 la deja sin límite.
+     */
+    public DefinicionEtapa capacidad(int capacidad, PoliticaDesborde desborde) {
+        if (capacidad < 0) throw new IllegalArgumentException("La capacidad no puede ser negativa.");
+        this.capacidad = capacidad;
+        this.desborde = desborde;
+        return this;
+    }
+
+    public String getNombre() { return nombre; }
+    public String getCola() { return cola; }
+    public int getTrabajadores() { return trabajadores; }
+    public int getMinTrabajadores() { return minTrabajadores >= 0 ? Math.min(minTrabajadores, trabajadores) : trabajadores; }
+    public int getMaxTrabajadores() { return maxTrabajadores >= 0 ? Math.max(maxTrabajadores, trabajadores) : trabajadores; }
+    public PoliticaSeleccion getPolitica() { return politica; }
+    public Comparator<Pedido> getPrioridad() { return prioridad; }
+    public DistribucionDemora getDemora() { return demora; }
+    public double getProbExito() { return probExito; }
+    public String getSiguiente() { return siguiente; }
+    public String getSiguienteSiFalla() { return siguienteSiFalla; }
+    public boolean isLiberaCasillero() { return liberaCasillero; }
+    public String getTransicion() { return transicion != null ? transicion : nombre; }
+    public int getTamanoLote() { return tamanoLote; }
+    public int getCapacidad() { return capacidad; }
+    public PoliticaDesborde getDesborde() { return desborde; }
+
+    @Override
+    public String toString() {
+        String limites = getMinTrabajadores() == getMaxTrabajadores() ? "" : " (" + getMinTrabajadores() + ".." + getMaxTrabajadores() + ")";
+        return nombre + " [cola=" + cola + ", trabajadores=" + trabajadores + limites + ", politica=" + politica
+                + ", probExito=" + probExito + (capacidad > 0 ? ", capacidad=" + capacidad + " " + desborde : "") + "]";
+    }
+}
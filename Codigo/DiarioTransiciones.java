@@ -0,0 +1,289 @@
+// DiarioTransiciones.java
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Diario de escritura anticipada (write-ahead) de las transiciones de pedidos y casilleros,
+ * para reconstruir el estado si la JVM muere a mitad de corrida (ver RecuperacionDiario).
+ *
+ * Es un archivo binario de solo agregado, escrito a través de un FileChannel mapeado en
+ * memoria por segmentos: registrar una transición reserva un lugar con un getAndAdd y copia
+ * 32 bytes al mapeo, sin llamadas al sistema ni locks. Un hilo aparte hace el commit en
+ * grupo: cada 'intervaloMs' fuerza a disco todo lo escrito desde el anterior y mapea de
+ * antemano el segmento siguiente, así los trabajadores nunca esperan E/S.
+ *
+ * Formato: un encabezado de TAM_ENCABEZADO bytes (mágico, versión, tamaño de registro,
+ * filas y columnas de la matriz, si se cerró limpio y cuándo se creó) y después registros de
+ * TAM_REGISTRO bytes: pedido, casillero, hora (epoch ms), etapa, reservado, suma de control
+ * y tipo. El tipo se escribe último y 0 significa lugar vacío (reservado y no escrito si la
+ * JVM murió justo ahí); la suma de control descarta los registros escritos a medias.
+ */
+public class DiarioTransiciones {
+    static final int MAGICO = 0x44494152; // "DIAR"
+    static final int VERSION = 1;
+    static final int TAM_ENCABEZADO = 64;
+    static final int TAM_REGISTRO = 32;
+    // Múltiplo de TAM_REGISTRO: ningún registro queda partido entre dos segmentos
+    static final int TAM_SEGMENTO = 1 << 20;
+
+    // Encabezado
+    static final int ENC_MAGICO = 0, ENC_VERSION = 4, ENC_TAM_REGISTRO = 8, ENC_FILAS = 12,
+            ENC_COLUMNAS = 16, ENC_CERRADO = 20, ENC_CREADO = 24;
+    // Registro
+    static final int REG_PEDIDO = 0, REG_CASILLERO = 4, REG_MILLIS = 8, REG_ETAPA = 16,
+            REG_SUMA = 24, REG_TIPO = 28;
+
+    /** Transiciones que se registran. El código en disco es ordinal + 1 (0 = vacío). */
+    public enum Tipo {
+        /** El pedido entra a la cola de una etapa; en la etapa 0 con su casillero (creación). */
+        INGRESO,
+        VERIFICADO,
+        FALLIDO,
+        CASILLERO_LIBERADO,
+        CASILLERO_FUERA_DE_SERVICIO;
+
+        private static final Tipo[] TIPOS = values();
+
+        int codigo() { return ordinal() + 1; }
+
+        /** @return El tipo del código, o null si no es válido. */
+        static Tipo deCodigo(int codigo) {
+            return codigo >= 1 && codigo <= TIPOS.length ? TIPOS[codigo - 1] : null;
+        }
+    }
+
+    private final Path archivo;
+    private final int filas;
+    private final int columnas;
+    private FileChannel canal;
+    // Segmentos mapeados por índice; se reemplaza el arreglo entero al crecer (bajo 'mapeo')
+    private volatile MappedByteBuffer[] segmentos = new MappedByteBuffer[0];
+    private final ReentrantLock mapeo = new ReentrantLock();
+    private final AtomicLong siguiente = new AtomicLong(); // Posición del próximo registro
+    private volatile long confirmado;                      // Forzado a disco hasta acá
+    private volatile boolean activo = false;
+    private ScheduledExecutorService confirmador;
+
+    /**
+     * @param archivo Archivo del diario.
+     * @param filas Filas de la matriz (quedan en el encabezado para validar la recuperación).
+     * @param columnas Columnas de la matriz.
+     */
+    public DiarioTransiciones(Path archivo, int filas, int columnas) {
+        this.archivo = archivo;
+        this.filas = filas;
+        this.columnas = columnas;
+    }
+
+    /**
+     * Abre el diario y programa el commit en grupo cada 'intervaloMs'. Si el archivo no se
+     * puede abrir se informa y no se registra nada.
+     * @param intervaloMs Intervalo entre commits en milisegundos.
+     * @param continuarDesde Posición donde seguir agregando (RecuperacionDiario.getFin()), o
+     *                       0 para empezar un diario nuevo (reemplaza el archivo).
+     */
+    public void iniciar(long intervaloMs, long continuarDesde) {
+        try {
+            if (continuarDesde > 0) {
+                canal = FileChannel.open(archivo, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            } else {
+                canal = FileChannel.open(archivo, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            }
+            // Todavía no hay otros hilos: se mapea directo (segmento() no mapea con el diario inactivo)
+            MappedByteBuffer primero = canal.map(FileChannel.MapMode.READ_WRITE, 0, TAM_SEGMENTO);
+            segmentos = new MappedByteBuffer[] { primero };
+            if (continuarDesde > 0) {
+                siguiente.set(continuarDesde);
+            } else {
+                primero.putInt(ENC_MAGICO, MAGICO);
+                primero.putInt(ENC_VERSION, VERSION);
+                primero.putInt(ENC_TAM_REGISTRO, TAM_REGISTRO);
+                primero.putInt(ENC_FILAS, filas);
+                primero.putInt(ENC_COLUMNAS, columnas);
+                primero.putLong(ENC_CREADO, System.currentTimeMillis());
+                siguiente.set(TAM_ENCABEZADO);
+            }
+            primero.putInt(ENC_CERRADO, 0); // Hasta detener(): si se lee así, la corrida no terminó
+            primero.force();
+            confirmado = siguiente.get();
+        } catch (IOException e) {
+            System.err.println("No se pudo abrir el diario " + archivo + ": " + e.getMessage());
+            cerrarCanal();
+            return;
+        }
+        activo = true;
+        confirmador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "diario-transiciones");
+            t.setDaemon(true);
+            return t;
+        });
+        confirmador.scheduleAtFixedRate(this::confirmar, intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Detiene el commit en grupo, fuerza lo pendiente y marca el diario como cerrado limpio:
+     * la próxima corrida empieza de cero en lugar de recuperar.
+     */
+    public void detener() {
+        if (!activo) return;
+        activo = false;
+        confirmador.shutdown();
+        try {
+            if (!confirmador.awaitTermination(1, TimeUnit.SECONDS)) confirmador.shutdownNow();
+        } catch (InterruptedException e) {
+            confirmador.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        confirmar();
+        MappedByteBuffer primero = segmentos[0];
+        primero.putInt(ENC_CERRADO, 1);
+        primero.force();
+        cerrarCanal();
+    }
+
+    // --- Registro de transiciones (cualquier hilo, sin locks) ---
+
+    /** El pedido entra a la cola de 'etapa' (con su casillero, si todavía tiene uno). */
+    public void ingreso(Pedido p, int etapa) {
+        registrar(Tipo.INGRESO, p.getId(), p.getCasilleroIdAsignado(), etapa);
+    }
+
+    /** El pedido llegó a un estado final (VERIFICADO o FALLIDO) desde 'etapa'. */
+    public void finalizado(Pedido p, EstadoPedido fin) {
+        registrar(fin == EstadoPedido.VERIFICADO ? Tipo.VERIFICADO : Tipo.FALLIDO, p.getId(), -1, p.getEtapaTomado());
+    }
+
+    public void casilleroLiberado(int casilleroId) {
+        registrar(Tipo.CASILLERO_LIBERADO, 0, casilleroId, -1);
+    }
+
+    public void casilleroFueraDeServicio(int casilleroId) {
+        registrar(Tipo.CASILLERO_FUERA_DE_SERVICIO, 0, casilleroId, -1);
+    }
+
+    /**
+     * Reserva un lugar y escribe el registro en el mapeo. Los registros de hilos distintos
+     * van a posiciones distintas, y las escrituras absolutas no tocan la posición del buffer,
+     * así que comparten el mismo MappedByteBuffer sin sincronizar.
+     */
+    private void registrar(Tipo tipo, int pedido, int casillero, int etapa) {
+        if (!activo) return;
+        long posicion = siguiente.getAndAdd(TAM_REGISTRO);
+        MappedByteBuffer seg;
+        try {
+            seg = segmento((int) (posicion / TAM_SEGMENTO));
+        } catch (IOException e) {
+            activo = false;
+            System.err.println("No se pudo extender el diario " + archivo + ": " + e.getMessage() + ". Se deja de registrar.");
+            return;
+        }
+        if (seg == null) return; // El diario se detuvo mientras tanto
+        int o = (int) (posicion % TAM_SEGMENTO);
+        long millis = System.currentTimeMillis();
+        seg.putInt(o + REG_PEDIDO, pedido);
+        seg.putInt(o + REG_CASILLERO, casillero);
+        seg.putLong(o + REG_MILLIS, millis);
+        seg.putInt(o + REG_ETAPA, etapa);
+        seg.putInt(o + REG_SUMA, suma(tipo.codigo(), pedido, casillero, millis, etapa));
+        seg.putInt(o + REG_TIPO, tipo.codigo()); // Último: hasta acá el lugar se lee como vacío
+    }
+
+    /** Suma de control de un registro (incluye el tipo, para descartar uno escrito a medias). */
+    static int suma(int tipo, int pedido, int casillero, long millis, int etapa) {
+        int h = tipo * 0x9E3779B1;
+        h = (h ^ pedido) * 0x85EBCA6B;
+        h = (h ^ casillero) * 0xC2B2AE35;
+        h = (h ^ (int) millis ^ (int) (millis >>> 32)) * 0x9E3779B1;
+        h = (h ^ etapa) * 0x85EBCA6B;
+        return h ^ (h >>> 16);
+    }
+
+    // --- Commit en grupo ---
+
+    /**
+     * Fuerza a disco los segmentos escritos desde el último commit y mapea el siguiente si
+     * la escritura ya pasó la mitad del actual. Un registro reservado pero no escrito todavía
+     * puede quedar afuera de este commit; entra en el siguiente.
+     */
+    private void confirmar() {
+        long hasta = siguiente.get();
+        long desde = confirmado;
+        if (hasta > desde) {
+            MappedByteBuffer[] segs = segmentos;
+            int ultimo = (int) ((hasta - 1) / TAM_SEGMENTO);
+            for (int i = (int) (desde / TAM_SEGMENTO); i <= ultimo && i < segs.length; i++) {
+                if (segs[i] != null) segs[i].force();
+            }
+            confirmado = hasta;
+        }
+        if (hasta % TAM_SEGMENTO > TAM_SEGMENTO / 2) {
+            try {
+                segmento((int) (hasta / TAM_SEGMENTO) + 1);
+            } catch (IOException e) {
+                System.err.println("No se pudo extender el diario " + archivo + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * El segmento 'indice', mapeándolo (y extendiendo el archivo) si todavía no lo estaba.
+     * Devuelve null si hay que mapear y el diario ya se detuvo: detener() cierra el canal
+     * bajo el mismo lock, así que un trabajador que llega tarde no lo encuentra a medias.
+     */
+    private MappedByteBuffer segmento(int indice) throws IOException {
+        MappedByteBuffer[] segs = segmentos;
+        if (indice < segs.length && segs[indice] != null) return segs[indice];
+        mapeo.lock();
+        try {
+            segs = segmentos;
+            if (indice < segs.length && segs[indice] != null) return segs[indice];
+            if (canal == null || !activo) return null;
+            MappedByteBuffer nuevo = canal.map(FileChannel.MapMode.READ_WRITE, (long) indice * TAM_SEGMENTO, TAM_SEGMENTO);
+            MappedByteBuffer[] copia = Arrays.copyOf(segs, Math.max(segs.length, indice + 1));
+            copia[indice] = nuevo;
+            segmentos = copia;
+            return nuevo;
+        } finally {
+            mapeo.unlock();
+        }
+    }
+
+    private void cerrarCanal() {
+        mapeo.lock();
+        try {
+            if (canal == null) return;
+            try {
+                canal.close(); // Los mapeos siguen válidos hasta que el GC los libere
+            } catch (IOException e) {
+                System.err.println("Error al cerrar el diario: " + e.getMessage());
+            }
+            canal = null;
+        } finally {
+            mapeo.unlock();
+        }
+    }
+
+    public Path getArchivo() { return archivo; }
+
+    /** Bytes de registros escritos (sin el encabezado). */
+    public long getBytesRegistrados() {
+        return Math.max(0, siguiente.get() - TAM_ENCABEZADO);
+    }
+
+    /** Resumen de una línea para el log. */
+    public String resumen() {
+        long bytes = getBytesRegistrados();
+        return "Diario de transiciones " + archivo + ": " + bytes / TAM_REGISTRO + " registros ("
+                + bytes / 1024 + " KiB)";
+    }
+}
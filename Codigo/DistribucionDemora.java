@@ -0,0 +1,34 @@
+// DistribucionDemora.java
+import java.util.Random;
+
+/**
+ * Distribución del tiempo de servicio de una etapa, en milisegundos.
+ */
+@FunctionalInterface
+public interface DistribucionDemora {
+
+    /**
+     * @param random Generador del trabajador (cada trabajador tiene el suyo).
+     * @return Una demora en milisegundos, mayor o igual a 0.
+     */
+    long muestrearMs(Random random);
+
+    /** Siempre la misma demora. */
+    static DistribucionDemora constante(long ms) {
+        long valor = Math.max(0, ms);
+        return random -> valor;
+    }
+
+    /** Uniforme entre base - variacion y base + variacion (la de los trabajadores originales). */
+    static DistribucionDemora uniforme(int baseMs, int variacionMs) {
+        return random -> {
+            int demora = baseMs + (variacionMs > 0 ? random.nextInt(variacionMs * 2 + 1) - variacionMs : 0);
+            return Math.max(0, demora);
+        };
+    }
+
+    /** Exponencial con la media indicada (servicio sin memoria, como en una cola M/M/c). */
+    static DistribucionDemora exponencial(double mediaMs) {
+        return random -> Math.round(-mediaMs * Math.log(1 - random.nextDouble()));
+    }
+}
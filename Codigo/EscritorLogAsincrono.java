@@ -0,0 +1,251 @@
+// EscritorLogAsincrono.java
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Escritura de log asíncrona: los productores copian su línea en un registro preasignado de un
+ * buffer circular acotado y vuelven enseguida; un único hilo escritor drena los registros en
+ * orden, los codifica a un ByteBuffer directo y los vuelca al archivo por FileChannel en lotes.
+ *
+ * Si el buffer está lleno la línea se descarta y se cuenta (getDescartados): registrar nunca
+ * bloquea a quien loguea. La marca de tiempo se toma al registrar pero se formatea en el hilo escritor.
+ */
+public class EscritorLogAsincrono {
+    private static final DateTimeFormatter FORMATO = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS")
+            .withZone(ZoneId.systemDefault());
+    private static final int CAPACIDAD_TEXTO = 256;   // Capacidad inicial de cada registro
+    private static final int TAMANO_SALIDA = 64 * 1024; // Buffer de bytes hacia el archivo
+    private static final int MAX_POR_LOTE = 256;        // Registros drenados antes de revisar el flush
+    private static final String SEPARADOR = System.lineSeparator();
+
+    /** Registro preasignado: se reutiliza cada vez que el buffer circular da la vuelta. */
+    private static final class Registro {
+        final StringBuilder texto = new StringBuilder(CAPACIDAD_TEXTO);
+        long epochMillis;
+        boolean conMarcaDeTiempo;
+    }
+
+    private final Registro[] registros;
+    private final int mascara;
+    // publicado[i] = secuencia + 1 del registro listo en la posición i (el escritor lo compara)
+    private final AtomicLongArray publicado;
+    private final AtomicLong cabeza = new AtomicLong(); // Próxima secuencia a reservar
+    private volatile long cola = 0;                    // Próxima secuencia a drenar (solo la escribe el escritor)
+    private final LongAdder descartados = new LongAdder();
+
+    private final FileChannel canal;
+    private final PoliticaFlush politica;
+    private final long intervaloFlushNanos;
+    private final ByteBuffer salida = ByteBuffer.allocateDirect(TAMANO_SALIDA);
+    private final CharsetEncoder codificador = StandardCharsets.UTF_8.newEncoder();
+    private final StringBuilder marca = new StringBuilder(32);
+    private final Thread escritor;
+    private volatile boolean escritorDurmiendo = false;
+    private volatile boolean cerrando = false;
+
+    /**
+     * Abre (en modo append) el archivo y arranca el hilo escritor.
+     * @param archivo Ruta del archivo de log.
+     * @param capacidad Cantidad de registros del buffer circular (se redondea a potencia de dos).
+     * @param politica Cuándo volcar al archivo.
+     * @param intervaloFlushMs Intervalo para POR_INTERVALO; también es la espera máxima del escritor ocioso.
+     * @throws IOException Si no se puede abrir el archivo.
+     */
+    public EscritorLogAsincrono(String archivo, int capacidad, PoliticaFlush politica, long intervaloFlushMs) throws IOException {
+        if (capacidad <= 0) throw new IllegalArgumentException("La capacidad debe ser positiva.");
+        int tamano = Integer.highestOneBit(capacidad);
+        if (tamano < capacidad) tamano <<= 1;
+        this.registros = new Registro[tamano];
+        for (int i = 0; i < tamano; i++) registros[i] = new Registro();
+        this.mascara = tamano - 1;
+        this.publicado = new AtomicLongArray(tamano);
+        this.politica = politica;
+        this.intervaloFlushNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, intervaloFlushMs));
+        this.canal = FileChannel.open(Path.of(archivo),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+        this.escritor = new Thread(this::bucleEscritor, "escritor-log");
+        this.escritor.setDaemon(true);
+        this.escritor.start();
+    }
+
+    /**
+     * Encola una línea precedida por la marca de tiempo. No bloquea.
+     * @return false si el buffer estaba lleno (o el escritor cerrado) y la línea se descartó.
+     */
+    public boolean registrar(CharSequence linea) {
+        return registrar(linea, true);
+    }
+
+    /**
+     * Encola una línea. No bloquea.
+     * @param conMarcaDeTiempo Si se antepone "fecha hora - " a la línea.
+     * @return false si el buffer estaba lleno (o el escritor cerrado) y la línea se descartó.
+     */
+    public boolean registrar(CharSequence linea, boolean conMarcaDeTiempo) {
+        long secuencia = cerrando ? -1 : reservar();
+        if (secuencia < 0) {
+            descartados.increment();
+            return false;
+        }
+        publicar(secuencia, linea, conMarcaDeTiempo);
+        return true;
+    }
+
+    /**
+     * Encola una línea esperando si el buffer está lleno. Para el informe final, donde
+     * no se quiere perder nada; los trabajadores deben usar registrar.
+     */
+    public void registrarSinDescartar(CharSequence linea, boolean conMarcaDeTiempo) {
+        while (!cerrando) {
+            long secuencia = reservar();
+            if (secuencia >= 0) {
+                publicar(secuencia, linea, conMarcaDeTiempo);
+                return;
+            }
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        descartados.increment();
+    }
+
+    /** Reserva la próxima secuencia, o devuelve -1 si el buffer está lleno. */
+    private long reservar() {
+        long secuencia;
+        do {
+            secuencia = cabeza.get();
+            if (secuencia - cola >= registros.length) return -1;
+        } while (!cabeza.compareAndSet(secuencia, secuencia + 1));
+        return secuencia;
+    }
+
+    private void publicar(long secuencia, CharSequence linea, boolean conMarcaDeTiempo) {
+        int indice = (int) secuencia & mascara;
+        Registro r = registros[indice];
+        r.texto.setLength(0);
+        r.texto.append(linea);
+        r.epochMillis = System.currentTimeMillis();
+        r.conMarcaDeTiempo = conMarcaDeTiempo;
+        publicado.set(indice, secuencia + 1); // Publica el registro al escritor
+
+        if (escritorDurmiendo) LockSupport.unpark(escritor);
+    }
+
+    /** Líneas descartadas porque el buffer circular estaba lleno. */
+    public long getDescartados() {
+        return descartados.sum();
+    }
+
+    /**
+     * Drena lo pendiente, vuelca, fuerza a disco y cierra el archivo.
+     * Las líneas registradas después de llamar a cerrar se descartan.
+     */
+    public void cerrar() {
+        cerrando = true;
+        LockSupport.unpark(escritor);
+        try {
+            escritor.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void bucleEscritor() {
+        long ultimoVolcado = System.nanoTime();
+        try {
+            while (true) {
+                int drenados = drenar();
+                long ahora = System.nanoTime();
+                if (drenados > 0 && politica == PoliticaFlush.POR_LOTE) {
+                    volcar();
+                    ultimoVolcado = ahora;
+                } else if (politica == PoliticaFlush.POR_INTERVALO && ahora - ultimoVolcado >= intervaloFlushNanos) {
+                    volcar();
+                    ultimoVolcado = ahora;
+                }
+                if (drenados > 0) continue;
+
+                // Nada publicado: terminar si se está cerrando y no queda nada reservado, o dormir
+                if (cerrando && cola == cabeza.get()) break;
+                escritorDurmiendo = true;
+                if (!hayPublicado()) {
+                    LockSupport.parkNanos(this, intervaloFlushNanos);
+                }
+                escritorDurmiendo = false;
+            }
+            volcar();
+            canal.force(false);
+        } catch (IOException e) {
+            System.err.println("Error escribiendo el log: " + e.getMessage());
+        } finally {
+            try {
+                canal.close();
+            } catch (IOException e) {
+                System.err.println("Error al cerrar el archivo de log: " + e.getMessage());
+            }
+        }
+    }
+
+    private boolean hayPublicado() {
+        long siguiente = cola;
+        return publicado.get((int) siguiente & mascara) == siguiente + 1;
+    }
+
+    /** Codifica en orden los registros publicados (hasta MAX_POR_LOTE) y los libera. */
+    private int drenar() throws IOException {
+        long siguiente = cola;
+        int drenados = 0;
+        while (drenados < MAX_POR_LOTE) {
+            int indice = (int) siguiente & mascara;
+            if (publicado.get(indice) != siguiente + 1) break;
+            Registro r = registros[indice];
+            if (r.conMarcaDeTiempo) {
+                marca.setLength(0);
+                FORMATO.formatTo(Instant.ofEpochMilli(r.epochMillis), marca);
+                marca.append(" - ");
+                codificar(marca);
+            }
+            codificar(r.texto);
+            codificar(SEPARADOR);
+            siguiente++;
+            cola = siguiente; // Libera el registro para los productores
+            drenados++;
+        }
+        return drenados;
+    }
+
+    private void codificar(CharSequence texto) throws IOException {
+        CharBuffer entrada = CharBuffer.wrap(texto);
+        while (true) {
+            CoderResult resultado = codificador.encode(entrada, salida, true);
+            if (resultado.isOverflow()) {
+                volcar();
+            } else {
+                break;
+            }
+        }
+        codificador.reset();
+    }
+
+    private void volcar() throws IOException {
+        salida.flip();
+        while (salida.hasRemaining()) {
+            canal.write(salida);
+        }
+        salida.clear();
+    }
+}
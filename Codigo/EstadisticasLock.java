@@ -0,0 +1,50 @@
+// EstadisticasLock.java
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Estadísticas de contención de un lock con nombre: adquisiciones, cuántas tuvieron que esperar,
+ * histogramas de espera y de tenencia, y el máximo de hilos esperando a la vez.
+ * Varias instancias de LockInstrumentado con el mismo nombre (por ejemplo, todas las franjas de
+ * la matriz) comparten un mismo objeto, así que los valores son agregados.
+ * Todo se actualiza sin locks (LongAdder, histogramas lock-free).
+ */
+public class EstadisticasLock {
+    private final String nombre;
+    private final LongAdder adquisiciones = new LongAdder();
+    private final LongAdder contendidas = new LongAdder();
+    private final HistogramaLatencia espera = new HistogramaLatencia();
+    private final HistogramaLatencia tenencia = new HistogramaLatencia();
+    private final LongAccumulator maxEnCola = new LongAccumulator(Math::max, 0);
+
+    EstadisticasLock(String nombre) {
+        this.nombre = nombre;
+    }
+
+    void registrarAdquisicion(long nanosEspera, boolean contendida) {
+        adquisiciones.increment();
+        if (contendida) contendidas.increment();
+        espera.registrar(nanosEspera);
+    }
+
+    void registrarTenencia(long nanos) {
+        tenencia.registrar(nanos);
+    }
+
+    void registrarEnCola(int hilosEsperando) {
+        maxEnCola.accumulate(hilosEsperando);
+    }
+
+    public String getNombre() { return nombre; }
+    public long getAdquisiciones() { return adquisiciones.sum(); }
+    public long getContendidas() { return contendidas.sum(); }
+    public HistogramaLatencia getEspera() { return espera; }
+    public HistogramaLatencia getTenencia() { return tenencia; }
+    public long getMaxEnCola() { return maxEnCola.get(); }
+
+    /** Resumen de varias líneas para el informe final. */
+    public String resumen() {
+        return String.format("Lock %s: adquisiciones=%d contendidas=%d max en cola=%d%n  espera   %s%n  tenencia %s",
+                nombre, getAdquisiciones(), getContendidas(), getMaxEnCola(), espera.resumen(), tenencia.resumen());
+    }
+}
@@ -0,0 +1,49 @@
+// EstadoPedido.java
+
+/**
+ * Fase del ciclo de vida de un Pedido. Junto con la etapa del flujo forma el estado que el
+ * pedido avanza por CAS (ver Pedido): NUEVO -> EN_COLA(0) -> TOMADO(0) -> EN_COLA(1) -> ...
+ * -> VERIFICADO o FALLIDO. En el flujo estándar EN_COLA(0), EN_COLA(1) y EN_COLA(2) son los
+ * pedidos preparados, en tránsito y entregados.
+ *
+ * Quien deja un pedido en TOMADO es su único dueño hasta publicarlo en otra etapa o en un
+ * estado final; por eso el pedido no necesita lock.
+ */
+public enum EstadoPedido {
+    /** Recién creado por un preparador, todavía no publicado. */
+    NUEVO,
+    /** Esperando en la cola de una etapa (o en su desborde). */
+    EN_COLA,
+    /** Tomado de una etapa por un trabajador, que es su dueño. */
+    TOMADO,
+    VERIFICADO,
+    FALLIDO;
+
+    private static final EstadoPedido[] FASES = values();
+    // Bits de la fase en el código; el resto es la etapa
+    private static final int BITS_FASE = 3;
+
+    /** Código int de (fase, etapa), el valor que guarda el pedido. NUEVO en la etapa 0 es 0. */
+    static int codificar(EstadoPedido fase, int etapa) {
+        return (etapa << BITS_FASE) | fase.ordinal();
+    }
+
+    static EstadoPedido fase(int codigo) {
+        return FASES[codigo & ((1 << BITS_FASE) - 1)];
+    }
+
+    static int etapa(int codigo) {
+        return codigo >>> BITS_FASE;
+    }
+
+    /** Por ejemplo "EN_COLA(1)" o "VERIFICADO". */
+    static String describir(int codigo) {
+        EstadoPedido fase = fase(codigo);
+        return fase == EN_COLA || fase == TOMADO ? fase + "(" + etapa(codigo) + ")" : fase.toString();
+    }
+
+    /** true si el pedido ya no va a cambiar de estado. */
+    public boolean esFinal() {
+        return this == VERIFICADO || this == FALLIDO;
+    }
+}
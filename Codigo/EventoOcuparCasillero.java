@@ -0,0 +1,41 @@
+// EventoOcuparCasillero.java
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Evento de JFR con cada llamada a MatrizCasilleros.ocuparCasilleroAleatorio. La duración
+ * del evento es la de la llamada; además informa cuántas franjas recorrió, el resultado y
+ * cuánto tiempo pasó con el lock de una franja tomado.
+ * Viene deshabilitado: sin habilitarlo, ocupar no lee el reloj ni crea objetos.
+ */
+@Name("simulacion.OcuparCasillero")
+@Label("Ocupar casillero")
+@Category({"Simulación", "Casilleros"})
+@Description("Búsqueda y ocupación de un casillero vacío aleatorio.")
+@Enabled(false)
+@StackTrace(false)
+public class EventoOcuparCasillero extends Event {
+    static final String OCUPADO = "ocupado";
+    static final String SIN_LIBRES = "sin_libres";
+    static final String SIN_CASILLEROS = "sin_casilleros";
+
+    @Label("Franjas recorridas")
+    int franjasRecorridas;
+
+    @Label("Resultado")
+    @Description("ocupado, sin_libres (fallo temporal) o sin_casilleros (todos fuera de servicio).")
+    String resultado;
+
+    @Label("Casillero")
+    int casilleroId = -1;
+
+    @Label("Tiempo bajo lock")
+    @Timespan(Timespan.NANOSECONDS)
+    long tiempoBajoLock;
+}
@@ -0,0 +1,31 @@
+// EventoTomaRegistro.java
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento de JFR con cada toma aleatoria (individual o por lote) que devolvió pedidos de una
+ * etapa del registro: cuántos se tomaron y cuántos quedaron esperando en la etapa.
+ * Viene deshabilitado, igual que los demás eventos de la simulación.
+ */
+@Name("simulacion.TomaRegistro")
+@Label("Toma del registro")
+@Category({"Simulación", "Pedidos"})
+@Description("Un trabajador toma pedidos al azar de una etapa.")
+@Enabled(false)
+@StackTrace(false)
+public class EventoTomaRegistro extends Event {
+    @Label("Etapa")
+    String etapa;
+
+    @Label("Pedidos tomados")
+    int tomados;
+
+    @Label("Pedidos restantes")
+    @Description("Profundidad de la etapa después de la toma (aproximada con otros hilos activos).")
+    long restantes;
+}
@@ -0,0 +1,71 @@
+// EventoTransicionPedido.java
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Evento de JFR con cada cambio de etapa de un pedido, emitido por los trabajadores justo
+ * antes de entregarlo a la etapa siguiente (o, para "preparado", antes de publicarlo).
+ * Viene deshabilitado: con JFR apagado o el evento sin habilitar, emitir no hace nada.
+ */
+@Name("simulacion.TransicionPedido")
+@Label("Transición de pedido")
+@Category({"Simulación", "Pedidos"})
+@Description("Un pedido pasa a la etapa siguiente o a un estado final.")
+@Enabled(false)
+@StackTrace(false)
+public class EventoTransicionPedido extends Event {
+    static final String PREPARADO = "preparado";
+    static final String FALLIDO = "fallido";
+    // Las transiciones exitosas las nombra cada DefinicionEtapa ("despachado", "entregado", ...)
+
+    @Label("Pedido")
+    int pedidoId;
+
+    @Label("Transición")
+    String transicion;
+
+    @Label("Etapa de origen")
+    String etapaOrigen;
+
+    @Label("Casillero")
+    @Description("Casillero del pedido en esta transición, -1 si ya no tiene uno.")
+    int casilleroId;
+
+    @Label("Espera en la etapa")
+    @Timespan(Timespan.NANOSECONDS)
+    long espera;
+
+    @Label("Servicio")
+    @Description("Desde que un trabajador tomó el pedido hasta esta transición.")
+    @Timespan(Timespan.NANOSECONDS)
+    long servicio;
+
+    /**
+     * Emite el evento si está habilitado. Debe llamarse antes de entregar el pedido a la
+     * etapa siguiente, mientras sus marcas de toma siguen vigentes. Para "preparado" la
+     * espera y el servicio quedan en 0.
+     * @param transicion PREPARADO, FALLIDO o la transición exitosa de la etapa.
+     * @param casilleroId Casillero asociado, o -1.
+     * @param etapaOrigen Cola de la que se tomó el pedido, o null para "preparado".
+     */
+    static void emitir(String transicion, Pedido pedido, int casilleroId, String etapaOrigen) {
+        EventoTransicionPedido evento = new EventoTransicionPedido();
+        if (!evento.shouldCommit()) return;
+        evento.pedidoId = pedido.getId();
+        evento.transicion = transicion;
+        evento.casilleroId = casilleroId;
+        evento.etapaOrigen = etapaOrigen;
+        long tomado = pedido.getNanosTomado();
+        if (tomado != 0) {
+            evento.espera = tomado - pedido.getNanosIngresoEtapa();
+            evento.servicio = System.nanoTime() - tomado;
+        }
+        evento.commit();
+    }
+}
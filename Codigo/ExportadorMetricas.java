@@ -0,0 +1,92 @@
+// ExportadorMetricas.java
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exporta periódicamente InstantaneaMetricas a un archivo CSV o JSON-lines,
+ * para graficar throughput y backlog de corridas largas sin parsear el log.
+ * El archivo se sobrescribe en cada corrida.
+ */
+public class ExportadorMetricas {
+    private final RecolectorMetricas recolector;
+    private final String archivo;
+    private final FormatoMetricas formato;
+    private ScheduledExecutorService scheduler;
+    private BufferedWriter salida;
+    private volatile InstantaneaMetricas ultima;
+
+    public ExportadorMetricas(RecolectorMetricas recolector, String archivo, FormatoMetricas formato) {
+        this.recolector = recolector;
+        this.archivo = archivo;
+        this.formato = formato;
+    }
+
+    /**
+     * Abre el archivo y programa una captura cada 'intervaloMs'.
+     * Si el archivo no se puede abrir se informa y no se exporta nada.
+     * @param intervaloMs Intervalo entre capturas en milisegundos.
+     */
+    public void iniciar(long intervaloMs) {
+        try {
+            salida = Files.newBufferedWriter(Path.of(archivo), StandardCharsets.UTF_8);
+            if (formato == FormatoMetricas.CSV) {
+                salida.write(InstantaneaMetricas.encabezadoCsv());
+                salida.newLine();
+            }
+        } catch (IOException e) {
+            System.err.println("No se pudo abrir el archivo de métricas " + archivo + ": " + e.getMessage());
+            salida = null;
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "exportador-metricas");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(this::capturarYEscribir, 0, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Detiene las capturas periódicas, escribe una última captura y cierra el archivo.
+     */
+    public void detener() {
+        if (scheduler == null) return;
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(1, TimeUnit.SECONDS)) scheduler.shutdownNow();
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        capturarYEscribir(); // Estado final
+        try {
+            salida.close();
+        } catch (IOException e) {
+            System.err.println("Error al cerrar el archivo de métricas: " + e.getMessage());
+        }
+        scheduler = null;
+    }
+
+    /** Última captura exportada, o null si todavía no hubo ninguna. */
+    public InstantaneaMetricas getUltima() {
+        return ultima;
+    }
+
+    private void capturarYEscribir() {
+        InstantaneaMetricas m = recolector.capturar();
+        ultima = m;
+        try {
+            salida.write(formato == FormatoMetricas.CSV ? m.toCsv() : m.toJson());
+            salida.newLine();
+            salida.flush(); // Una línea por tick: el archivo se puede seguir mientras corre
+        } catch (IOException e) {
+            System.err.println("Error escribiendo métricas: " + e.getMessage());
+        }
+    }
+}
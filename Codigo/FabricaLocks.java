@@ -0,0 +1,60 @@
+// FabricaLocks.java
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Crea los locks de la simulación. Con -Dsimulacion.locks.instrumentados=true devuelve
+ * LockInstrumentado y agrupa sus estadísticas por nombre; si no, devuelve un ReentrantLock
+ * común, así que deshabilitada la instrumentación no cuesta nada al tomar o soltar.
+ */
+public final class FabricaLocks {
+    public static final String PROPIEDAD = "simulacion.locks.instrumentados";
+    private static final boolean HABILITADA = Boolean.getBoolean(PROPIEDAD);
+
+    // Ordenado por nombre para que los informes salgan siempre igual
+    private static final Map<String, EstadisticasLock> ESTADISTICAS = new ConcurrentSkipListMap<>();
+
+    private FabricaLocks() {}
+
+    public static boolean isHabilitada() {
+        return HABILITADA;
+    }
+
+    /**
+     * Crea un lock no justo.
+     * @param nombre Nombre con el que se informan sus estadísticas; los locks con el mismo
+     *               nombre (por ejemplo, los segmentos de una bolsa) se suman.
+     */
+    public static ReentrantLock crear(String nombre) {
+        if (!HABILITADA) return new ReentrantLock();
+        return new LockInstrumentado(ESTADISTICAS.computeIfAbsent(nombre, EstadisticasLock::new));
+    }
+
+    /** Estadísticas de todos los locks creados, ordenadas por nombre (vacía si está deshabilitada). */
+    public static List<EstadisticasLock> getEstadisticas() {
+        return new ArrayList<>(ESTADISTICAS.values());
+    }
+
+    /** Una línea con el p99 de espera y el máximo en cola de cada lock, para el log periódico. */
+    public static String resumenCorto() {
+        StringBuilder sb = new StringBuilder("Locks (espera p99 / max en cola)");
+        for (EstadisticasLock e : ESTADISTICAS.values()) {
+            sb.append(' ').append(e.getNombre()).append(':')
+              .append(HistogramaLatencia.ms(e.getEspera().percentil(0.99))).append('/').append(e.getMaxEnCola());
+        }
+        return sb.toString();
+    }
+
+    /** Informe completo, una entrada por lock. */
+    public static String resumen() {
+        StringBuilder sb = new StringBuilder();
+        for (EstadisticasLock e : ESTADISTICAS.values()) {
+            if (sb.length() > 0) sb.append(System.lineSeparator());
+            sb.append(e.resumen());
+        }
+        return sb.toString();
+    }
+}
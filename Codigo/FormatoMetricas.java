@@ -0,0 +1,11 @@
+// FormatoMetricas.java
+
+/**
+ * Formato del archivo de series de tiempo que escribe ExportadorMetricas.
+ */
+public enum FormatoMetricas {
+    /** Una fila por tick, con encabezado. */
+    CSV,
+    /** Un objeto JSON por línea (JSON-lines). */
+    JSONL
+}
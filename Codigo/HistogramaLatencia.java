@@ -0,0 +1,121 @@
+// HistogramaLatencia.java
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias lock-free con cubetas log-lineales (estilo HDR).
+ * Los valores menores a 2^BITS_SUB son exactos; por encima, cada potencia de dos se divide en
+ * 2^BITS_SUB cubetas iguales, así que el error relativo es menor a 1/2^BITS_SUB (~3%).
+ * Registrar es un incremento atómico en un arreglo fijo: no crea objetos ni toma locks.
+ * Las lecturas (percentiles) son aproximadas mientras otros hilos siguen registrando.
+ */
+public class HistogramaLatencia {
+    private static final int BITS_SUB = 5;
+    private static final int SUB_CUBETAS = 1 << BITS_SUB;
+    private static final int CANT_CUBETAS = (64 - BITS_SUB) * SUB_CUBETAS;
+
+    private final AtomicLongArray cubetas = new AtomicLongArray(CANT_CUBETAS);
+    private final LongAdder cantidad = new LongAdder();
+    private final LongAdder suma = new LongAdder();
+    private final LongAccumulator maximo = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Registra una duración.
+     * @param nanos Duración en nanosegundos (los negativos se cuentan como 0).
+     */
+    public void registrar(long nanos) {
+        long valor = Math.max(0, nanos);
+        cubetas.incrementAndGet(indice(valor));
+        cantidad.increment();
+        suma.add(valor);
+        maximo.accumulate(valor);
+    }
+
+    public long getCantidad() { return cantidad.sum(); }
+    public long getMaximo() { return maximo.get(); }
+    public long getSuma() { return suma.sum(); }
+
+    public double getPromedio() {
+        long n = cantidad.sum();
+        return n == 0 ? 0 : (double) suma.sum() / n;
+    }
+
+    /**
+     * Valor por debajo del cual cae la fracción 'q' de las muestras (límite superior de su cubeta,
+     * acotado por el máximo observado).
+     * @param q Fracción entre 0 y 1 (0.99 = p99).
+     * @return El percentil en nanosegundos, o 0 si no hay muestras.
+     */
+    public long percentil(double q) {
+        return percentiles(q)[0];
+    }
+
+    /**
+     * Calcula varios percentiles sobre una misma copia de las cubetas.
+     * @param qs Fracciones entre 0 y 1, en orden creciente.
+     * @return Un valor en nanosegundos por fracción pedida (0 si no hay muestras).
+     */
+    public long[] percentiles(double... qs) {
+        long[] copia = new long[CANT_CUBETAS];
+        long total = 0;
+        for (int i = 0; i < CANT_CUBETAS; i++) {
+            copia[i] = cubetas.get(i);
+            total += copia[i];
+        }
+        long[] resultado = new long[qs.length];
+        if (total == 0) return resultado;
+
+        long max = maximo.get();
+        int i = 0;
+        long acumulado = copia[0];
+        for (int k = 0; k < qs.length; k++) {
+            long objetivo = Math.max(1, (long) Math.ceil(qs[k] * total));
+            while (acumulado < objetivo && i < CANT_CUBETAS - 1) {
+                acumulado += copia[++i];
+            }
+            resultado[k] = Math.min(limiteSuperior(i), max);
+        }
+        return resultado;
+    }
+
+    /** Suma las muestras de otro histograma (por ejemplo, los parciales de un análisis en paralelo). */
+    public void sumar(HistogramaLatencia otro) {
+        for (int i = 0; i < CANT_CUBETAS; i++) {
+            long n = otro.cubetas.get(i);
+            if (n != 0) cubetas.addAndGet(i, n);
+        }
+        cantidad.add(otro.cantidad.sum());
+        suma.add(otro.suma.sum());
+        maximo.accumulate(otro.maximo.get());
+    }
+
+    /** Resumen de una línea: p50, p90, p99, p999, máximo y cantidad de muestras, en milisegundos. */
+    public String resumen() {
+        long[] p = percentiles(0.50, 0.90, 0.99, 0.999);
+        return String.format(Locale.ROOT, "p50=%s p90=%s p99=%s p999=%s max=%s (n=%d)",
+                ms(p[0]), ms(p[1]), ms(p[2]), ms(p[3]), ms(getMaximo()), getCantidad());
+    }
+
+    static String ms(long nanos) {
+        return String.format(Locale.ROOT, "%.3fms", nanos / 1_000_000.0);
+    }
+
+    private static int indice(long valor) {
+        if (valor < SUB_CUBETAS) return (int) valor;
+        int exponente = 63 - Long.numberOfLeadingZeros(valor); // >= BITS_SUB
+        int sub = (int) (valor >>> (exponente - BITS_SUB)) & (SUB_CUBETAS - 1);
+        return (exponente - BITS_SUB + 1) * SUB_CUBETAS + sub;
+    }
+
+    /** Mayor valor que cae en la cubeta 'indice'. */
+    private static long limiteSuperior(int indice) {
+        if (indice < SUB_CUBETAS) return indice;
+        int exponente = indice / SUB_CUBETAS + BITS_SUB - 1;
+        long sub = indice % SUB_CUBETAS;
+        long ancho = 1L << (exponente - BITS_SUB);
+        long inicio = (1L << exponente) + sub * ancho;
+        return inicio + ancho - 1;
+    }
+}
@@ -0,0 +1,75 @@
+// IndiceLibres.java
+import java.util.Random;
+
+/**
+ * Conjunto indexado de IDs de casilleros libres (VACIO).
+ * Usa un arreglo denso de IDs con "swap-remove" más un mapa de posiciones,
+ * de modo que agregar, quitar y elegir un libre al azar son O(1) y no crean objetos.
+ * No es thread-safe: el llamador debe protegerlo con su propio lock.
+ */
+class IndiceLibres {
+    private final int base;        // Primer ID cubierto por este índice
+    private final int[] libres;    // IDs libres en posiciones [0, cantidad)
+    private final int[] posicion;  // posicion[id - base] = índice en 'libres', o -1 si no está
+    private int cantidad;
+
+    /**
+     * Crea un índice para los IDs en el rango [base, base + capacidad), todos libres al inicio.
+     * @param base Primer ID del rango.
+     * @param capacidad Cantidad de IDs del rango.
+     */
+    IndiceLibres(int base, int capacidad) {
+        this.base = base;
+        this.libres = new int[capacidad];
+        this.posicion = new int[capacidad];
+        for (int i = 0; i < capacidad; i++) {
+            libres[i] = base + i;
+            posicion[i] = i;
+        }
+        this.cantidad = capacidad;
+    }
+
+    int getCantidad() { return cantidad; }
+
+    boolean contiene(int id) { return posicion[id - base] >= 0; }
+
+    /**
+     * Agrega un ID al conjunto (si no estaba ya).
+     * @param id ID del casillero que pasa a estar libre.
+     */
+    void agregar(int id) {
+        int off = id - base;
+        if (posicion[off] >= 0) return; // Ya estaba
+        libres[cantidad] = id;
+        posicion[off] = cantidad;
+        cantidad++;
+    }
+
+    /**
+     * Quita un ID del conjunto moviendo el último elemento a su lugar.
+     * @param id ID del casillero que deja de estar libre.
+     * @return true si el ID estaba en el conjunto.
+     */
+    boolean quitar(int id) {
+        int off = id - base;
+        int pos = posicion[off];
+        if (pos < 0) return false;
+        int ultimo = libres[--cantidad];
+        libres[pos] = ultimo;
+        posicion[ultimo - base] = pos;
+        posicion[off] = -1;
+        return true;
+    }
+
+    /**
+     * Quita y devuelve un ID libre elegido uniformemente al azar.
+     * @param random Generador a usar.
+     * @return El ID elegido, o -1 si no hay libres.
+     */
+    int tomarAleatorio(Random random) {
+        if (cantidad == 0) return -1;
+        int id = libres[random.nextInt(cantidad)];
+        quitar(id);
+        return id;
+    }
+}
@@ -0,0 +1,135 @@
+// InstantaneaMetricas.java
+import java.util.Locale;
+
+/**
+ * Foto estructurada de las métricas de la simulación en un tick: contadores y profundidades
+ * del registro, ocupación de casilleros y tasas derivadas respecto del tick anterior.
+ * La arma RecolectorMetricas; se exporta como una fila CSV o una línea JSON.
+ */
+public final class InstantaneaMetricas {
+    private final long epochMillis;
+    private final double segundos;          // Desde que se creó el recolector
+    private final InstantaneaRegistro registro;
+    private final long salidasPreparacion;  // Acumulados por etapa (monótonos)
+    private final long salidasTransito;
+    private final long salidasEntregados;
+    private final int casillerosLibres;
+    private final int casillerosOcupados;
+    private final int casillerosFueraDeServicio;
+    private final int casillerosTotal;
+    // Tasas en pedidos por segundo desde el tick anterior
+    private final double generadosPorSeg;
+    private final double preparacionPorSeg;
+    private final double transitoPorSeg;
+    private final double entregadosPorSeg;
+    private final double finalizadosPorSeg;
+    private final double finalizadosPorSegEwma;
+
+    InstantaneaMetricas(long epochMillis, double segundos, InstantaneaRegistro registro,
+                        long salidasPreparacion, long salidasTransito, long salidasEntregados,
+                        int casillerosLibres, int casillerosOcupados, int casillerosFueraDeServicio, int casillerosTotal,
+                        double generadosPorSeg, double preparacionPorSeg, double transitoPorSeg,
+                        double entregadosPorSeg, double finalizadosPorSeg, double finalizadosPorSegEwma) {
+        this.epochMillis = epochMillis;
+        this.segundos = segundos;
+        this.registro = registro;
+        this.salidasPreparacion = salidasPreparacion;
+        this.salidasTransito = salidasTransito;
+        this.salidasEntregados = salidasEntregados;
+        this.casillerosLibres = casillerosLibres;
+        this.casillerosOcupados = casillerosOcupados;
+        this.casillerosFueraDeServicio = casillerosFueraDeServicio;
+        this.casillerosTotal = casillerosTotal;
+        this.generadosPorSeg = generadosPorSeg;
+        this.preparacionPorSeg = preparacionPorSeg;
+        this.transitoPorSeg = transitoPorSeg;
+        this.entregadosPorSeg = entregadosPorSeg;
+        this.finalizadosPorSeg = finalizadosPorSeg;
+        this.finalizadosPorSegEwma = finalizadosPorSegEwma;
+    }
+
+    public long getEpochMillis() { return epochMillis; }
+    public double getSegundos() { return segundos; }
+    public InstantaneaRegistro getRegistro() { return registro; }
+    public long getSalidasPreparacion() { return salidasPreparacion; }
+    public long getSalidasTransito() { return salidasTransito; }
+    public long getSalidasEntregados() { return salidasEntregados; }
+    public int getCasillerosLibres() { return casillerosLibres; }
+    public int getCasillerosOcupados() { return casillerosOcupados; }
+    public int getCasillerosFueraDeServicio() { return casillerosFueraDeServicio; }
+    public int getCasillerosTotal() { return casillerosTotal; }
+    public double getGeneradosPorSeg() { return generadosPorSeg; }
+    public double getPreparacionPorSeg() { return preparacionPorSeg; }
+    public double getTransitoPorSeg() { return transitoPorSeg; }
+    public double getEntregadosPorSeg() { return entregadosPorSeg; }
+    public double getFinalizadosPorSeg() { return finalizadosPorSeg; }
+    public double getFinalizadosPorSegEwma() { return finalizadosPorSegEwma; }
+
+    /** Fracción de casilleros ocupados (0 a 1). */
+    public double getOcupacion() {
+        return casillerosTotal == 0 ? 0 : (double) casillerosOcupados / casillerosTotal;
+    }
+
+    // Nombres de columna en el mismo orden que valores(); son también las claves del JSON
+    private static final String[] COLUMNAS = {
+        "epoch_ms", "segundos", "generados", "verificados", "fallidos",
+        "en_preparacion", "en_transito", "entregados", "en_proceso",
+        "salidas_preparacion", "salidas_transito", "salidas_entregados",
+        "casilleros_libres", "casilleros_ocupados", "casilleros_fuera_servicio", "ocupacion",
+        "generados_por_seg", "preparacion_por_seg", "transito_por_seg", "entregados_por_seg",
+        "finalizados_por_seg", "finalizados_por_seg_ewma"
+    };
+
+    private Object[] valores() {
+        return new Object[] {
+            epochMillis, segundos, registro.getGenerados(), registro.getVerificados(), registro.getFallidos(),
+            registro.getEnPreparacion(), registro.getEnTransito(), registro.getEntregados(), registro.getEnProceso(),
+            salidasPreparacion, salidasTransito, salidasEntregados,
+            casillerosLibres, casillerosOcupados, casillerosFueraDeServicio, getOcupacion(),
+            generadosPorSeg, preparacionPorSeg, transitoPorSeg, entregadosPorSeg,
+            finalizadosPorSeg, finalizadosPorSegEwma
+        };
+    }
+
+    /** Encabezado CSV, con las columnas en el orden de toCsv(). */
+    public static String encabezadoCsv() {
+        return String.join(",", COLUMNAS);
+    }
+
+    public String toCsv() {
+        StringBuilder sb = new StringBuilder(256);
+        Object[] v = valores();
+        for (int i = 0; i < v.length; i++) {
+            if (i > 0) sb.append(',');
+            agregarValor(sb, v[i]);
+        }
+        return sb.toString();
+    }
+
+    /** Un objeto JSON plano en una línea (para JSON-lines). */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder(512);
+        Object[] v = valores();
+        sb.append('{');
+        for (int i = 0; i < v.length; i++) {
+            if (i > 0) sb.append(',');
+            sb.append('"').append(COLUMNAS[i]).append("\":");
+            agregarValor(sb, v[i]);
+        }
+        return sb.append('}').toString();
+    }
+
+    /** Los double con punto decimal y 3 decimales, sin depender del Locale del sistema. */
+    private static void agregarValor(StringBuilder sb, Object valor) {
+        if (valor instanceof Double) {
+            sb.append(String.format(Locale.ROOT, "%.3f", (Double) valor));
+        } else {
+            sb.append(valor);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return toJson();
+    }
+}
@@ -0,0 +1,66 @@
+// InstantaneaRegistro.java
+import java.util.Arrays;
+
+/**
+ * Foto coherente de los contadores de RegistroPedidos en un mismo instante.
+ * Se obtiene con RegistroPedidos.getInstantanea(); los valores no cambian después.
+ */
+public final class InstantaneaRegistro {
+    private final int generados;
+    private final int verificados;
+    private final int fallidos;
+    private final int[] profundidades; // Pedidos esperando en cada etapa del flujo
+    private final boolean coherente;
+
+    InstantaneaRegistro(int generados, int verificados, int fallidos, int[] profundidades, boolean coherente) {
+        this.generados = generados;
+        this.verificados = verificados;
+        this.fallidos = fallidos;
+        this.profundidades = profundidades;
+        this.coherente = coherente;
+    }
+
+    public int getGenerados() { return generados; }
+    public int getVerificados() { return verificados; }
+    public int getFallidos() { return fallidos; }
+    // Etapas del flujo estándar (0 si el flujo no tiene esa etapa)
+    public int getEnPreparacion() { return getProfundidad(RegistroPedidos.ETAPA_PREPARACION); }
+    public int getEnTransito() { return getProfundidad(RegistroPedidos.ETAPA_TRANSITO); }
+    public int getEntregados() { return getProfundidad(RegistroPedidos.ETAPA_ENTREGADOS); }
+
+    public int getCantidadEtapas() { return profundidades.length; }
+
+    /** Pedidos esperando en la etapa indicada (0 si el flujo no la tiene). */
+    public int getProfundidad(int etapa) {
+        return etapa < profundidades.length ? profundidades[etapa] : 0;
+    }
+
+    /** Verificados + Fallidos. */
+    public int getFinalizados() { return verificados + fallidos; }
+
+    /** Pedidos esperando en alguna de las etapas intermedias. */
+    public int getRestantes() {
+        int total = 0;
+        for (int p : profundidades) total += p;
+        return total;
+    }
+
+    /**
+     * Pedidos que algún trabajador tomó de una etapa y todavía no dejó en la siguiente.
+     * Con los trabajadores detenidos debe ser 0; si no, el balance no cuadra.
+     */
+    public int getEnProceso() { return generados - getFinalizados() - getRestantes(); }
+
+    /**
+     * @return false si los contadores cambiaron en todos los intentos de lectura y la foto
+     *         puede mezclar valores de instantes distintos (solo con mucha actividad).
+     */
+    public boolean esCoherente() { return coherente; }
+
+    @Override
+    public String toString() {
+        return "InstantaneaRegistro [generados=" + generados + ", verificados=" + verificados + ", fallidos=" + fallidos
+                + ", profundidades=" + Arrays.toString(profundidades)
+                + ", enProceso=" + getEnProceso() + (coherente ? "" : ", NO coherente") + "]";
+    }
+}
@@ -0,0 +1,204 @@
+// LimiteEtapa.java
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Capacidad acotada de la cola de una etapa: un semáforo con un permiso por lugar libre.
+ * RegistroPedidos reserva lugares antes de publicar y los devuelve al contar la toma; lo que
+ * no entra se resuelve según la PoliticaDesborde de la etapa.
+ *
+ * Además mide dónde se satura el flujo: el tiempo que la etapa estuvo llena (desde que un
+ * productor no encontró lugar hasta la siguiente toma), el tiempo que los productores
+ * pasaron bloqueados y cuántos pedidos se rechazaron o derramaron.
+ */
+public class LimiteEtapa {
+    // Máximo tiempo bloqueado sin volver a mirar si el registro se cerró
+    private static final long ESPERA_MAX_MS = 100;
+
+    private final int capacidad;
+    private final PoliticaDesborde politica;
+    private final LongSupplier reloj;
+    private final Semaphore espacio;
+    private final ConcurrentLinkedQueue<Pedido> desborde = new ConcurrentLinkedQueue<>(); // Solo DERRAMAR
+    // Pedidos publicados sin lugar reservado (BLOQUEAR con el registro cerrado o el hilo
+    // interrumpido): sus tomas no devuelven permisos, así la capacidad nunca crece
+    private final AtomicInteger sinLugar = new AtomicInteger();
+    private volatile boolean cerrado = false;
+
+    // Inicio del período lleno en curso (0 = no está llena)
+    private final AtomicLong llenaDesde = new AtomicLong();
+    private final LongAdder nanosLlena = new LongAdder();
+    private final LongAdder vecesLlena = new LongAdder();
+    private final LongAdder nanosBloqueado = new LongAdder();
+    private final LongAdder rechazados = new LongAdder();
+    private final LongAdder derramados = new LongAdder();
+
+    /**
+     * @param capacidad Pedidos que puede tener la cola a la vez (positiva).
+     * @param politica Qué hacer con lo que no entra.
+     * @param reloj Fuente de nanosegundos (la misma del registro).
+     */
+    public LimiteEtapa(int capacidad, PoliticaDesborde politica, LongSupplier reloj) {
+        if (capacidad <= 0) throw new IllegalArgumentException("La capacidad debe ser positiva.");
+        this.capacidad = capacidad;
+        this.politica = politica;
+        this.reloj = reloj;
+        this.espacio = new Semaphore(capacidad);
+    }
+
+    public int getCapacidad() { return capacidad; }
+    public PoliticaDesborde getPolitica() { return politica; }
+
+    /**
+     * Reserva hasta 'cantidad' lugares. Con BLOQUEAR espera hasta conseguir al menos uno;
+     * con las demás no espera.
+     *
+     * Con BLOQUEAR, si el registro se cerró o el hilo es interrumpido mientras espera, deja de
+     * esperar y devuelve 0 (con la interrupción marcada). Quien publica igual lo que no tiene
+     * lugar debe avisarlo con admitirSinLugar: un pedido nunca se pierde por la capacidad, y al
+     * terminar la simulación las etapas tienen que poder vaciarse.
+     * @return Lugares efectivamente reservados, entre 0 y 'cantidad'.
+     */
+    public int reservar(int cantidad) {
+        int reservados = tomarLibres(cantidad);
+        if (reservados < cantidad) marcarLlena();
+        if (reservados > 0 || politica != PoliticaDesborde.BLOQUEAR) return reservados;
+
+        long inicio = reloj.getAsLong();
+        try {
+            while (!cerrado) {
+                if (espacio.tryAcquire(ESPERA_MAX_MS, TimeUnit.MILLISECONDS)) {
+                    return 1 + tomarLibres(cantidad - 1);
+                }
+            }
+            return 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        } finally {
+            nanosBloqueado.add(reloj.getAsLong() - inicio);
+        }
+    }
+
+    /**
+     * Anota 'cantidad' pedidos que se publican sin lugar reservado (BLOQUEAR cuando reservar
+     * devolvió 0). Se llama antes de publicarlos, para que su toma ya los encuentre anotados.
+     */
+    public void admitirSinLugar(int cantidad) {
+        sinLugar.addAndGet(cantidad);
+    }
+
+    /**
+     * Devuelve los lugares de 'cantidad' pedidos tomados, cierra el período lleno si lo había
+     * y pasa a la cola lo que haya derramado. Las tomas descuentan primero los pedidos
+     * publicados sin lugar, que no tienen permiso que devolver.
+     */
+    public void liberar(int cantidad, ColaEtapa<Pedido> cola) {
+        int devolver = cantidad - descontarSinLugar(cantidad);
+        if (devolver > 0) espacio.release(devolver);
+        long desde = llenaDesde.get();
+        if (desde != 0 && llenaDesde.compareAndSet(desde, 0)) {
+            nanosLlena.add(reloj.getAsLong() - desde);
+        }
+        reponer(cola);
+    }
+
+    /** DERRAMAR: deja el pedido en el desborde y lo pasa a la cola si justo se liberó lugar. */
+    public void derramar(Pedido p, ColaEtapa<Pedido> cola) {
+        desborde.offer(p);
+        derramados.increment();
+        reponer(cola);
+    }
+
+    /** RECHAZAR: cuenta un pedido mandado a fallidos. */
+    public void contarRechazo() {
+        rechazados.increment();
+    }
+
+    /** @return true si no hay pedidos derramados esperando lugar. */
+    public boolean desbordeVacio() {
+        return desborde.isEmpty();
+    }
+
+    /** Pedidos derramados que todavía no entraron a la cola. */
+    public int getEnDesborde() {
+        return desborde.size();
+    }
+
+    /**
+     * Destraba a los productores bloqueados con BLOQUEAR: desde ahora no esperan lugar y lo que
+     * no entra se publica igual (sin lugar). RECHAZAR y DERRAMAR no cambian: siguen rechazando o
+     * derramando lo que no entra, y lo derramado pasa a la cola a medida que se toma.
+     */
+    public void cerrar() {
+        cerrado = true;
+    }
+
+    /**
+     * Pasa pedidos del desborde a la cola mientras haya lugar. Lo llaman tanto el que
+     * derrama como el que libera, así ninguno de los dos puede dejar un pedido varado.
+     */
+    private void reponer(ColaEtapa<Pedido> cola) {
+        while (!desborde.isEmpty() && espacio.tryAcquire()) {
+            Pedido p = desborde.poll();
+            if (p == null) {
+                espacio.release();
+                return;
+            }
+            cola.agregar(p);
+        }
+    }
+
+    /** Descuenta hasta 'cantidad' pedidos publicados sin lugar; devuelve cuántos descontó. */
+    private int descontarSinLugar(int cantidad) {
+        while (true) {
+            int actual = sinLugar.get();
+            if (actual == 0) return 0;
+            int descontados = Math.min(actual, cantidad);
+            if (sinLugar.compareAndSet(actual, actual - descontados)) return descontados;
+        }
+    }
+
+    /** Toma sin esperar todos los lugares libres que pueda, hasta 'cantidad'. */
+    private int tomarLibres(int cantidad) {
+        while (cantidad > 0) {
+            int libres = Math.min(espacio.availablePermits(), cantidad);
+            if (libres <= 0) return 0;
+            if (espacio.tryAcquire(libres)) return libres;
+        }
+        return 0;
+    }
+
+    private void marcarLlena() {
+        if (llenaDesde.compareAndSet(0, Math.max(1, reloj.getAsLong()))) {
+            vecesLlena.increment();
+        }
+    }
+
+    // --- Métricas ---
+
+    /** Tiempo total que la etapa estuvo llena, incluido el período en curso. */
+    public long getNanosLlena() {
+        long desde = llenaDesde.get();
+        return nanosLlena.sum() + (desde != 0 ? Math.max(0, reloj.getAsLong() - desde) : 0);
+    }
+    public long getVecesLlena() { return vecesLlena.sum(); }
+    /** Tiempo bloqueado sumado entre todos los productores (BLOQUEAR). */
+    public long getNanosBloqueado() { return nanosBloqueado.sum(); }
+    public long getRechazados() { return rechazados.sum(); }
+    public long getDerramados() { return derramados.sum(); }
+
+    /** Resumen de una línea para el log. */
+    public String resumen() {
+        return String.format(Locale.ROOT,
+                "capacidad %d (%s), llena %.2f s en %d ocasiones, productores bloqueados %.2f s, rechazados %d, derramados %d (en desborde %d)",
+                capacidad, politica, getNanosLlena() / 1e9, getVecesLlena(), getNanosBloqueado() / 1e9,
+                getRechazados(), getDerramados(), getEnDesborde());
+    }
+}
@@ -0,0 +1,204 @@
+// LockInstrumentado.java
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ReentrantLock que mide cuánto esperan los hilos para tomarlo y cuánto lo retienen.
+ * Solo se mide la primera adquisición de cada hilo (las reentrantes no esperan) y la
+ * tenencia se cuenta hasta el unlock que lo libera del todo. Un Condition.await suelta el
+ * lock por dentro, sin pasar por unlock(): las condiciones de newCondition cierran la
+ * tenencia antes de esperar y abren una nueva al recuperar el lock, así la espera no cuenta
+ * como tenencia y otro dueño en el medio no pisa el inicio del que esperaba.
+ * Se crea con FabricaLocks, que devuelve un ReentrantLock común si la instrumentación
+ * está deshabilitada.
+ */
+public class LockInstrumentado extends ReentrantLock {
+    private static final long serialVersionUID = 1L;
+
+    private final EstadisticasLock estadisticas;
+    // Hilos bloqueados en este lock ahora mismo (para el máximo de la cola)
+    private final AtomicInteger esperando = new AtomicInteger();
+    // Momento de la primera adquisición (o del regreso de un await); lo escribe y lo lee solo el dueño
+    private long inicioTenencia;
+
+    LockInstrumentado(EstadisticasLock estadisticas) {
+        this.estadisticas = estadisticas;
+    }
+
+    public EstadisticasLock getEstadisticas() {
+        return estadisticas;
+    }
+
+    @Override
+    public void lock() {
+        if (isHeldByCurrentThread()) {
+            super.lock();
+            return;
+        }
+        long t0 = System.nanoTime();
+        boolean contendida = !super.tryLock();
+        if (contendida) {
+            estadisticas.registrarEnCola(esperando.incrementAndGet());
+            try {
+                super.lock();
+            } finally {
+                esperando.decrementAndGet();
+            }
+        }
+        adquirido(t0, contendida);
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        if (isHeldByCurrentThread()) {
+            super.lockInterruptibly();
+            return;
+        }
+        long t0 = System.nanoTime();
+        boolean contendida = !super.tryLock();
+        if (contendida) {
+            estadisticas.registrarEnCola(esperando.incrementAndGet());
+            try {
+                super.lockInterruptibly();
+            } finally {
+                esperando.decrementAndGet();
+            }
+        }
+        adquirido(t0, contendida);
+    }
+
+    @Override
+    public boolean tryLock() {
+        boolean reentrante = isHeldByCurrentThread();
+        long t0 = System.nanoTime();
+        if (!super.tryLock()) return false;
+        if (!reentrante) adquirido(t0, false);
+        return true;
+    }
+
+    @Override
+    public boolean tryLock(long timeout, TimeUnit unit) throws InterruptedException {
+        if (isHeldByCurrentThread()) return super.tryLock(timeout, unit);
+        long t0 = System.nanoTime();
+        boolean contendida = !super.tryLock();
+        if (contendida) {
+            estadisticas.registrarEnCola(esperando.incrementAndGet());
+            try {
+                if (!super.tryLock(timeout, unit)) return false;
+            } finally {
+                esperando.decrementAndGet();
+            }
+        }
+        adquirido(t0, contendida);
+        return true;
+    }
+
+    @Override
+    public void unlock() {
+        if (getHoldCount() != 1) {
+            super.unlock(); // Reentrante (o no es el dueño: super lanza la excepción)
+            return;
+        }
+        long tenencia = System.nanoTime() - inicioTenencia;
+        super.unlock();
+        estadisticas.registrarTenencia(tenencia); // Después de soltar, para no alargar la tenencia
+    }
+
+    private void adquirido(long t0, boolean contendida) {
+        long ahora = System.nanoTime();
+        inicioTenencia = ahora;
+        estadisticas.registrarAdquisicion(ahora - t0, contendida);
+    }
+
+    @Override
+    public Condition newCondition() {
+        return new CondicionInstrumentada(super.newCondition());
+    }
+
+    /**
+     * Condition que corta la tenencia del dueño mientras espera. Sin el lock, await lanza
+     * IllegalMonitorStateException antes de tocar nada; con él, al volver (aun por
+     * interrupción o timeout) el hilo es otra vez el dueño y puede fijar inicioTenencia.
+     */
+    private final class CondicionInstrumentada implements Condition {
+        private final Condition interna;
+
+        CondicionInstrumentada(Condition interna) {
+            this.interna = interna;
+        }
+
+        /** Registra la tenencia hasta ahora; devuelve false si el hilo no es el dueño. */
+        private boolean soltar() {
+            if (!isHeldByCurrentThread()) return false;
+            estadisticas.registrarTenencia(System.nanoTime() - inicioTenencia);
+            return true;
+        }
+
+        private void recuperar(boolean dueno) {
+            if (dueno) inicioTenencia = System.nanoTime();
+        }
+
+        @Override
+        public void await() throws InterruptedException {
+            boolean dueno = soltar();
+            try {
+                interna.await();
+            } finally {
+                recuperar(dueno);
+            }
+        }
+
+        @Override
+        public void awaitUninterruptibly() {
+            boolean dueno = soltar();
+            try {
+                interna.awaitUninterruptibly();
+            } finally {
+                recuperar(dueno);
+            }
+        }
+
+        @Override
+        public long awaitNanos(long nanosTimeout) throws InterruptedException {
+            boolean dueno = soltar();
+            try {
+                return interna.awaitNanos(nanosTimeout);
+            } finally {
+                recuperar(dueno);
+            }
+        }
+
+        @Override
+        public boolean await(long time, TimeUnit unit) throws InterruptedException {
+            boolean dueno = soltar();
+            try {
+                return interna.await(time, unit);
+            } finally {
+                recuperar(dueno);
+            }
+        }
+
+        @Override
+        public boolean awaitUntil(Date deadline) throws InterruptedException {
+            boolean dueno = soltar();
+            try {
+                return interna.awaitUntil(deadline);
+            } finally {
+                recuperar(dueno);
+            }
+        }
+
+        @Override
+        public void signal() {
+            interna.signal();
+        }
+
+        @Override
+        public void signalAll() {
+            interna.signalAll();
+        }
+    }
+}
@@ -1,23 +1,27 @@
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.PrintStream;
+import java.util.Locale;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 
 /**
  * Gestiona el logging periódico y final de la simulación.
- * Escribe los logs en un archivo especificado.
+ * Escribe los logs en un archivo especificado, a través de un EscritorLogAsincrono:
+ * quien loguea solo encola la línea, nunca espera al disco.
  */
 public class LoggerSistema {
     private final RegistroPedidos registro;
     private final String archivoLog;
     private ScheduledExecutorService scheduler;
-    private PrintWriter writer;
-    // Formato de timestamp para los logs
-    private static final DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private final PoliticaFlush politicaFlush;
+    private EscritorLogAsincrono writer;
+    // Registros del buffer circular del escritor (líneas pendientes como máximo)
+    private static final int CAPACIDAD_BUFFER_LOG = 1024;
+    // Intervalo de volcado para PoliticaFlush.POR_INTERVALO
+    private static final long INTERVALO_FLUSH_MS = 100;
+    // Lo usa solo el hilo del scheduler, para armar la línea periódica sin String.format
+    private final StringBuilder lineaPeriodica = new StringBuilder(256);
 
     /**
      * Constructor del LoggerSistema.
@@ -25,8 +29,16 @@ public class LoggerSistema {
      * @param archivoLog El nombre del archivo donde se guardarán los logs.
      */
     public LoggerSistema(RegistroPedidos registro, String archivoLog) {
+        this(registro, archivoLog, PoliticaFlush.POR_LOTE);
+    }
+
+    /**
+     * @param politicaFlush Cuándo el escritor vuelca al archivo las líneas acumuladas.
+     */
+    public LoggerSistema(RegistroPedidos registro, String archivoLog, PoliticaFlush politicaFlush) {
         this.registro = registro;
         this.archivoLog = archivoLog;
+        this.politicaFlush = politicaFlush;
     }
 
     /**
@@ -37,8 +49,8 @@ public class LoggerSistema {
      */
     public void iniciarLogPeriodico(long intervaloMs) {
         try {
-            // PrintWriter con append=true y autoflush=true
-            writer = new PrintWriter(new FileWriter(archivoLog, true), true);
+            // Escritor asíncrono en modo append; el scheduler solo encola
+            writer = new EscritorLogAsincrono(archivoLog, CAPACIDAD_BUFFER_LOG, politicaFlush, INTERVALO_FLUSH_MS);
             // Scheduler para ejecutar la tarea periódicamente
             scheduler = Executors.newSingleThreadScheduledExecutor();
 
@@ -47,18 +59,44 @@ public class LoggerSistema {
                 // Evita NullPointerException si el registro no está listo (poco probable aquí)
                 if (registro == null) return;
 
-                String timestamp = dtf.format(LocalDateTime.now());
-                int fallidos = registro.getCantidadFallidos();
-                int verificados = registro.getCantidadVerificados();
-                // Añadir estado de colas intermedias para más detalle
-                int prepQ = registro.getCantidadEnPreparacion();
-                int tranQ = registro.getCantidadEnTransito();
-                int entrQ = registro.getCantidadEntregados();
-                int generados = registro.getCantidadPreparados(); // Total generados hasta ahora
-
-                // Escribir línea de log formateada
-                writer.println(String.format("%s - Generados:%d | Verificados:%d | Fallidos:%d",
-                                timestamp, generados, verificados, fallidos));
+                // Una sola foto coherente de los contadores, sin recorrer las colas.
+                // La marca de tiempo la agrega el escritor.
+                InstantaneaRegistro foto = registro.getInstantanea();
+                StringBuilder sb = lineaPeriodica;
+                sb.setLength(0);
+                sb.append("Generados:").append(foto.getGenerados())
+                  .append(" | Verificados:").append(foto.getVerificados())
+                  .append(" | Fallidos:").append(foto.getFallidos())
+                  .append(" | Colas");
+                for (int i = 0; i < foto.getCantidadEtapas(); i++) {
+                    sb.append(' ').append(registro.getNombreEtapa(i)).append(':').append(foto.getProfundidad(i));
+                }
+                writer.registrar(sb);
+
+                // Percentiles de la latencia total y p99 de la espera en cada etapa
+                sb.setLength(0);
+                sb.append("Latencia E2E ").append(registro.getHistogramaExtremoAExtremo().resumen())
+                  .append(" | Espera p99");
+                for (int i = 0; i < registro.getCantidadEtapas(); i++) {
+                    sb.append(' ').append(registro.getNombreEtapa(i)).append(':')
+                      .append(HistogramaLatencia.ms(registro.getHistogramaEspera(i).percentil(0.99)));
+                }
+                writer.registrar(sb);
+
+                // Tiempo lleno de las etapas con capacidad acotada (dónde se satura el flujo)
+                sb.setLength(0);
+                for (int i = 0; i < registro.getCantidadEtapas(); i++) {
+                    LimiteEtapa limite = registro.getLimite(i);
+                    if (limite == null) continue;
+                    sb.append(sb.length() == 0 ? "Etapa llena (s)" : "").append(' ').append(registro.getNombreEtapa(i)).append(':')
+                      .append(String.format(Locale.ROOT, "%.2f", limite.getNanosLlena() / 1e9));
+                }
+                if (sb.length() > 0) writer.registrar(sb);
+
+                // Contención de locks, solo con -Dsimulacion.locks.instrumentados=true
+                if (FabricaLocks.isHabilitada()) {
+                    writer.registrar(FabricaLocks.resumenCorto());
+                }
             };
 
             // Programar la tarea para que se ejecute ahora y luego cada intervaloMs
@@ -69,18 +107,32 @@ public class LoggerSistema {
             System.err.println("Error Crítico al iniciar el logger de archivo: " + e.getMessage());
             System.err.println("Los logs periódicos NO se guardarán en archivo.");
             if (writer != null) {
-                writer.close(); // Intentar cerrar si se abrió parcialmente
+                writer.cerrar(); // Intentar cerrar si se abrió parcialmente
             }
              writer = null; // Asegurar que no se intente usar
              scheduler = null; // No iniciar si falla el archivo
         } catch (Exception e) {
              System.err.println("Error inesperado al iniciar el logger periódico: " + e.getMessage());
              scheduler = null;
-             if (writer != null) writer.close();
+             if (writer != null) writer.cerrar();
              writer = null;
         }
     }
 
+    /**
+     * Abre el archivo de log (en modo append) sin programar el log periódico.
+     * Lo usan los motores que no corren en tiempo real, como SimulacionEventos;
+     * logMensaje y logFinal escriben entonces en el archivo.
+     */
+    public void abrirArchivo() {
+        try {
+            writer = new EscritorLogAsincrono(archivoLog, CAPACIDAD_BUFFER_LOG, politicaFlush, INTERVALO_FLUSH_MS);
+        } catch (IOException e) {
+            System.err.println("Error al abrir el archivo de log: " + e.getMessage() + ". Se usará la consola.");
+            writer = null;
+        }
+    }
+
     /**
      * Escribe un mensaje puntual en el archivo de log (si está disponible)
      * o en la consola como fallback.
@@ -88,14 +140,12 @@ public class LoggerSistema {
      */
     public void logMensaje(String mensaje) {
         if (writer != null) {
-             String timestamp = dtf.format(LocalDateTime.now());
-             // Escribe el mensaje precedido del timestamp
-             writer.println(timestamp + " - " + mensaje);
-             // El autoflush debería manejarlo, pero un flush explícito puede ser útil
-             // writer.flush();
+             // Encola el mensaje; el escritor le antepone el timestamp. Si el buffer
+             // está lleno se descarta y se cuenta, nunca bloquea a quien loguea.
+             writer.registrar(mensaje);
         } else {
             // Si el writer no está inicializado (error en inicio), loguear a consola
-            System.out.println("LOG (consola): " + mensaje);
+            consola().println("LOG (consola): " + mensaje);
         }
     }
 
@@ -151,15 +201,13 @@ public class LoggerSistema {
 
         printlnFinal(logPrefix + "Tiempo total de ejecución: " + tiempoTotalMs + " ms (" + String.format("%.3f", tiempoTotalMs / 1000.0) + " segundos)");
 
-        // Estadísticas de Pedidos
-        int generados = registro.getCantidadPreparados();
-        int verificados = registro.getCantidadVerificados();
-        int fallidos = registro.getCantidadFallidos();
-        int procFinal = verificados + fallidos;
-        int qPrep = registro.getCantidadEnPreparacion();
-        int qTran = registro.getCantidadEnTransito();
-        int qEntr = registro.getCantidadEntregados();
-        int qRestantes = qPrep + qTran + qEntr;
+        // Estadísticas de Pedidos (todas de la misma instantánea, para que el balance sea coherente)
+        InstantaneaRegistro foto = registro.getInstantanea();
+        int generados = foto.getGenerados();
+        int verificados = foto.getVerificados();
+        int fallidos = foto.getFallidos();
+        int procFinal = foto.getFinalizados();
+        int qRestantes = foto.getRestantes();
 
         printlnFinal(logPrefix + "Total Pedidos Generados: " + generados);
         printlnFinal(logPrefix + "Total Pedidos Verificados: " + verificados);
@@ -174,12 +222,33 @@ public class LoggerSistema {
         }
 
         // Estado final de las colas
-        printlnFinal(logPrefix + "Pedidos restantes en Cola Preparación: " + qPrep);
-        printlnFinal(logPrefix + "Pedidos restantes en Cola Tránsito: " + qTran);
-        printlnFinal(logPrefix + "Pedidos restantes en Cola Entregados: " + qEntr);
+        for (int i = 0; i < foto.getCantidadEtapas(); i++) {
+            printlnFinal(logPrefix + "Pedidos restantes en Cola " + registro.getNombreEtapa(i) + ": " + foto.getProfundidad(i));
+        }
         printlnFinal(logPrefix + "Total Pedidos Restantes en Colas: " + qRestantes);
+        for (int i = 0; i < registro.getCantidadEtapas(); i++) {
+            LimiteEtapa limite = registro.getLimite(i);
+            if (limite != null) printlnFinal(logPrefix + "Capacidad de Cola " + registro.getNombreEtapa(i) + ": " + limite.resumen());
+        }
 
 
+        // Latencias (percentiles de espera y servicio por etapa, y extremo a extremo)
+        for (String linea : registro.getResumenLatencias().split(System.lineSeparator())) {
+            printlnFinal(logPrefix + linea);
+        }
+
+        // Pedidos terminados: se recorre el archivo para ver en qué etapa fallaron
+        ArchivoPedidos archivo = registro.getArchivo();
+        printlnFinal(logPrefix + archivo.resumen());
+        printlnFinal(logPrefix + fallidosPorEtapa(archivo));
+
+        // Contención de locks (si se habilitó la instrumentación)
+        if (FabricaLocks.isHabilitada()) {
+            for (String linea : FabricaLocks.resumen().split(System.lineSeparator())) {
+                printlnFinal(logPrefix + linea);
+            }
+        }
+
         // Verificación de consistencia
         if (generados != procFinal + qRestantes) {
              printlnFinal(String.format(logPrefix + "ADVERTENCIA EN LOG: Inconsistencia detectada. Generados (%d) != Finalizados (%d) + Restantes (%d). Diferencia: %d",
@@ -190,14 +259,13 @@ public class LoggerSistema {
 
         printlnFinal(logPrefix + "--- FIN INFORME ---");
 
-        // Cerrar el PrintWriter si se estaba usando
+        // Cerrar el escritor si se estaba usando: drena lo pendiente, vuelca y fuerza a disco
         if (writer != null) {
-            writer.flush(); // Asegura que todo se escriba
-            writer.close(); // Cierra el archivo
-            // Verificar si hubo errores al cerrar
-            if(writer.checkError()){
-                System.err.println("Error al cerrar el archivo de log.");
+            long descartadas = writer.getDescartados();
+            if (descartadas > 0) {
+                printlnFinal("Líneas de log descartadas por buffer lleno: " + descartadas);
             }
+            writer.cerrar();
             writer = null; // Indica que ya no está disponible
         }
     }
@@ -209,9 +277,35 @@ public class LoggerSistema {
      */
     private void printlnFinal(String line) {
         if (writer != null) {
-            writer.println(line);
+            writer.registrarSinDescartar(line, false);
         } else {
-            System.out.println(line); // Fallback a consola
+            consola().println(line); // Fallback a consola
+        }
+    }
+
+    /** Consola de la corrida (la del registro), para cuando no hay archivo de log. */
+    private PrintStream consola() {
+        return registro != null ? registro.getSalida() : System.out;
+    }
+
+    /** "Fallidos por etapa: Preparación 3, Tránsito 1, ...", contados recorriendo el archivo. */
+    private String fallidosPorEtapa(ArchivoPedidos archivo) {
+        int etapas = registro.getCantidadEtapas();
+        long[] fallidos = new long[etapas + 1]; // El último: rechazados antes de ser tomados
+        try (ArchivoPedidos.Cursor cursor = archivo.recorrer()) {
+            while (cursor.siguiente()) {
+                if (cursor.getResultado() != EstadoPedido.FALLIDO) continue;
+                int etapa = cursor.getEtapa();
+                fallidos[etapa >= 0 && etapa < etapas ? etapa : etapas]++;
+            }
+        } catch (IOException e) {
+            return "Fallidos por etapa: no se pudo leer el archivo de pedidos (" + e.getMessage() + ")";
+        }
+        StringBuilder sb = new StringBuilder("Fallidos por etapa:");
+        for (int i = 0; i < etapas; i++) {
+            sb.append(i == 0 ? " " : ", ").append(registro.getNombreEtapa(i)).append(' ').append(fallidos[i]);
         }
+        if (fallidos[etapas] > 0) sb.append(", sin tomar ").append(fallidos[etapas]);
+        return sb.toString();
     }
 }
\ No newline at end of file
@@ -1,96 +1,340 @@
-import java.util.ArrayList;
-import java.util.List;
+import java.io.PrintStream;
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
-// Asegúrate de tener también las clases Casillero, EstadoCasillero y NoAvailableLockersException
+// Asegúrate de tener también las clases Casillero, EstadoCasillero y NoHayCasilleros
 
 public class MatrizCasilleros {
-    private final Casillero[][] casilleros; // Cambio a matriz 2D
+    // Sorteos de franja por rechazo antes de recorrerlas todas (ver elegirFranja)
+    private static final int INTENTOS_RECHAZO = 4;
+
+    private final AlmacenCasilleros almacen; // Estado y usos por ID lineal (objetos o compacto)
     private final int numRows;
     private final int numCols;
     private final int totalCasilleros;
-    private final ReentrantLock matrizLock = new ReentrantLock();
-    private final Random random = new Random();
+    private final ModoConcurrencia modo;
+    private final boolean bloqueoGlobal; // modo == BLOQUEO_GLOBAL
+    private final TipoAlmacenamiento tipoAlmacen;
+    private final ReentrantLock matrizLock = FabricaLocks.crear("matriz.global");
+
+    // Franjas de filas, cada una con su lock, su índice de libres y sus contadores.
+    // En BLOQUEO_GLOBAL hay una sola franja que cubre toda la matriz y usa matrizLock;
+    // en ZONAS hay tantas como zonas se pidan, normalmente una por preparador (bandas de filas lo más parejas posible).
+    // en ZONAS hay una por preparador (bandas de filas lo más parejas posible).
+    private final Franja[] franjas;
+    private final int capacidadMaxFranja; // Para elegir franja por rechazo (ver elegirFranja)
+    // Zonas propias repartidas a los preparadores (ronda) y ocupaciones fuera de la propia
+    private final AtomicInteger siguienteZona = new AtomicInteger(0);
+    private final LongAdder robos = new LongAdder();
+    // Los FUERA_DE_SERVICIO nunca vuelven a estar disponibles: alcanza con un contador
+    // global (solo se incrementa en fallos) para detectar el agotamiento permanente.
+    private final AtomicInteger cantFueraDeServicio = new AtomicInteger(0);
+
+    // Espera de casilleros libres (ocuparCasillero con timeout). Es un lock aparte para no
+    // mezclarlo con las franjas; quien libera solo lo toma si hay alguien esperando.
+    private final ReentrantLock esperaLock = FabricaLocks.crear("matriz.espera");
+    private final Condition cambioDisponibilidad = esperaLock.newCondition();
+    private final AtomicInteger esperando = new AtomicInteger(0);
+    private volatile boolean cerrada = false;
+    // Diario de transiciones (null = sin diario): registra cada liberación y puesta fuera de servicio
+    private volatile DiarioTransiciones diario;
+    // Generador para elegir casillero; null = ThreadLocalRandom del hilo que ocupa
+    private volatile Random generador;
 
     /**
-     * Constructor para una matriz de casilleros bidimensional.
+     * Porción de filas contiguas de la matriz con su propio lock e índice de libres.
+     * Los contadores son volatile para que las estadísticas puedan leerse sin lock.
+     */
+    private static final class Franja {
+        final ReentrantLock lock;
+        final IndiceLibres libres;
+        final int capacidad;
+        volatile int cantLibres;   // Espejo de libres.getCantidad(), escrito bajo lock
+        volatile int cantOcupados;
+
+        Franja(ReentrantLock lock, int primerId, int cantidad) {
+            this.lock = lock;
+            this.libres = new IndiceLibres(primerId, cantidad);
+            this.capacidad = cantidad;
+            this.cantLibres = cantidad;
+        }
+    }
+
+    /**
+     * Constructor para una matriz de casilleros bidimensional con bloqueo global.
      * @param numRows Número de filas.
      * @param numCols Número de columnas.
      */
     public MatrizCasilleros(int numRows, int numCols) {
+        this(numRows, numCols, ModoConcurrencia.BLOQUEO_GLOBAL);
+    }
+
+    /**
+     * Constructor para una matriz de casilleros bidimensional con almacenamiento de objetos.
+     * @param numRows Número de filas.
+     * @param numCols Número de columnas.
+     * @param modo Estrategia de sincronización (lock global o por franjas con CAS).
+     */
+    public MatrizCasilleros(int numRows, int numCols, ModoConcurrencia modo) {
+        this(numRows, numCols, modo, TipoAlmacenamiento.OBJETOS);
+    }
+
+    /**
+     * Constructor para una matriz de casilleros bidimensional.
+     * @param numRows Número de filas.
+     * @param numCols Número de columnas.
+     * @param modo Estrategia de sincronización (lock global, por franjas o por zonas; en ZONAS
+     *             queda una sola zona, para varias usar el constructor que recibe zonas).
+     * @param tipoAlmacen Representación en memoria de los casilleros; COMPACTO para matrices de millones de celdas.
+     */
+    public MatrizCasilleros(int numRows, int numCols, ModoConcurrencia modo, TipoAlmacenamiento tipoAlmacen) {
+        this(numRows, numCols, modo, tipoAlmacen, 1);
+    }
+
+    /**
+     * Constructor para una matriz de casilleros bidimensional.
+     * @param numRows Número de filas.
+     * @param numCols Número de columnas.
+     * @param modo Estrategia de sincronización (lock global, por franjas o por zonas).
+     * @param tipoAlmacen Representación en memoria de los casilleros; COMPACTO para matrices de millones de celdas.
+     * @param zonas Cantidad de zonas en modo ZONAS (normalmente, una por preparador); se
+     *              limita al número de filas. En los otros modos se ignora.
+     */
+    public MatrizCasilleros(int numRows, int numCols, ModoConcurrencia modo, TipoAlmacenamiento tipoAlmacen, int zonas) {
+        this(numRows, numCols, modo, tipoAlmacen, zonas, System.out);
+    }
+
+    /**
+     * Constructor para una matriz de casilleros bidimensional.
+     * @param numRows Número de filas.
+     * @param numCols Número de columnas.
+     * @param modo Estrategia de sincronización (lock global, por franjas o por zonas).
+     * @param tipoAlmacen Representación en memoria de los casilleros.
+     * @param zonas Cantidad de zonas en modo ZONAS; en los otros modos se ignora.
+     * @param salida Consola donde se anuncia la creación (la de la corrida, ver RegistroPedidos.setSalida).
+     */
+    public MatrizCasilleros(int numRows, int numCols, ModoConcurrencia modo, TipoAlmacenamiento tipoAlmacen, int zonas, PrintStream salida) {
         if (numRows <= 0 || numCols <= 0) {
             throw new IllegalArgumentException("El número de filas y columnas debe ser positivo.");
         }
+        if (modo == null || tipoAlmacen == null) {
+            throw new IllegalArgumentException("El modo de concurrencia y el tipo de almacenamiento no pueden ser null.");
+        }
+        if ((long) numRows * numCols > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("La matriz excede la cantidad máxima de casilleros direccionables por ID lineal.");
+        }
         this.numRows = numRows;
         this.numCols = numCols;
         this.totalCasilleros = numRows * numCols;
-        this.casilleros = new Casillero[numRows][numCols];
-
-        // Inicializar la matriz 2D con casilleros y IDs lineales
-        for (int r = 0; r < numRows; r++) {
-            for (int c = 0; c < numCols; c++) {
-                // Calculamos un ID único lineal (0 a totalCasilleros - 1)
-                int id = r * numCols + c;
-                casilleros[r][c] = new Casillero(id);
+        this.modo = modo;
+        this.bloqueoGlobal = modo == ModoConcurrencia.BLOQUEO_GLOBAL;
+        this.tipoAlmacen = tipoAlmacen;
+        // IDs lineales únicos de 0 a totalCasilleros - 1 (id = fila * numCols + columna)
+        this.almacen = tipoAlmacen == TipoAlmacenamiento.COMPACTO
+                ? new AlmacenCompacto(totalCasilleros)
+                : new AlmacenObjetos(numRows, numCols);
+
+        if (modo == ModoConcurrencia.BLOQUEO_GLOBAL) {
+            this.franjas = new Franja[] { new Franja(matrizLock, 0, totalCasilleros) };
+        } else {
+            int cantidad = modo == ModoConcurrencia.FRANJAS ? numRows : Math.max(1, Math.min(zonas, numRows));
+            String nombreLock = modo == ModoConcurrencia.FRANJAS ? "matriz.franja" : "matriz.zona";
+            this.franjas = new Franja[cantidad];
+            // La franja z cubre las filas [z*numRows/cantidad, (z+1)*numRows/cantidad)
+            for (int z = 0; z < cantidad; z++) {
+                int desde = (int) ((long) z * numRows / cantidad);
+                int hasta = (int) ((long) (z + 1) * numRows / cantidad);
+                franjas[z] = new Franja(FabricaLocks.crear(nombreLock), desde * numCols, (hasta - desde) * numCols);
             }
         }
-        System.out.println("Matriz de casilleros creada: " + numRows + "x" + numCols + " (Total: " + totalCasilleros + ")");
+        int capacidadMax = 0;
+        for (Franja f : franjas) capacidadMax = Math.max(capacidadMax, f.capacidad);
+        this.capacidadMaxFranja = capacidadMax;
+        salida.println("Matriz de casilleros creada: " + numRows + "x" + numCols + " (Total: " + totalCasilleros + ", modo: " + modo
+                + (modo == ModoConcurrencia.ZONAS ? " con " + franjas.length + " zonas" : "") + ", almacenamiento: " + tipoAlmacen + ")");
     }
 
     /**
-     * Busca un casillero vacío aleatorio en la matriz 2D y lo ocupa.
-     * Devuelve el ID lineal del casillero ocupado o -1 si no hay vacíos temporalmente.
-     * Lanza NoAvailableLockersException si no quedan casilleros usables permanentemente.
-     * @return ID del casillero ocupado, -1 si no hay vacíos temporalmente.
-     * @throws NoAvailableLockersException Si todos los casilleros están FUERA_DE_SERVICIO.
+     * Reparte las zonas propias en ronda: cada preparador pide la suya al construirse.
+     * @return El índice de la zona propia, o -1 si la matriz no está en modo ZONAS.
+     */
+    public int asignarZona() {
+        if (modo != ModoConcurrencia.ZONAS) return -1;
+        return Math.floorMod(siguienteZona.getAndIncrement(), franjas.length);
+    }
+
+    /**
+     * Toma un casillero vacío aleatorio del índice de libres y lo ocupa en O(1), sin zona propia.
+     * @see #ocuparCasilleroAleatorio(int)
      */
     public int ocuparCasilleroAleatorio() throws NoHayCasilleros {
-        matrizLock.lock();
-        try {
-            // Almacenamos las coordenadas (fila, columna) de los casilleros vacíos
-            List<int[]> vaciosCoords = new ArrayList<>();
-            boolean hayOcupados = false;
-
-            // Iterar sobre la matriz 2D
-            for (int r = 0; r < numRows; r++) {
-                for (int c = 0; c < numCols; c++) {
-                    EstadoCasillero estado = casilleros[r][c].getEstado();
-                    if (estado == EstadoCasillero.VACIO) {
-                        vaciosCoords.add(new int[]{r, c}); // Guardar [fila, columna]
-                    } else if (estado == EstadoCasillero.OCUPADO) {
-                        hayOcupados = true;
-                    }
-                    // Si es FUERA_DE_SERVICIO, no lo añadimos a vacíos
-                }
+        return ocuparCasilleroAleatorio(-1);
+    }
+
+    /**
+     * Toma un casillero vacío aleatorio del índice de libres y lo ocupa en O(1).
+     * Se empieza por la zona propia (o, sin zona, por una franja elegida con probabilidad
+     * proporcional a sus libres, para que el casillero resulte uniforme entre todos los
+     * vacíos de la matriz) y, si no tiene libres, se roba de las demás empezando por una al
+     * azar, para que quienes se quedan sin libres no se amontonen sobre la misma vecina. La
+     * elección es uniforme dentro de la franja elegida. Devuelve el ID lineal del casillero ocupado o -1 si no hay vacíos
+     * temporalmente en ninguna franja. Lanza NoHayCasilleros si no quedan casilleros usables
+     * permanentemente en toda la matriz.
+     * @param zona Zona propia (de asignarZona), o -1 para no preferir ninguna.
+     * @return ID del casillero ocupado, -1 si no hay vacíos temporalmente.
+     * @throws NoHayCasilleros Si todos los casilleros están FUERA_DE_SERVICIO.
+     */
+    public int ocuparCasilleroAleatorio(int zona) throws NoHayCasilleros {
+        // Con el evento de JFR deshabilitado no se lee el reloj y el evento no escapa
+        EventoOcuparCasillero evento = new EventoOcuparCasillero();
+        boolean medir = evento.isEnabled();
+        evento.begin();
+        Random g = generador;
+        Random rnd = g != null ? g : ThreadLocalRandom.current();
+        int n = franjas.length;
+        int propia = zona >= 0 && zona < n ? zona : (n == 1 ? 0 : elegirFranja(rnd));
+        int salto = n > 2 ? rnd.nextInt(n - 1) : 0; // Primera franja ajena a revisar
+        for (int i = 0; i < n; i++) {
+            Franja f = franjas[i == 0 ? propia : (propia + 1 + (salto + i - 1) % (n - 1)) % n];
+            if (f.cantLibres == 0) continue; // Lectura sin lock: solo descarta franjas vacías
+
+            int casilleroId;
+            long t0 = medir ? System.nanoTime() : 0;
+            f.lock.lock();
+            try {
+                // Elegir uniformemente entre los libres (swap-remove, sin crear objetos)
+                casilleroId = f.libres.tomarAleatorio(rnd);
+                if (casilleroId < 0) continue; // Otro hilo se llevó el último
+                f.cantLibres = f.libres.getCantidad();
+                f.cantOcupados++;
+                // En BLOQUEO_GLOBAL todo cambio de estado ocurre bajo matrizLock
+                if (bloqueoGlobal) almacen.ocupar(casilleroId);
+            } finally {
+                f.lock.unlock();
+                if (medir) evento.tiempoBajoLock += System.nanoTime() - t0;
             }
+            // Un ID del índice siempre está VACIO, el CAS no puede fallar
+            if (!bloqueoGlobal) almacen.ocupar(casilleroId);
+            // System.out.println(Thread.currentThread().getName() + " ocupó casillero ID " + casilleroId);
+            if (i > 0 && zona >= 0) robos.increment();
+            emitirOcupar(evento, i + 1, EventoOcuparCasillero.OCUPADO, casilleroId);
+            return casilleroId;
+        }
+
+        // No hay VACIOS: el contador dice si es temporal o permanente
+        if (cantFueraDeServicio.get() == totalCasilleros) {
+            emitirOcupar(evento, n, EventoOcuparCasillero.SIN_CASILLEROS, -1);
+            throw new NoHayCasilleros("¡Todos los casilleros ("+ totalCasilleros +") están Fuera de Servicio! No se pueden preparar más pedidos.");
+        }
+        emitirOcupar(evento, n, EventoOcuparCasillero.SIN_LIBRES, -1);
+        return -1; // Fallo temporal, hay OCUPADOS que podrían liberarse
+    }
+
+    /**
+     * Elige una franja con probabilidad proporcional a sus libres, leyendo cantLibres sin
+     * lock y sin crear objetos. Primero por rechazo: una franja al azar se acepta con
+     * probabilidad libres / capacidadMaxFranja, lo que en una matriz poco llena cuesta O(1)
+     * aunque haya una franja por fila. Si no acepta ninguna en INTENTOS_RECHAZO, recorre
+     * todas las franjas (O(franjas)). Si la matriz parece llena, una al azar.
+     */
+    private int elegirFranja(Random rnd) {
+        int n = franjas.length;
+        for (int intento = 0; intento < INTENTOS_RECHAZO; intento++) {
+            int i = rnd.nextInt(n);
+            if (rnd.nextInt(capacidadMaxFranja) < franjas[i].cantLibres) return i;
+        }
+        int total = 0;
+        for (Franja f : franjas) total += f.cantLibres;
+        if (total <= 0) return rnd.nextInt(n);
+        int r = rnd.nextInt(total);
+        for (int i = 0; i < n; i++) {
+            r -= franjas[i].cantLibres;
+            if (r < 0) return i;
+        }
+        return rnd.nextInt(n); // Los libres bajaron entre las dos lecturas
+    }
+
+    private static void emitirOcupar(EventoOcuparCasillero evento, int franjasRecorridas, String resultado, int casilleroId) {
+        evento.end();
+        if (!evento.shouldCommit()) return;
+        evento.franjasRecorridas = franjasRecorridas;
+        evento.resultado = resultado;
+        evento.casilleroId = casilleroId;
+        evento.commit();
+    }
+
+    /**
+     * Ocupa un casillero vacío aleatorio sin zona propia, esperando a que se libere uno si no hay.
+     * @see #ocuparCasillero(int, long, TimeUnit)
+     */
+    public int ocuparCasillero(long timeout, TimeUnit unidad) throws NoHayCasilleros, InterruptedException {
+        return ocuparCasillero(-1, timeout, unidad);
+    }
 
-            if (vaciosCoords.isEmpty()) {
-                // No hay VACIOS
-                if (!hayOcupados) {
-                    // Si TAMPOCO hay OCUPADOS, todos están FUERA_DE_SERVICIO
-                    throw new NoHayCasilleros("¡Todos los casilleros ("+ totalCasilleros +") están Fuera de Servicio! No se pueden preparar más pedidos.");
-                } else {
-                    // No hay VACIOS ahora, pero podrían liberarse OCUPADOS
-                    return -1; // Fallo temporal
+    /**
+     * Ocupa un casillero vacío aleatorio, empezando por la zona propia, esperando a que se
+     * libere uno si no hay en ninguna. El hilo queda estacionado hasta una liberación (no
+     * reintenta con sleeps), hasta que venza el timeout o hasta que se llame a cerrar().
+     * La espera es global: cualquier liberación lo despierta, sea de la zona que sea.
+     * @param zona Zona propia (de asignarZona), o -1 para no preferir ninguna.
+     * @param timeout Tiempo máximo de espera.
+     * @param unidad Unidad del timeout.
+     * @return ID del casillero ocupado, o -1 si venció el timeout o la matriz se cerró.
+     * @throws NoHayCasilleros Si todos los casilleros están FUERA_DE_SERVICIO.
+     * @throws InterruptedException Si el hilo es interrumpido mientras espera.
+     */
+    public int ocuparCasillero(int zona, long timeout, TimeUnit unidad) throws NoHayCasilleros, InterruptedException {
+        long limite = System.nanoTime() + unidad.toNanos(timeout);
+        while (true) {
+            int casilleroId = ocuparCasilleroAleatorio(zona);
+            if (casilleroId >= 0) return casilleroId;
+
+            esperaLock.lock();
+            esperando.incrementAndGet();
+            try {
+                // Se vuelve a mirar bajo esperaLock: quien libera publica el cambio antes de
+                // leer 'esperando', así que o lo vemos acá o nos llega la señal.
+                while (!hayLibres() && !cerrada && cantFueraDeServicio.get() < totalCasilleros) {
+                    long restante = limite - System.nanoTime();
+                    if (restante <= 0) return -1;
+                    cambioDisponibilidad.awaitNanos(restante);
                 }
+                if (cerrada) return -1;
+            } finally {
+                esperando.decrementAndGet();
+                esperaLock.unlock();
             }
+            // Hay libres (o se agotaron todos): reintentar; si otro hilo lo ganó, se vuelve a esperar
+        }
+    }
 
-            // Seleccionar coordenadas aleatorias de un casillero vacío
-            int randomIndex = random.nextInt(vaciosCoords.size());
-            int[] selectedCoords = vaciosCoords.get(randomIndex);
-            int r = selectedCoords[0];
-            int c = selectedCoords[1];
-
-            // Ocupar el casillero en esas coordenadas
-            casilleros[r][c].ocupar();
+    /**
+     * Señaliza el fin de la simulación: despierta a los hilos bloqueados en ocuparCasillero.
+     */
+    public void cerrar() {
+        cerrada = true;
+        despertarEsperando();
+    }
 
-            // Devolver el ID lineal correspondiente a esas coordenadas
-            int casilleroId = r * numCols + c;
-            // System.out.println(Thread.currentThread().getName() + " ocupó casillero ID " + casilleroId + " en [" + r + "," + c + "]");
-            return casilleroId;
+    private boolean hayLibres() {
+        for (Franja f : franjas) {
+            if (f.cantLibres > 0) return true;
+        }
+        return false;
+    }
 
+    /** Despierta a quienes esperan un casillero; no toma esperaLock si no hay nadie. */
+    private void despertarEsperando() {
+        if (esperando.get() == 0) return;
+        esperaLock.lock();
+        try {
+            cambioDisponibilidad.signalAll();
         } finally {
-            matrizLock.unlock();
+            esperaLock.unlock();
         }
     }
 
@@ -99,22 +343,44 @@ public class MatrizCasilleros {
      * @param casilleroId El ID lineal del casillero a liberar.
      */
     public void liberarCasillero(int casilleroId) {
-        // Convertir ID lineal a coordenadas [fila, columna]
-        int[] coords = getCoordsFromId(casilleroId);
-        if (coords == null) return; // ID inválido
-
-        int r = coords[0];
-        int c = coords[1];
+        if (!esIdValido(casilleroId)) return;
+        Franja f = getFranja(casilleroId);
 
-        matrizLock.lock();
-        try {
-            if (casilleros[r][c].getEstado() == EstadoCasillero.OCUPADO) {
-                casilleros[r][c].liberar();
-                // System.out.println("Casillero ID " + casilleroId + " en [" + r + "," + c + "] liberado.");
+        if (bloqueoGlobal) {
+            // Un solo lock: el CAS, el diario y el índice cambian juntos, como en la versión original
+            matrizLock.lock();
+            try {
+                if (!almacen.liberar(casilleroId)) return;
+                registrarLiberado(casilleroId);
+                devolverLibre(f, casilleroId);
+            } finally {
+                matrizLock.unlock();
+            }
+        } else {
+            // OCUPADO -> VACIO por CAS; si no estaba OCUPADO no hay nada que hacer
+            if (!almacen.liberar(casilleroId)) return;
+            registrarLiberado(casilleroId); // Antes de que otro preparador pueda ocuparlo
+            f.lock.lock();
+            try {
+                devolverLibre(f, casilleroId);
+            } finally {
+                f.lock.unlock();
             }
-        } finally {
-            matrizLock.unlock();
         }
+        despertarEsperando();
+    }
+
+    private void registrarLiberado(int casilleroId) {
+        DiarioTransiciones d = diario;
+        if (d != null) d.casilleroLiberado(casilleroId);
+    }
+
+    /** Vuelve a poner el casillero en el índice de libres de su franja. Se llama con f.lock tomado. */
+    private static void devolverLibre(Franja f, int casilleroId) {
+        f.libres.agregar(casilleroId);
+        f.cantLibres = f.libres.getCantidad();
+        f.cantOcupados--;
+        // System.out.println("Casillero ID " + casilleroId + " liberado.");
     }
 
     /**
@@ -122,72 +388,116 @@ public class MatrizCasilleros {
      * @param casilleroId El ID lineal del casillero a poner fuera de servicio.
      */
     public void ponerFueraDeServicio(int casilleroId) {
-        int[] coords = getCoordsFromId(casilleroId);
-        if (coords == null) return; // ID inválido
+        if (!esIdValido(casilleroId)) return;
 
-        int r = coords[0];
-        int c = coords[1];
+        // Solo poner fuera de servicio si está OCUPADO (OCUPADO -> FUERA_DE_SERVICIO por CAS)
+        // Un casillero VACIO está en el índice de libres; para permitirlo habría que quitarlo de ahí.
+        // En BLOQUEO_GLOBAL el CAS también se hace bajo matrizLock (la franja única usa ese lock).
+        Franja f = getFranja(casilleroId);
+        if (!bloqueoGlobal && !almacen.ponerFueraDeServicio(casilleroId)) return;
+        f.lock.lock();
+        try {
+            if (bloqueoGlobal && !almacen.ponerFueraDeServicio(casilleroId)) return;
+            DiarioTransiciones d = diario;
+            if (d != null) d.casilleroFueraDeServicio(casilleroId);
+            f.cantOcupados--;
+        } finally {
+            f.lock.unlock();
+        }
+        // Si era el último usable, quienes esperan deben enterarse para lanzar NoHayCasilleros
+        if (cantFueraDeServicio.incrementAndGet() == totalCasilleros) despertarEsperando();
+        // System.out.println("Casillero ID " + casilleroId + " fuera de servicio.");
+    }
+
+    /** Diario donde registrar las liberaciones y puestas fuera de servicio. Se configura antes de arrancar. */
+    public void setDiario(DiarioTransiciones diario) {
+        this.diario = diario;
+    }
+
+    /**
+     * Generador con que se eligen los casilleros, para corridas reproducibles con semilla
+     * (SimulacionEventos). Compartido entre hilos serializa las ocupaciones: solo para un
+     * único hilo. null vuelve a ThreadLocalRandom.
+     */
+    public void setGeneradorAleatorio(Random generador) {
+        this.generador = generador;
+    }
 
-        matrizLock.lock();
+    /**
+     * Recuperación (RecuperacionDiario): deja un casillero VACIO como OCUPADO o
+     * FUERA_DE_SERVICIO, sacándolo del índice de libres. Se llama antes de arrancar los hilos
+     * y no se registra en el diario.
+     * @return false si el ID no es válido o el casillero no estaba VACIO.
+     */
+    boolean restaurar(int casilleroId, EstadoCasillero estado) {
+        if (!esIdValido(casilleroId) || estado == EstadoCasillero.VACIO) return false;
+        Franja f = getFranja(casilleroId);
+        f.lock.lock();
         try {
-            // Solo poner fuera de servicio si está OCUPADO (o VACIO, si se quiere permitir)
-            if (casilleros[r][c].getEstado() == EstadoCasillero.OCUPADO) {
-                casilleros[r][c].ponerFueraDeServicio();
-                // System.out.println("Casillero ID " + casilleroId + " en [" + r + "," + c + "] fuera de servicio.");
+            if (!f.libres.quitar(casilleroId) || !almacen.ocupar(casilleroId)) return false;
+            f.cantLibres = f.libres.getCantidad();
+            if (estado == EstadoCasillero.FUERA_DE_SERVICIO) {
+                almacen.ponerFueraDeServicio(casilleroId);
+                cantFueraDeServicio.incrementAndGet();
+            } else {
+                f.cantOcupados++;
             }
-            // Considerar si se puede poner fuera de servicio un casillero ya VACIO:
-            // else if (casilleros[r][c].getEstado() == EstadoCasillero.VACIO) {
-            //     casilleros[r][c].ponerFueraDeServicio();
-            // }
+            return true;
         } finally {
-            matrizLock.unlock();
+            f.lock.unlock();
         }
     }
 
     /**
      * Obtiene estadísticas finales recorriendo la matriz 2D.
+     * En BLOQUEO_GLOBAL se toma matrizLock para una foto exacta; en FRANJAS se recorre
+     * sin lock global (cada estado es volatile) para no frenar a los trabajadores.
      * @return Un string con el resumen del estado y uso de los casilleros.
      */
     public String getEstadisticas() {
-        matrizLock.lock();
+        boolean global = bloqueoGlobal;
+        if (global) matrizLock.lock();
         try {
             long vacios = 0;
             long ocupados = 0;
             long fueraServicio = 0;
             long totalUsos = 0;
 
-            // Iterar sobre la matriz 2D
-            for (int r = 0; r < numRows; r++) {
-                for (int c = 0; c < numCols; c++) {
-                    Casillero casillero = casilleros[r][c];
-                    totalUsos += casillero.getContadorUso();
-                    switch (casillero.getEstado()) {
-                        case VACIO: vacios++; break;
-                        case OCUPADO: ocupados++; break;
-                        case FUERA_DE_SERVICIO: fueraServicio++; break;
-                    }
+            // Iterar por ID lineal (recorre la matriz 2D fila por fila)
+            for (int id = 0; id < totalCasilleros; id++) {
+                totalUsos += almacen.getContadorUso(id);
+                switch (almacen.getEstado(id)) {
+                    case VACIO: vacios++; break;
+                    case OCUPADO: ocupados++; break;
+                    case FUERA_DE_SERVICIO: fueraServicio++; break;
                 }
             }
-            return String.format("Estado Final Casilleros (%dx%d): Vacíos=%d, Ocupados=%d, FueraDeServicio=%d | Usos Totales Registrados=%d",
-                                 numRows, numCols, vacios, ocupados, fueraServicio, totalUsos);
+            String zonas = modo == ModoConcurrencia.ZONAS
+                    ? String.format(" | Zonas=%d, Robos entre zonas=%d", franjas.length, robos.sum()) : "";
+            return String.format("Estado Final Casilleros (%dx%d): Vacíos=%d, Ocupados=%d, FueraDeServicio=%d | Usos Totales Registrados=%d%s",
+                                 numRows, numCols, vacios, ocupados, fueraServicio, totalUsos, zonas);
         } finally {
-            matrizLock.unlock();
+            if (global) matrizLock.unlock();
         }
     }
 
     /**
-     * Convierte un ID lineal (0 a totalCasilleros-1) a coordenadas [fila, columna].
+     * Verifica que un ID lineal esté en el rango 0 a totalCasilleros-1.
      * @param casilleroId El ID lineal.
-     * @return Un array de int `[fila, columna]` o `null` si el ID es inválido.
+     * @return true si es válido; si no, informa el error por consola.
      */
-    private int[] getCoordsFromId(int casilleroId) {
+    private boolean esIdValido(int casilleroId) {
         if (casilleroId < 0 || casilleroId >= totalCasilleros) {
              System.err.println("Error: Intento de acceso a casillero con ID inválido: " + casilleroId);
-            return null; // ID fuera de rango
+            return false;
         }
-        int r = casilleroId / numCols; // División entera da la fila
-        int c = casilleroId % numCols; // Módulo da la columna
-        return new int[]{r, c};
+        return true;
+    }
+
+    /** La franja z empieza en la fila z*numRows/n (piso), así que la de una fila es la última que empieza antes. */
+    private Franja getFranja(int casilleroId) {
+        long fila = casilleroId / numCols;
+        return franjas[(int) (((fila + 1) * franjas.length - 1) / numRows)];
     }
 
     // --- Métodos Adicionales (Opcionales) ---
@@ -200,22 +510,84 @@ public class MatrizCasilleros {
         return totalCasilleros;
     }
 
-     /**
-     * Obtiene el casillero en una coordenada específica (si necesitas acceso directo).
-     * ¡Precaución! Devolver el objeto directamente podría permitir manipulación externa sin lock.
-     * Es mejor exponer solo el estado si es necesario.
-     * @param row Fila.
-     * @param col Columna.
-     * @return El objeto Casillero o null si las coordenadas son inválidas.
+    // Conteos rápidos para métricas: suman los contadores volatile de las franjas sin tomar
+    // locks (O(franjas), no recorren la matriz). Con trabajadores activos son aproximados.
+    public int getCantidadLibres() {
+        int total = 0;
+        for (Franja f : franjas) total += f.cantLibres;
+        return total;
+    }
+
+    public int getCantidadOcupados() {
+        int total = 0;
+        for (Franja f : franjas) total += f.cantOcupados;
+        return total;
+    }
+
+    public int getCantidadFueraDeServicio() {
+        return cantFueraDeServicio.get();
+    }
+
+    /** @return Cantidad de franjas (zonas en modo ZONAS). */
+    public int getCantidadFranjas() {
+        return franjas.length;
+    }
+
+    /** @return Casilleros ocupados fuera de la zona propia de quien los pidió. */
+    public long getCantidadRobos() {
+        return robos.sum();
+    }
+
+    /**
+     * @return El modo de concurrencia elegido al construir la matriz.
      */
-     /*
-    public Casillero getCasilleroAt(int row, int col) {
-        if (row >= 0 && row < numRows && col >= 0 && col < numCols) {
-            return casilleros[row][col];
-        }
-        return null;
+    public ModoConcurrencia getModo() {
+        return modo;
+    }
+
+    /**
+     * @return El tipo de almacenamiento elegido al construir la matriz.
+     */
+    public TipoAlmacenamiento getTipoAlmacenamiento() {
+        return tipoAlmacen;
+    }
+
+    /**
+     * Estima los bytes de heap usados por la matriz, para dimensionar el heap.
+     * Incluye el almacenamiento de casilleros, los índices de libres (2 int por casillero)
+     * y las franjas con sus locks. Son estimaciones con compressed oops, no mediciones.
+     * @return Los bytes estimados en total.
+     */
+    public long getBytesEstimados() {
+        return almacen.getBytesEstimados() + getBytesIndices();
+    }
+
+    /**
+     * Bytes de los índices de libres y de las franjas. Son 8 bytes por casillero (libres[] y
+     * posicion[]) en cualquier almacenamiento, así que con COMPACTO (4 bytes por casillero)
+     * el índice ocupa el doble que el estado y es la mayor parte de la huella.
+     */
+    private long getBytesIndices() {
+        long indices = 2 * (16 + 4L * totalCasilleros); // libres[] + posicion[] de todos los IndiceLibres
+        // Franja (~24) + IndiceLibres (~24) + ReentrantLock con su Sync (~48) por franja, cabeceras de arrays aparte
+        long porFranjas = franjas.length * (24L + 24L + 48L) + 32L * franjas.length;
+        return indices + porFranjas;
+    }
+
+    /**
+     * Informe de huella de memoria estimada, desglosado (almacenamiento e índice de libres) y por casillero.
+     * @return Un string con el resumen de memoria.
+     */
+    public String getHuellaMemoria() {
+        long almacenBytes = almacen.getBytesEstimados();
+        long indiceBytes = getBytesIndices();
+        long total = almacenBytes + indiceBytes;
+        return String.format("Huella de memoria estimada (%dx%d, %s, %s): Almacenamiento=%d bytes (%.1f bytes/casillero), "
+                             + "Índice de libres=%d bytes (%.1f bytes/casillero), Total=%d bytes (%.2f MiB, %.1f bytes/casillero)",
+                             numRows, numCols, tipoAlmacen, modo, almacenBytes, (double) almacenBytes / totalCasilleros,
+                             indiceBytes, (double) indiceBytes / totalCasilleros, total,
+                             total / (1024.0 * 1024.0), (double) total / totalCasilleros);
     }
-    */
 
      /**
       * Obtiene el estado de un casillero por ID.
@@ -223,9 +595,8 @@ public class MatrizCasilleros {
       * @return El EstadoCasillero o null si el ID es inválido.
       */
      public EstadoCasillero getEstadoCasillero(int casilleroId) {
-         int[] coords = getCoordsFromId(casilleroId);
-         if (coords == null) return null;
-         // No necesita lock porque el estado es volatile y solo leemos
-         return casilleros[coords[0]][coords[1]].getEstado();
+         if (!esIdValido(casilleroId)) return null;
+         // No necesita lock: el estado se lee de forma volatile (campo o AtomicIntegerArray)
+         return almacen.getEstado(casilleroId);
      }
 }
\ No newline at end of file
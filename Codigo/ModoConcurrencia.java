@@ -0,0 +1,15 @@
+// ModoConcurrencia.java
+/**
+ * Estrategia de sincronización de MatrizCasilleros, elegida al construirla.
+ */
+public enum ModoConcurrencia {
+    /** Un único lock (matrizLock) serializa todas las operaciones de la matriz. */
+    BLOQUEO_GLOBAL,
+    /** Un lock por fila ("franja") y transiciones de estado por CAS en cada casillero. */
+    FRANJAS,
+    /**
+     * Bandas de filas contiguas ("zonas"), una por preparador, cada una con su lock. Cada
+     * preparador ocupa de su zona y roba de las otras solo cuando la suya no tiene libres.
+     */
+    ZONAS
+}
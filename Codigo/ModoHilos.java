@@ -0,0 +1,60 @@
+// ModoHilos.java
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tipo de hilos con que se ejecutan los trabajadores (Preparador, Despachador, Entregador, Verificador).
+ *
+ * Los trabajadores pasan casi todo su tiempo en Thread.sleep o estacionados en una toma bloqueante,
+ * así que con miles de ellos conviene usar hilos virtuales (JDK 21+). Solo usan ReentrantLock,
+ * Semaphore y Condition (nada de synchronized en el camino de trabajo), de modo que un hilo
+ * virtual nunca queda "pinned" a su hilo portador mientras espera.
+ */
+public enum ModoHilos {
+    /** Hilos de plataforma en un pool cacheado (comportamiento original). */
+    PLATAFORMA,
+    /** Un hilo virtual por tarea; requiere JDK 21 o superior. */
+    VIRTUALES;
+
+    /**
+     * Crea el ExecutorService para este modo.
+     * Los hilos virtuales se crean por reflexión para que el proyecto siga compilando con
+     * JDKs anteriores; si la JVM no los soporta se avisa y se usan hilos de plataforma.
+     * @param prefijoNombre Prefijo del nombre de cada hilo, seguido de un número desde 0 en ambos modos.
+     * @return El executor listo para recibir a los trabajadores.
+     */
+    public ExecutorService crearExecutor(String prefijoNombre) {
+        if (this == VIRTUALES) {
+            try {
+                // Equivale a: Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefijo, 0).factory())
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                Class<?> ofVirtual = Class.forName("java.lang.Thread$Builder$OfVirtual");
+                builder = ofVirtual.getMethod("name", String.class, long.class).invoke(builder, prefijoNombre, 0L);
+                ThreadFactory factory = (ThreadFactory) ofVirtual.getMethod("factory").invoke(builder);
+                Method porTarea = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+                return (ExecutorService) porTarea.invoke(null, factory);
+            } catch (ReflectiveOperationException e) {
+                System.err.println("Hilos virtuales no disponibles en esta JVM (" + System.getProperty("java.version")
+                        + "), se usan hilos de plataforma.");
+            }
+        }
+        // Pool cacheado como el original, con los hilos nombrados igual que los virtuales
+        AtomicLong numero = new AtomicLong();
+        return Executors.newCachedThreadPool(r -> new Thread(r, prefijoNombre + numero.getAndIncrement()));
+    }
+
+    /**
+     * @return true si la JVM actual soporta hilos virtuales.
+     */
+    public static boolean virtualesDisponibles() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
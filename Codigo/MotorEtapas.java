@@ -0,0 +1,86 @@
+// MotorEtapas.java
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Lanza los trabajadores de un flujo declarado como datos: por cada DefinicionEtapa del
+ * registro, tantos TrabajadorEtapa como indique la definición. La generación de pedidos
+ * (PreparadorPedido) queda afuera: no toma de una cola sino que crea pedidos y ocupa
+ * casilleros, y publica siempre en la primera etapa.
+ *
+ * Agregar una etapa (por ejemplo, un reempaque entre entrega y verificación) o cambiar la
+ * política de selección de una cola es cambiar la lista de definiciones, no escribir otro
+ * trabajador.
+ *
+ * Si una definición tiene límites, se lanzan tantos trabajadores como su máximo y una
+ * CapacidadEtapa decide cuántos toman pedidos; RebalanceadorEtapas la ajusta en ejecución.
+ */
+public class MotorEtapas {
+    private final RegistroPedidos registro;
+    private final MatrizCasilleros matriz;
+    private final AtomicBoolean running;
+    private final CapacidadEtapa[] capacidades;
+
+    /**
+     * @param registro Registro creado con el flujo a ejecutar.
+     * @param matriz Matriz de casilleros (la usan las etapas que liberan casilleros).
+     * @param running Bandera compartida con los preparadores; en false los trabajadores vacían su cola y terminan.
+     */
+    public MotorEtapas(RegistroPedidos registro, MatrizCasilleros matriz, AtomicBoolean running) {
+        this.registro = registro;
+        this.matriz = matriz;
+        this.running = running;
+        List<DefinicionEtapa> etapas = registro.getEtapas();
+        this.capacidades = new CapacidadEtapa[etapas.size()];
+        for (int i = 0; i < capacidades.length; i++) {
+            DefinicionEtapa e = etapas.get(i);
+            if (e.getMaxTrabajadores() > 0) {
+                capacidades[i] = new CapacidadEtapa(Math.max(1, e.getMinTrabajadores()), e.getMaxTrabajadores(), e.getTrabajadores());
+            }
+        }
+        // Un pedido rechazado por una etapa llena va a fallidos: si todavía ocupa un casillero
+        // (por ejemplo, rechazado al salir del preparador) el casillero vuelve a estar libre.
+        if (matriz != null) registro.setAlRechazar(this::liberarCasillero);
+    }
+
+    private void liberarCasillero(Pedido pedido) {
+        int casilleroId = pedido.getCasilleroIdAsignado();
+        if (casilleroId >= 0) {
+            pedido.liberarCasillero(); // Antes que la matriz, como en TrabajadorEtapa
+            matriz.liberarCasillero(casilleroId);
+        }
+    }
+
+    /**
+     * Envía al executor los trabajadores de todas las etapas.
+     * @return La cantidad de trabajadores lanzados.
+     */
+    public int iniciar(ExecutorService executor) {
+        List<DefinicionEtapa> etapas = registro.getEtapas();
+        int lanzados = 0;
+        for (int i = 0; i < etapas.size(); i++) {
+            for (int t = 0; t < etapas.get(i).getMaxTrabajadores(); t++) {
+                executor.submit(new TrabajadorEtapa(registro, matriz, i, running, capacidades[i], t));
+                lanzados++;
+            }
+        }
+        return lanzados;
+    }
+
+    /** @return La capacidad de la etapa, o null si la etapa no tiene trabajadores. */
+    public CapacidadEtapa getCapacidad(int etapa) {
+        return capacidades[etapa];
+    }
+
+    public RegistroPedidos getRegistro() { return registro; }
+
+    /** Una línea por etapa, para el log. */
+    public String describir() {
+        StringBuilder sb = new StringBuilder("Flujo de etapas:");
+        for (DefinicionEtapa e : registro.getEtapas()) {
+            sb.append(System.lineSeparator()).append("  ").append(e);
+        }
+        return sb.toString();
+    }
+}
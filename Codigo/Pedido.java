@@ -1,29 +1,96 @@
 // Pedido.java
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 public class Pedido {
     private static final AtomicInteger idCounter = new AtomicInteger(0);
+    // Un solo updater para todos los pedidos: el estado es un int, sin objeto atómico por pedido
+    private static final AtomicIntegerFieldUpdater<Pedido> ESTADO =
+            AtomicIntegerFieldUpdater.newUpdater(Pedido.class, "estado");
+
     private final int id;
     private volatile int casilleroIdAsignado = -1; // ID del casillero mientras está en preparación
-    private final ReentrantLock lock = new ReentrantLock(); // Lock por pedido es CRUCIAL
+    private volatile int casilleroUsado = -1;      // Último casillero asignado; queda para el archivo
+    // Fase y etapa (EstadoPedido.codificar); solo cambia por CAS. 0 = NUEVO.
+    // Reemplaza al ReentrantLock por pedido: el dueño es quien lo dejó en TOMADO.
+    private volatile int estado;
+
+    // Marcas de tiempo para las latencias. Las escribe solo RegistroPedidos, antes de publicar
+    // el pedido en una etapa o justo después de tomarlo, así que el traspaso entre etapas
+    // ya garantiza su visibilidad.
+    private long nanosCreacion;     // Entrada a preparación
+    private long nanosIngresoEtapa; // Entrada a la etapa actual
+    private long nanosTomado;       // Toma por un trabajador (0 = no tomado desde el último ingreso)
+    private int etapaTomado = -1;   // Etapa de la que se tomó por última vez
 
     public Pedido() {
         this.id = idCounter.incrementAndGet();
     }
 
+    /** Pedido recuperado de un diario con su id original; los nuevos siguen después del mayor. */
+    Pedido(int id) {
+        this.id = id;
+        idCounter.accumulateAndGet(id, Math::max);
+    }
+
     public int getId() { return id; }
     public int getCasilleroIdAsignado() { return casilleroIdAsignado; }
-    public void asignarCasillero(int casilleroId) { this.casilleroIdAsignado = casilleroId; }
+    public void asignarCasillero(int casilleroId) { this.casilleroIdAsignado = casilleroId; this.casilleroUsado = casilleroId; }
     public void liberarCasillero() { this.casilleroIdAsignado = -1; }
 
-    // Métodos para bloquear/desbloquear el pedido específico
-    public void lock() { lock.lock(); }
-    public void unlock() { lock.unlock(); }
+    int getCasilleroUsado() { return casilleroUsado; }
+    long getNanosCreacion() { return nanosCreacion; }
+    long getNanosIngresoEtapa() { return nanosIngresoEtapa; }
+    long getNanosTomado() { return nanosTomado; }
+    int getEtapaTomado() { return etapaTomado; }
+    void marcarCreacion(long nanos) { this.nanosCreacion = nanos; }
+    void marcarIngresoEtapa(long nanos) { this.nanosIngresoEtapa = nanos; this.nanosTomado = 0; }
+    void marcarTomado(long nanos, int etapa) { this.nanosTomado = nanos; this.etapaTomado = etapa; }
+
+    public EstadoPedido getEstado() { return EstadoPedido.fase(estado); }
+    /** Etapa de la cola en la que está o de la que fue tomado (0 si es NUEVO o final). */
+    public int getEtapaActual() { return EstadoPedido.etapa(estado); }
+
+    // --- Transiciones (las hace RegistroPedidos al publicar, tomar y finalizar) ---
+    // Cada una es un CAS desde el estado esperado: una transición doble o fuera de orden
+    // (tomar dos veces, publicar un pedido que sigue en una cola, finalizar dos veces) falla.
+
+    /** NUEVO o TOMADO -> EN_COLA(etapa). */
+    void publicar(int etapa) {
+        int actual = estado;
+        EstadoPedido fase = EstadoPedido.fase(actual);
+        if (fase != EstadoPedido.NUEVO && fase != EstadoPedido.TOMADO) transicionInvalida(actual, EstadoPedido.EN_COLA, etapa);
+        avanzar(actual, EstadoPedido.codificar(EstadoPedido.EN_COLA, etapa));
+    }
+
+    /** EN_COLA(etapa) -> TOMADO(etapa): quien lo toma pasa a ser su dueño. */
+    void tomar(int etapa) {
+        avanzar(EstadoPedido.codificar(EstadoPedido.EN_COLA, etapa), EstadoPedido.codificar(EstadoPedido.TOMADO, etapa));
+    }
+
+    /** NUEVO o TOMADO -> VERIFICADO o FALLIDO. */
+    void finalizar(EstadoPedido fin) {
+        int actual = estado;
+        EstadoPedido fase = EstadoPedido.fase(actual);
+        if (fase != EstadoPedido.NUEVO && fase != EstadoPedido.TOMADO) transicionInvalida(actual, fin, 0);
+        avanzar(actual, EstadoPedido.codificar(fin, 0));
+    }
+
+    private void avanzar(int desde, int hacia) {
+        if (!ESTADO.compareAndSet(this, desde, hacia)) {
+            throw new IllegalStateException("Transición inválida del " + this + ": se esperaba "
+                    + EstadoPedido.describir(desde) + " para pasar a " + EstadoPedido.describir(hacia));
+        }
+    }
+
+    private void transicionInvalida(int actual, EstadoPedido fase, int etapa) {
+        throw new IllegalStateException("Transición inválida del " + this + " a "
+                + EstadoPedido.describir(EstadoPedido.codificar(fase, etapa)));
+    }
 
     @Override
     public String toString() {
-        return "Pedido [id=" + id + ", casilleroId=" + casilleroIdAsignado + "]";
+        return "Pedido [id=" + id + ", casilleroId=" + casilleroIdAsignado + ", estado=" + EstadoPedido.describir(estado) + "]";
     }
      @Override
     public int hashCode() { // Necesario si se usan en HashMaps/Sets
@@ -0,0 +1,22 @@
+// PoliticaDesborde.java
+
+/**
+ * Qué pasa cuando se entrega un pedido a una etapa con capacidad acotada que está llena
+ * (ver DefinicionEtapa.capacidad).
+ */
+public enum PoliticaDesborde {
+    /**
+     * El productor espera a que se libere lugar: la presión vuelve hacia atrás hasta los
+     * preparadores, que dejan de ocupar casilleros. En un flujo con ciclos (una etapa que
+     * reintenta en sí misma o en una anterior) puede trabarse: ahí conviene DERRAMAR.
+     */
+    BLOQUEAR,
+    /** El pedido va directo a fallidos (y su casillero, si tiene, se libera). */
+    RECHAZAR,
+    /**
+     * El pedido espera en una cola de desborde FIFO de la etapa, fuera de la cola acotada,
+     * y entra a ella a medida que se libera lugar. El productor nunca espera, pero la
+     * memoria del desborde no está acotada: sirve para absorber ráfagas, no cargas sostenidas.
+     */
+    DERRAMAR
+}
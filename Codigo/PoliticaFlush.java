@@ -0,0 +1,15 @@
+// PoliticaFlush.java
+
+/**
+ * Cuándo el EscritorLogAsincrono vuelca al archivo lo que tiene acumulado.
+ * En todos los casos también vuelca si su buffer de salida se llena, y al cerrar
+ * vuelca y fuerza los datos a disco.
+ */
+public enum PoliticaFlush {
+    /** Vuelca después de cada lote de registros drenado del buffer circular (menor demora). */
+    POR_LOTE,
+    /** Vuelca como máximo una vez por intervalo (menos llamadas al sistema). */
+    POR_INTERVALO,
+    /** Solo vuelca cuando se llena el buffer de salida o al cerrar. */
+    AL_CERRAR
+}
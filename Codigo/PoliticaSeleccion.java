@@ -0,0 +1,35 @@
+// PoliticaSeleccion.java
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+
+/**
+ * Qué pedido toma un trabajador de la cola de su etapa.
+ */
+public enum PoliticaSeleccion {
+    /** Uno al azar (BolsaAleatoria): el comportamiento original de la simulación. */
+    ALEATORIA,
+    /** El que más esperó. Sin sorteo: tomar es un poll de una cola lock-free. */
+    FIFO,
+    /** El último que llegó. */
+    LIFO,
+    /** El menor según un Comparator (por defecto, el pedido más viejo por ID). */
+    PRIORIDAD;
+
+    /**
+     * Crea la cola de entrada de una etapa con esta política.
+     * @param nombreLock Nombre de los locks de la bolsa para FabricaLocks (solo ALEATORIA).
+     * @param prioridad Orden para PRIORIDAD; se ignora en las demás.
+     */
+    public <T> ColaEtapa<T> crearCola(String nombreLock, Comparator<? super T> prioridad) {
+        switch (this) {
+            case ALEATORIA: return new BolsaAleatoria<>(nombreLock);
+            case FIFO: return new ColaOrdenada<>(new ConcurrentLinkedQueue<>());
+            case LIFO: return new ColaOrdenada<>(Collections.asLifoQueue(new ConcurrentLinkedDeque<>()));
+            case PRIORIDAD: return new ColaOrdenada<>(new PriorityBlockingQueue<>(64, prioridad));
+            default: throw new IllegalStateException("Política desconocida: " + this);
+        }
+    }
+}
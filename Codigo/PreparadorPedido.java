@@ -1,8 +1,14 @@
 // En PreparadorPedido.java
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class PreparadorPedido implements Runnable {
+    // Máximo tiempo estacionado esperando un casillero antes de volver a mirar 'running'
+    private static final long ESPERA_MAX_MS = 100;
+
     private final RegistroPedidos registro;
     private final MatrizCasilleros matriz;
     private final int demoraBaseMs;
@@ -11,9 +17,21 @@ public class PreparadorPedido implements Runnable {
     private final int totalPedidosAGenerar;
     private final AtomicBoolean running;
     private final AtomicBoolean stoppedDueToNoLockers; // Flag para informar al Main
+    // Modo por lotes: hasta 'tamanoLote' pedidos publicados de una vez (1 = de a uno)
+    private final int tamanoLote;
+    private final List<Pedido> lote;
+    private final ActividadTrabajador actividad; // Para las métricas por trabajador
+    private final int zona; // Zona propia de la matriz (-1 si no está en modo ZONAS)
+    private int cupoPendiente; // Pedidos reservados en el registro y aún no preparados
+    private boolean cupoAgotado; // Salió porque el objetivo ya estaba reservado entero
 
     // Actualizar constructor
     public PreparadorPedido(RegistroPedidos reg, MatrizCasilleros mat, int demoraBase, int variacion, int totalPedidos, AtomicBoolean running, AtomicBoolean stoppedDueToNoLockers) {
+        this(reg, mat, demoraBase, variacion, totalPedidos, running, stoppedDueToNoLockers, 1);
+    }
+
+    public PreparadorPedido(RegistroPedidos reg, MatrizCasilleros mat, int demoraBase, int variacion, int totalPedidos, AtomicBoolean running, AtomicBoolean stoppedDueToNoLockers, int tamanoLote) {
+        if (tamanoLote <= 0) throw new IllegalArgumentException("El tamaño de lote debe ser positivo.");
         this.registro = reg;
         this.matriz = mat;
         this.demoraBaseMs = demoraBase;
@@ -21,27 +39,34 @@ public class PreparadorPedido implements Runnable {
         this.totalPedidosAGenerar = totalPedidos;
         this.running = running;
         this.stoppedDueToNoLockers = stoppedDueToNoLockers; // Guardar referencia
+        this.tamanoLote = tamanoLote;
+        this.lote = new ArrayList<>(tamanoLote);
+        this.actividad = reg.getActividad().nuevo("preparador");
+        this.zona = mat.asignarZona();
     }
 
     @Override
     public void run() {
-        System.out.println(Thread.currentThread().getName() + " iniciado.");
+        registro.getSalida().println(Thread.currentThread().getName() + " iniciado.");
+        actividad.iniciar(Thread.currentThread().getName());
         try {
-            while (running.get() && registro.getCantidadPreparados() < totalPedidosAGenerar) {
+            while (running.get()) {
+                // Reservar el pedido antes de buscar casillero: con el cupo tomado por CAS,
+                // los preparadores nunca generan más que el objetivo entre todos
+                cupoPendiente = registro.reservarCupo(1, totalPedidosAGenerar);
+                if (cupoPendiente == 0) {
+                    cupoAgotado = true;
+                    break;
+                }
+
                 int casilleroId = -1;
                 try {
                     while (running.get() && casilleroId == -1) {
-                        // Solo intentar si aún no hemos generado todos los pedidos
-                        if (registro.getCantidadPreparados() >= totalPedidosAGenerar) break;
-
                         // *** LLAMADA CRÍTICA ***
-                        casilleroId = matriz.ocuparCasilleroAleatorio(); // Puede lanzar NoAvailableLockersException
-
-                        if (casilleroId == -1) {
-                            // No hay casillero VACIO temporalmente, esperar y reintentar
-                            //System.out.println(Thread.currentThread().getName() + " no encontró casillero vacío, reintentando...");
-                            Thread.sleep(100); // Espera un poco más larga si falló
-                        }
+                        // Si no hay casillero VACIO, espera estacionado hasta que se libere uno
+                        // (o venza el timeout y se reintente). Empieza por su zona y solo roba
+                        // de otra si la suya no tiene libres. Puede lanzar NoHayCasilleros.
+                        casilleroId = matriz.ocuparCasillero(zona, ESPERA_MAX_MS, TimeUnit.MILLISECONDS);
                     }
                 } catch (NoHayCasilleros e) {
                     // *** MANEJO DE LA CONDICIÓN IRRECUPERABLE ***
@@ -52,49 +77,104 @@ public class PreparadorPedido implements Runnable {
                     break; // Salir del bucle while principal de este hilo
                 }
 
-                // Si salimos del while interno porque ya se generaron todos, terminar
-                if (registro.getCantidadPreparados() >= totalPedidosAGenerar) break;
                 // Si salimos porque se detuvo la simulación (running=false) o no se obtuvo casillero (error)
                 if (!running.get() || casilleroId == -1) break;
 
                 // ----- Si llegamos aquí, tenemos un casilleroId válido -----
+                actividad.inicioTrabajo();
+
+                if (tamanoLote > 1) {
+                    int preparados = prepararLote(casilleroId);
+                    dormir(preparados);
+                    actividad.finTrabajo(preparados);
+                    continue;
+                }
 
                 Pedido nuevoPedido = new Pedido();
                 nuevoPedido.asignarCasillero(casilleroId);
 
-                nuevoPedido.lock();
-                try {
-                    registro.agregarAPreparacion(nuevoPedido);
-                    int preparados = registro.incrementarPreparados();
-                     // System.out.println(Thread.currentThread().getName() + " preparó " + nuevoPedido + ". Total preparados: " + preparados);
-                } finally {
-                    nuevoPedido.unlock();
-                }
+                // Sin lock: hasta publicarlo (NUEVO -> EN_COLA) solo este hilo lo ve
+                // Contar antes de publicar: así una instantánea nunca ve el pedido en la etapa sin haberlo generado
+                registro.incrementarPreparados();
+                cupoPendiente = 0;
+                EventoTransicionPedido.emitir(EventoTransicionPedido.PREPARADO, nuevoPedido, casilleroId, null); // Antes de publicarlo
+                registro.agregarAPreparacion(nuevoPedido);
+                 // System.out.println(Thread.currentThread().getName() + " preparó " + nuevoPedido + ". Total preparados: " + registro.getCantidadPreparados());
 
                 dormir(); // Simular demora de preparación
+                actividad.finTrabajo(1);
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
              // Solo imprimir si no fue por falta de casilleros (para evitar doble mensaje)
             if (!stoppedDueToNoLockers.get()) {
-                 System.out.println(Thread.currentThread().getName() + " interrumpido.");
+                 registro.getSalida().println(Thread.currentThread().getName() + " interrumpido.");
             }
         } finally {
+            // Lo reservado y no preparado vuelve al objetivo (detención, interrupción o falta de casilleros)
+            registro.devolverCupo(cupoPendiente);
+            cupoPendiente = 0;
+            actividad.terminar();
             // Mensaje final del hilo
             if (stoppedDueToNoLockers.get() && !Thread.currentThread().isInterrupted()) {
-                 System.out.println(Thread.currentThread().getName() + " terminado debido a falta de casilleros.");
+                 registro.getSalida().println(Thread.currentThread().getName() + " terminado debido a falta de casilleros.");
             } else if (!running.get() && !stoppedDueToNoLockers.get()){
-                 System.out.println(Thread.currentThread().getName() + " terminado por señal de detención.");
-            } else if (registro.getCantidadPreparados() >= totalPedidosAGenerar) {
-                 System.out.println(Thread.currentThread().getName() + " terminado. Objetivo de pedidos alcanzado.");
+                 registro.getSalida().println(Thread.currentThread().getName() + " terminado por señal de detención.");
+            } else if (cupoAgotado) {
+                 // Todo el objetivo está reservado, aunque otros preparadores quizá no terminaron sus pedidos
+                 registro.getSalida().println(Thread.currentThread().getName() + " terminado. Objetivo de pedidos alcanzado.");
             } else {
-                 System.out.println(Thread.currentThread().getName() + " terminado (estado final: " + registro.getCantidadPreparados() + " preparados).");
+                 registro.getSalida().println(Thread.currentThread().getName() + " terminado (estado final: " + registro.getCantidadPreparados() + " preparados).");
             }
         }
     }
 
+    /**
+     * Completa un lote a partir del casillero ya obtenido: reserva hasta 'tamanoLote - 1'
+     * pedidos más del objetivo, ocupa sin esperar un casillero por cada uno y publica todos los
+     * pedidos con una sola operación sobre la etapa de preparación.
+     * Los pedidos aún no son visibles para otros hilos, así que siguen en NUEVO hasta publicarlos.
+     * @param primerCasillero Casillero ya ocupado por este hilo.
+     * @return Cantidad de pedidos publicados.
+     */
+    private int prepararLote(int primerCasillero) {
+        cupoPendiente += registro.reservarCupo(tamanoLote - 1, totalPedidosAGenerar);
+        int objetivo = cupoPendiente;
+
+        lote.clear();
+        Pedido primero = new Pedido();
+        primero.asignarCasillero(primerCasillero);
+        lote.add(primero);
+        while (lote.size() < objetivo) {
+            int casilleroId = matriz.ocuparCasilleroAleatorio(zona); // No puede lanzar: este hilo tiene uno ocupado
+            if (casilleroId < 0) break; // Sin libres ahora: publicar lo que haya
+            Pedido pedido = new Pedido();
+            pedido.asignarCasillero(casilleroId);
+            lote.add(pedido);
+        }
+
+        // Lo reservado sin casillero vuelve al objetivo. Contar antes de publicar, igual que en el camino de a uno
+        registro.devolverCupo(objetivo - lote.size());
+        registro.incrementarPreparados(lote.size());
+        cupoPendiente = 0;
+        for (Pedido pedido : lote) {
+            EventoTransicionPedido.emitir(EventoTransicionPedido.PREPARADO, pedido, pedido.getCasilleroIdAsignado(), null);
+        }
+        registro.agregarLoteAPreparacion(lote);
+        return lote.size();
+    }
+
     private void dormir() throws InterruptedException {
-        int demora = demoraBaseMs + (variacionDemoraMs > 0 ? random.nextInt(variacionDemoraMs * 2 + 1) - variacionDemoraMs : 0);
-        Thread.sleep(Math.max(0, demora));
+        dormir(1);
+    }
+
+    /** Duerme la suma de 'cantidad' demoras aleatorias (una por pedido preparado). */
+    private void dormir(int cantidad) throws InterruptedException {
+        long total = 0;
+        for (int i = 0; i < cantidad; i++) {
+            int demora = demoraBaseMs + (variacionDemoraMs > 0 ? random.nextInt(variacionDemoraMs * 2 + 1) - variacionDemoraMs : 0);
+            total += Math.max(0, demora);
+        }
+        Thread.sleep(total);
     }
 }
\ No newline at end of file
@@ -0,0 +1,210 @@
+// RebalanceadorEtapas.java
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controlador que mueve trabajadores activos entre las etapas de MotorEtapas hacia el cuello
+ * de botella, sin reiniciar la simulación. Cada intervalo estima cuántos trabajadores
+ * necesita cada etapa:
+ *
+ *   requeridos = servicio * (llegadas + profundidad / HORIZONTE_DRENAJE_SEG)
+ *
+ * con 'llegadas' la tasa de entradas a la cola en el intervalo (pedidos/s), 'servicio' los
+ * segundos ocupados por pedido de sus trabajadores (incluye la demora) y el segundo término
+ * para vaciar el backlog acumulado en ese horizonte. Después pasa un trabajador de la etapa
+ * con más sobrante a la de más faltante, respetando los límites de cada CapacidadEtapa.
+ * Solo se mueve si la donante tiene al menos un trabajador entero de sobra: nunca se le
+ * quita a una etapa que también está corta.
+ *
+ * El total de activos no cambia (los hilos están todos lanzados; solo cambia cuáles toman
+ * pedidos), y se mueve de a uno por intervalo para no oscilar con mediciones ruidosas.
+ * Cada decisión queda en el log con los valores que la justificaron.
+ */
+public class RebalanceadorEtapas {
+    // Tiempo en el que se quiere vaciar el backlog actual (s)
+    private static final double HORIZONTE_DRENAJE_SEG = 5.0;
+    // Diferencia mínima entre faltante y sobrante (en trabajadores) para mover uno
+    private static final double UMBRAL_MOVIMIENTO = 1.0;
+
+    private final MotorEtapas motor;
+    private final RegistroPedidos registro;
+    private final LoggerSistema logger;
+    private final int etapas;
+    private ScheduledExecutorService scheduler;
+
+    // Estado del intervalo anterior (solo lo toca el hilo del scheduler)
+    private long nanosAnterior;
+    private final long[] entradasAnteriores;
+    private final long[] procesadosAnteriores;
+    private final long[] ocupadoAnterior;
+    private final double[] servicioSeg;   // Último servicio medido por etapa (NaN = sin datos)
+    private int movimientos;
+
+    public RebalanceadorEtapas(MotorEtapas motor, LoggerSistema logger) {
+        this.motor = motor;
+        this.registro = motor.getRegistro();
+        this.logger = logger;
+        this.etapas = registro.getCantidadEtapas();
+        this.entradasAnteriores = new long[etapas];
+        this.procesadosAnteriores = new long[etapas];
+        this.ocupadoAnterior = new long[etapas];
+        this.servicioSeg = new double[etapas];
+        Arrays.fill(servicioSeg, Double.NaN);
+    }
+
+    /**
+     * Programa una evaluación cada 'intervaloMs'. Las etapas sin límites (mínimo igual a
+     * máximo) participan en la estimación pero nunca ganan ni ceden trabajadores.
+     */
+    public void iniciar(long intervaloMs) {
+        leerContadores(entradasAnteriores, procesadosAnteriores, ocupadoAnterior);
+        nanosAnterior = System.nanoTime();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "rebalanceador-etapas");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleAtFixedRate(this::evaluar, intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Detiene las evaluaciones y deja en el log la capacidad final de cada etapa. */
+    public void detener() {
+        if (scheduler == null) return;
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(1, TimeUnit.SECONDS)) scheduler.shutdownNow();
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        scheduler = null;
+        logger.logMensaje("Rebalanceo detenido tras " + movimientos + " movimientos. Activos: " + describirActivos());
+    }
+
+    public int getMovimientos() { return movimientos; }
+
+    /** Una evaluación: mide, estima y, si hace falta, mueve un trabajador. */
+    private void evaluar() {
+        try {
+            long ahora = System.nanoTime();
+            double dt = (ahora - nanosAnterior) / 1e9;
+            if (dt <= 0) return;
+            long[] entradas = new long[etapas];
+            long[] procesados = new long[etapas];
+            long[] ocupado = new long[etapas];
+            leerContadores(entradas, procesados, ocupado);
+
+            double[] requeridos = new double[etapas];
+            for (int i = 0; i < etapas; i++) {
+                long deltaProcesados = procesados[i] - procesadosAnteriores[i];
+                if (deltaProcesados > 0) {
+                    servicioSeg[i] = (ocupado[i] - ocupadoAnterior[i]) / 1e9 / deltaProcesados;
+                }
+                double llegadas = (entradas[i] - entradasAnteriores[i]) / dt;
+                requeridos[i] = Double.isNaN(servicioSeg[i]) ? Double.NaN
+                        : servicioSeg[i] * (llegadas + registro.getProfundidad(i) / HORIZONTE_DRENAJE_SEG);
+            }
+            System.arraycopy(entradas, 0, entradasAnteriores, 0, etapas);
+            System.arraycopy(procesados, 0, procesadosAnteriores, 0, etapas);
+            System.arraycopy(ocupado, 0, ocupadoAnterior, 0, etapas);
+            nanosAnterior = ahora;
+
+            mover(requeridos);
+        } catch (RuntimeException e) {
+            // Una excepción cancelaría las evaluaciones siguientes del scheduler
+            System.err.println("Error en el rebalanceo de etapas: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Elige la etapa con más faltante (requeridos - activos) que puede crecer y la de más
+     * sobrante que puede achicarse, y mueve un trabajador si la receptora está corta, la
+     * donante sigue cubierta con uno menos y la diferencia supera el umbral.
+     */
+    private void mover(double[] requeridos) {
+        int receptora = -1, donante = -1;
+        double maxFaltante = Double.NEGATIVE_INFINITY, minFaltante = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < etapas; i++) {
+            CapacidadEtapa c = motor.getCapacidad(i);
+            if (c == null || Double.isNaN(requeridos[i])) continue;
+            double faltante = requeridos[i] - c.getActivos();
+            if (c.getActivos() < c.getMaximo() && faltante > maxFaltante) {
+                maxFaltante = faltante;
+                receptora = i;
+            }
+            if (c.getActivos() > c.getMinimo() && faltante < minFaltante) {
+                minFaltante = faltante;
+                donante = i;
+            }
+        }
+        if (receptora < 0 || donante < 0 || receptora == donante
+                || maxFaltante <= 0 || minFaltante > -1.0 // Sin sobrante entero: la donante quedaría corta
+                || maxFaltante - minFaltante < UMBRAL_MOVIMIENTO) {
+            return;
+        }
+        CapacidadEtapa desde = motor.getCapacidad(donante);
+        CapacidadEtapa hacia = motor.getCapacidad(receptora);
+        int desdeAntes = desde.getActivos(), haciaAntes = hacia.getActivos();
+        desde.setActivos(desdeAntes - 1);
+        hacia.setActivos(haciaAntes + 1);
+        movimientos++;
+        logger.logMensaje(String.format(Locale.ROOT,
+                "Rebalanceo #%d: %s %d->%d, %s %d->%d | requeridos %s | colas %s",
+                movimientos,
+                registro.getNombreEtapa(donante), desdeAntes, desde.getActivos(),
+                registro.getNombreEtapa(receptora), haciaAntes, hacia.getActivos(),
+                describirRequeridos(requeridos), describirProfundidades()));
+    }
+
+    /** Suma procesados y tiempo ocupado de los trabajadores de cada etapa (por rol). */
+    private void leerContadores(long[] entradas, long[] procesados, long[] ocupado) {
+        List<DefinicionEtapa> definiciones = registro.getEtapas();
+        for (int i = 0; i < etapas; i++) {
+            entradas[i] = registro.getTotalEntradas(i);
+            procesados[i] = 0;
+            ocupado[i] = 0;
+        }
+        for (ActividadTrabajador a : registro.getActividad().getTrabajadores()) {
+            for (int i = 0; i < etapas; i++) {
+                if (definiciones.get(i).getNombre().equals(a.getRol())) {
+                    procesados[i] += a.getProcesados();
+                    ocupado[i] += a.getNanosOcupado();
+                    break;
+                }
+            }
+        }
+    }
+
+    private String describirRequeridos(double[] requeridos) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < etapas; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(registro.getNombreEtapa(i)).append('=')
+              .append(Double.isNaN(requeridos[i]) ? "?" : String.format(Locale.ROOT, "%.2f", requeridos[i]));
+        }
+        return sb.toString();
+    }
+
+    private String describirProfundidades() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < etapas; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(registro.getNombreEtapa(i)).append('=').append(registro.getProfundidad(i));
+        }
+        return sb.toString();
+    }
+
+    private String describirActivos() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < etapas; i++) {
+            CapacidadEtapa c = motor.getCapacidad(i);
+            if (i > 0) sb.append(", ");
+            sb.append(registro.getNombreEtapa(i)).append('=').append(c == null ? 0 : c.getActivos());
+        }
+        return sb.toString();
+    }
+}
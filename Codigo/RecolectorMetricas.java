@@ -0,0 +1,70 @@
+// RecolectorMetricas.java
+
+/**
+ * Arma InstantaneaMetricas a partir de RegistroPedidos y MatrizCasilleros.
+ * Guarda la captura anterior para derivar tasas (pedidos por segundo) y mantiene un
+ * promedio móvil exponencial (EWMA) del throughput de finalizados, con constante de tiempo
+ * fija: cada captura pesa según el tiempo transcurrido, no según la cantidad de ticks.
+ * No es thread-safe: se espera un único hilo capturando (el del exportador).
+ */
+public class RecolectorMetricas {
+    private final RegistroPedidos registro;
+    private final MatrizCasilleros matriz;
+    private final double constanteTiempoSeg;
+    private final long inicioNanos = System.nanoTime();
+
+    private long nanosAnterior = inicioNanos;
+    private long generadosAnterior;
+    private long finalizadosAnterior;
+    private final long[] salidasAnterior = new long[3];
+    private double ewma = Double.NaN;
+
+    /**
+     * @param constanteTiempoSeg Constante de tiempo del EWMA en segundos (más grande = más suave).
+     */
+    public RecolectorMetricas(RegistroPedidos registro, MatrizCasilleros matriz, double constanteTiempoSeg) {
+        if (constanteTiempoSeg <= 0) throw new IllegalArgumentException("La constante de tiempo debe ser positiva.");
+        this.registro = registro;
+        this.matriz = matriz;
+        this.constanteTiempoSeg = constanteTiempoSeg;
+    }
+
+    /** Captura las métricas actuales y las tasas desde la captura anterior. */
+    public InstantaneaMetricas capturar() {
+        long ahora = System.nanoTime();
+        InstantaneaRegistro foto = registro.getInstantanea();
+        long[] salidas = {
+            registro.getTotalSalidas(RegistroPedidos.ETAPA_PREPARACION),
+            registro.getTotalSalidas(RegistroPedidos.ETAPA_TRANSITO),
+            registro.getTotalSalidas(RegistroPedidos.ETAPA_ENTREGADOS)
+        };
+
+        double dt = (ahora - nanosAnterior) / 1e9;
+        double generadosPorSeg = tasa(foto.getGenerados() - generadosAnterior, dt);
+        double finalizadosPorSeg = tasa(foto.getFinalizados() - finalizadosAnterior, dt);
+        double[] salidasPorSeg = new double[3];
+        for (int i = 0; i < 3; i++) salidasPorSeg[i] = tasa(salidas[i] - salidasAnterior[i], dt);
+
+        if (Double.isNaN(ewma)) {
+            ewma = finalizadosPorSeg;
+        } else if (dt > 0) {
+            double alfa = 1 - Math.exp(-dt / constanteTiempoSeg);
+            ewma += alfa * (finalizadosPorSeg - ewma);
+        }
+
+        nanosAnterior = ahora;
+        generadosAnterior = foto.getGenerados();
+        finalizadosAnterior = foto.getFinalizados();
+        System.arraycopy(salidas, 0, salidasAnterior, 0, 3);
+
+        return new InstantaneaMetricas(System.currentTimeMillis(), (ahora - inicioNanos) / 1e9, foto,
+                salidas[0], salidas[1], salidas[2],
+                matriz.getCantidadLibres(), matriz.getCantidadOcupados(), matriz.getCantidadFueraDeServicio(),
+                matriz.getTotalCasilleros(),
+                generadosPorSeg, salidasPorSeg[0], salidasPorSeg[1], salidasPorSeg[2], finalizadosPorSeg, ewma);
+    }
+
+    private static double tasa(long delta, double segundos) {
+        return segundos > 0 ? delta / segundos : 0;
+    }
+}
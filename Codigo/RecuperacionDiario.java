@@ -0,0 +1,212 @@
+// RecuperacionDiario.java
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reconstruye el estado de una corrida que no terminó a partir de su DiarioTransiciones:
+ * qué casilleros estaban ocupados o fuera de servicio, qué pedidos habían terminado y en qué
+ * cola estaba cada uno de los demás. aplicar() lo vuelca sobre una matriz y un registro
+ * nuevos antes de arrancar los hilos, y la corrida sigue desde ahí.
+ *
+ * Las tomas no se registran: un pedido que un trabajador tenía tomado vuelve a la cola de la
+ * que salió y se procesa de nuevo. La excepción es el que murió a mitad de una etapa que
+ * libera casilleros, con el casillero ya resuelto: ese pasa directo al destino de éxito (si
+ * el casillero se liberó) o de fallo (si quedó fuera de servicio).
+ *
+ * Los contadores de pedidos generados y terminados se restauran; los histogramas de latencia
+ * y el ArchivoPedidos empiezan vacíos.
+ */
+public class RecuperacionDiario {
+    // Estado de cada casillero según el diario
+    private static final byte VACIO = 0, OCUPADO = 1, FUERA_DE_SERVICIO = 2;
+    // Qué pasó con el casillero de un pedido en cola (desde que lo registró su ingreso)
+    private static final byte SIN_RESOLVER = 0, LIBERADO = 1, FUERA = 2;
+
+    private final Path archivo;
+    private final int filas;
+    private final int columnas;
+    private long fin;              // Posición después del último registro válido
+    private long registros;
+    private long descartados;      // Con tipo pero con suma de control inválida
+
+    private final byte[] casilleros;
+    private final int[] duenoCasillero;           // Pedido que lo ocupa (0 = ninguno)
+    private int[] estadoPedido = new int[1024];   // EstadoPedido.codificar + 1 (0 = desconocido)
+    private int[] casilleroPedido = new int[1024];
+    private byte[] resolucionPedido = new byte[1024];
+    private int maxId;
+
+    private RecuperacionDiario(Path archivo, int filas, int columnas) {
+        this.archivo = archivo;
+        this.filas = filas;
+        this.columnas = columnas;
+        this.casilleros = new byte[filas * columnas];
+        this.duenoCasillero = new int[filas * columnas];
+    }
+
+    /**
+     * Lee el diario si quedó de una corrida que no terminó.
+     * @return El estado recuperado, o null si no hay diario, está cerrado limpio o no es de
+     *         una matriz de estas dimensiones (en ese caso se informa).
+     */
+    public static RecuperacionDiario leer(Path archivo, int filas, int columnas) throws IOException {
+        if (!Files.isRegularFile(archivo) || Files.size(archivo) < DiarioTransiciones.TAM_ENCABEZADO) return null;
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            ByteBuffer datos = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            if (datos.getInt(DiarioTransiciones.ENC_MAGICO) != DiarioTransiciones.MAGICO
+                    || datos.getInt(DiarioTransiciones.ENC_VERSION) != DiarioTransiciones.VERSION
+                    || datos.getInt(DiarioTransiciones.ENC_TAM_REGISTRO) != DiarioTransiciones.TAM_REGISTRO) {
+                System.err.println("El archivo " + archivo + " no es un diario de transiciones válido; no se recupera.");
+                return null;
+            }
+            if (datos.getInt(DiarioTransiciones.ENC_CERRADO) != 0) return null; // La corrida terminó bien
+            int filasDiario = datos.getInt(DiarioTransiciones.ENC_FILAS);
+            int columnasDiario = datos.getInt(DiarioTransiciones.ENC_COLUMNAS);
+            if (filasDiario != filas || columnasDiario != columnas) {
+                System.err.println("El diario " + archivo + " es de una matriz de " + filasDiario + "x" + columnasDiario
+                        + " y la configuración es de " + filas + "x" + columnas + "; no se recupera.");
+                return null;
+            }
+            RecuperacionDiario r = new RecuperacionDiario(archivo, filas, columnas);
+            r.procesar(datos);
+            return r;
+        }
+    }
+
+    /** Recorre los registros en orden; los lugares vacíos (reservados y no escritos) se saltean. */
+    private void procesar(ByteBuffer datos) {
+        fin = DiarioTransiciones.TAM_ENCABEZADO;
+        long limite = datos.capacity() - DiarioTransiciones.TAM_REGISTRO;
+        for (int o = DiarioTransiciones.TAM_ENCABEZADO; o <= limite; o += DiarioTransiciones.TAM_REGISTRO) {
+            int codigo = datos.getInt(o + DiarioTransiciones.REG_TIPO);
+            if (codigo == 0) continue;
+            int pedido = datos.getInt(o + DiarioTransiciones.REG_PEDIDO);
+            int casillero = datos.getInt(o + DiarioTransiciones.REG_CASILLERO);
+            long millis = datos.getLong(o + DiarioTransiciones.REG_MILLIS);
+            int etapa = datos.getInt(o + DiarioTransiciones.REG_ETAPA);
+            DiarioTransiciones.Tipo tipo = DiarioTransiciones.Tipo.deCodigo(codigo);
+            if (tipo == null || datos.getInt(o + DiarioTransiciones.REG_SUMA)
+                    != DiarioTransiciones.suma(codigo, pedido, casillero, millis, etapa)) {
+                descartados++;
+                continue;
+            }
+            aplicarRegistro(tipo, pedido, casillero, etapa);
+            registros++;
+            fin = o + DiarioTransiciones.TAM_REGISTRO;
+        }
+    }
+
+    private void aplicarRegistro(DiarioTransiciones.Tipo tipo, int pedido, int casillero, int etapa) {
+        boolean casilleroValido = casillero >= 0 && casillero < casilleros.length;
+        switch (tipo) {
+            case INGRESO:
+                asegurarPedido(pedido);
+                estadoPedido[pedido] = EstadoPedido.codificar(EstadoPedido.EN_COLA, etapa) + 1;
+                if (casilleroValido) {
+                    casilleroPedido[pedido] = casillero;
+                    resolucionPedido[pedido] = SIN_RESOLVER;
+                    casilleros[casillero] = OCUPADO;
+                    duenoCasillero[casillero] = pedido;
+                } else {
+                    casilleroPedido[pedido] = -1;
+                }
+                break;
+            case VERIFICADO:
+            case FALLIDO:
+                asegurarPedido(pedido);
+                estadoPedido[pedido] = EstadoPedido.codificar(
+                        tipo == DiarioTransiciones.Tipo.VERIFICADO ? EstadoPedido.VERIFICADO : EstadoPedido.FALLIDO, 0) + 1;
+                break;
+            case CASILLERO_LIBERADO:
+            case CASILLERO_FUERA_DE_SERVICIO:
+                if (!casilleroValido) break;
+                boolean liberado = tipo == DiarioTransiciones.Tipo.CASILLERO_LIBERADO;
+                casilleros[casillero] = liberado ? VACIO : FUERA_DE_SERVICIO;
+                int dueno = duenoCasillero[casillero];
+                if (dueno > 0 && casilleroPedido[dueno] == casillero) {
+                    resolucionPedido[dueno] = liberado ? LIBERADO : FUERA;
+                    casilleroPedido[dueno] = -1;
+                }
+                duenoCasillero[casillero] = 0;
+                break;
+        }
+    }
+
+    private void asegurarPedido(int id) {
+        if (id >= estadoPedido.length) {
+            int largo = Math.max(id + 1, estadoPedido.length * 2);
+            estadoPedido = Arrays.copyOf(estadoPedido, largo);
+            casilleroPedido = Arrays.copyOf(casilleroPedido, largo);
+            resolucionPedido = Arrays.copyOf(resolucionPedido, largo);
+        }
+        maxId = Math.max(maxId, id);
+    }
+
+    /**
+     * Vuelca el estado recuperado sobre una matriz y un registro recién creados, antes de
+     * arrancar los hilos. Si hay un diario nuevo conectado, los pedidos que se vuelven a
+     * publicar quedan registrados otra vez (es idempotente para una próxima recuperación).
+     */
+    public void aplicar(MatrizCasilleros matriz, RegistroPedidos registro) {
+        long generados = 0, verificados = 0, fallidos = 0;
+        for (int id = 1; id <= maxId; id++) {
+            int codigo = estadoPedido[id] - 1;
+            if (codigo < 0) continue;
+            generados++;
+            EstadoPedido fase = EstadoPedido.fase(codigo);
+            if (fase == EstadoPedido.VERIFICADO) verificados++;
+            else if (fase == EstadoPedido.FALLIDO) fallidos++;
+        }
+        // Primero los casilleros: un pedido en cola puede tener uno ocupado
+        for (int c = 0; c < casilleros.length; c++) {
+            if (casilleros[c] == FUERA_DE_SERVICIO) {
+                matriz.restaurar(c, EstadoCasillero.FUERA_DE_SERVICIO);
+            } else if (casilleros[c] == OCUPADO && pendiente(duenoCasillero[c])) {
+                matriz.restaurar(c, EstadoCasillero.OCUPADO);
+            }
+        }
+        registro.restaurarContadores(generados, verificados, fallidos);
+        for (int id = 1; id <= maxId; id++) {
+            if (!pendiente(id)) continue;
+            int etapa = Math.min(EstadoPedido.etapa(estadoPedido[id] - 1), registro.getCantidadEtapas() - 1);
+            Pedido p = new Pedido(id);
+            int destino = etapa;
+            if (resolucionPedido[id] == LIBERADO) destino = registro.destinoExito(etapa);
+            else if (resolucionPedido[id] == FUERA) destino = registro.destinoFallo(etapa);
+            else if (casilleroPedido[id] >= 0) p.asignarCasillero(casilleroPedido[id]);
+            registro.restaurarPedido(p, destino);
+        }
+    }
+
+    private boolean pendiente(int id) {
+        return id > 0 && id <= maxId && estadoPedido[id] > 0
+                && EstadoPedido.fase(estadoPedido[id] - 1) == EstadoPedido.EN_COLA;
+    }
+
+    /** Posición del diario después del último registro válido, para seguir agregando. */
+    public long getFin() { return fin; }
+    public long getRegistros() { return registros; }
+    public long getDescartados() { return descartados; }
+
+    /** Resumen de una línea para el log. */
+    public String resumen() {
+        int pendientes = 0, terminados = 0, ocupados = 0, fuera = 0;
+        for (int id = 1; id <= maxId; id++) {
+            if (pendiente(id)) pendientes++;
+            else if (estadoPedido[id] > 0) terminados++;
+        }
+        for (int c = 0; c < casilleros.length; c++) {
+            if (casilleros[c] == OCUPADO && pendiente(duenoCasillero[c])) ocupados++;
+            else if (casilleros[c] == FUERA_DE_SERVICIO) fuera++;
+        }
+        return "Recuperado del diario " + archivo + " (" + filas + "x" + columnas + "): " + registros + " registros"
+                + (descartados > 0 ? " (" + descartados + " descartados)" : "") + ", " + terminados
+                + " pedidos terminados, " + pendientes + " en cola, " + ocupados + " casilleros ocupados, "
+                + fuera + " fuera de servicio";
+    }
+}
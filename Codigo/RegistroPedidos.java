@@ -1,168 +1,700 @@
 // RegistroPedidos.java
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.ReentrantLock; // Necesario para la selección aleatoria
-import java.util.List;
+import java.io.PrintStream;
+import java.text.Normalizer;
 import java.util.ArrayList;
-import java.util.Collections; // Para shuffle o random index
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
 
 public class RegistroPedidos {
-    // Colas concurrentes
-    final ConcurrentLinkedQueue<Pedido> pedidosEnPreparacion = new ConcurrentLinkedQueue<>();
-    final ConcurrentLinkedQueue<Pedido> pedidosEnTransito = new ConcurrentLinkedQueue<>();
-    final ConcurrentLinkedQueue<Pedido> pedidosEntregados = new ConcurrentLinkedQueue<>();
-    final ConcurrentLinkedQueue<Pedido> pedidosFallidos = new ConcurrentLinkedQueue<>();
-    final ConcurrentLinkedQueue<Pedido> pedidosVerificados = new ConcurrentLinkedQueue<>();
-
-    // Contadores atómicos
-    final AtomicInteger fallidosCount = new AtomicInteger(0);
-    final AtomicInteger verificadosCount = new AtomicInteger(0);
-    final AtomicInteger preparadosCount = new AtomicInteger(0);
-
-    private final Random random = new Random();
-
-    // --- Locks para selección aleatoria ---
-    private final ReentrantLock preparacionLock = new ReentrantLock();
-    private final ReentrantLock transitoLock = new ReentrantLock();
-    private final ReentrantLock entregadosLock = new ReentrantLock();
-
-    // Métodos para añadir (no necesitan lock externo)
-    public void agregarAPreparacion(Pedido p) { pedidosEnPreparacion.offer(p); }
-    public void agregarATransito(Pedido p) { pedidosEnTransito.offer(p); }
-    public void agregarAEntregados(Pedido p) { pedidosEntregados.offer(p); }
-    public void agregarAFallidos(Pedido p) {
-        pedidosFallidos.offer(p);
-        fallidosCount.incrementAndGet();
+    // Etapas intermedias: una cola de entrada por etapa del flujo (ver DefinicionEtapa).
+    // La política de cada una decide qué pedido se toma; la original es BolsaAleatoria.
+    private final ColaEtapa<Pedido>[] colas;
+    // Capacidad de cada cola (null = sin límite) y qué hacer con un pedido rechazado por estar llena
+    private final LimiteEtapa[] limites;
+    private volatile Consumer<Pedido> alRechazar = p -> { };
+    // Consola de la corrida: ahí anuncian inicio y fin los trabajadores (no System.out
+    // directamente, para que varias corridas en el mismo proceso puedan silenciarse por separado)
+    private volatile PrintStream salida = System.out;
+    // Estados finales: de cada pedido terminado quedan solo primitivos en el archivo (el
+    // objeto Pedido queda libre para el GC), así la memoria no crece con la cantidad procesada
+    private volatile ArchivoPedidos archivo = new ArchivoPedidos();
+    // Diario de transiciones para recuperar la corrida si la JVM muere (null = sin diario)
+    private volatile DiarioTransiciones diario;
+
+    // Contadores estriados (LongAdder): cada hilo incrementa su propia celda con padding,
+    // así los trabajadores no compiten por una misma línea de caché.
+    // Todos son monótonos; la profundidad de cada etapa es entradas - salidas.
+    final LongAdder fallidosCount = new LongAdder();
+    final LongAdder verificadosCount = new LongAdder();
+    final LongAdder preparadosCount = new LongAdder();
+    // Pedidos reservados por los preparadores (preparados + en curso). Se reserva con CAS
+    // antes de preparar, así varios preparadores nunca se pasan del objetivo.
+    private final AtomicInteger cupoReservado = new AtomicInteger();
+    private final LongAdder[] entradas;
+    private final LongAdder[] salidas;
+
+    // Intentos de doble lectura antes de devolver una instantánea marcada como no coherente
+    private static final int MAX_INTENTOS_INSTANTANEA = 16;
+
+    // Índices de las etapas del flujo estándar. Los preparadores publican siempre en la etapa 0.
+    public static final int ETAPA_PREPARACION = 0;
+    public static final int ETAPA_TRANSITO = 1;
+    public static final int ETAPA_ENTREGADOS = 2;
+    // Destinos finales para entregar(destino, ...), además de los índices de etapa
+    public static final int DESTINO_VERIFICADOS = -1;
+    public static final int DESTINO_FALLIDOS = -2;
+
+    private final List<DefinicionEtapa> etapas;
+    private final String[] nombresEtapa;
+
+    // --- Latencias ---
+    // Por etapa: espera (en la cola) y servicio (desde la toma hasta que el trabajador lo
+    // entrega a la etapa siguiente o a un estado final).
+    private final LongSupplier reloj; // Fuente de nanosegundos: System.nanoTime o un reloj simulado
+    private final HistogramaLatencia[] esperaEtapa;
+    private final HistogramaLatencia[] servicioEtapa;
+    private final HistogramaLatencia extremoAExtremo = new HistogramaLatencia();
+
+    // Actividad de los trabajadores: vive acá porque todos los trabajadores comparten el registro
+    private final ActividadTrabajadores actividad = new ActividadTrabajadores();
+
+    public RegistroPedidos() {
+        this(System::nanoTime);
     }
-    public void agregarAVerificados(Pedido p) {
-        pedidosVerificados.offer(p);
-        verificadosCount.incrementAndGet();
+
+    /**
+     * Registro con las tres etapas del flujo estándar y toma aleatoria.
+     * @param relojNanos Reloj para las marcas de tiempo de los pedidos (el motor por eventos
+     *                   pasa su reloj simulado).
+     */
+    public RegistroPedidos(LongSupplier relojNanos) {
+        this(relojNanos, Arrays.asList(
+                new DefinicionEtapa("despachador", "Preparación"),
+                new DefinicionEtapa("entregador", "Tránsito"),
+                new DefinicionEtapa("verificador", "Entregados")));
+    }
+
+    /**
+     * Registro con una cola de entrada por etapa, en el orden de la lista.
+     * @param relojNanos Reloj para las marcas de tiempo de los pedidos.
+     * @param etapas Etapas del flujo (al menos una); la primera recibe los pedidos nuevos.
+     */
+    public RegistroPedidos(LongSupplier relojNanos, List<DefinicionEtapa> etapas) {
+        if (etapas.isEmpty()) throw new IllegalArgumentException("El flujo necesita al menos una etapa.");
+        this.reloj = relojNanos;
+        this.etapas = Collections.unmodifiableList(etapas);
+        int n = etapas.size();
+        @SuppressWarnings("unchecked") // Arreglo de un tipo genérico: solo se guardan colas de Pedido
+        ColaEtapa<Pedido>[] nuevas = (ColaEtapa<Pedido>[]) new ColaEtapa<?>[n];
+        this.colas = nuevas;
+        this.limites = new LimiteEtapa[n];
+        this.nombresEtapa = new String[n];
+        this.entradas = new LongAdder[n];
+        this.salidas = new LongAdder[n];
+        this.esperaEtapa = new HistogramaLatencia[n];
+        this.servicioEtapa = new HistogramaLatencia[n];
+        for (int i = 0; i < n; i++) {
+            DefinicionEtapa e = etapas.get(i);
+            nombresEtapa[i] = e.getCola();
+            colas[i] = e.getPolitica().crearCola("bolsa." + etiqueta(i), e.getPrioridad());
+            if (e.getCapacidad() > 0) limites[i] = new LimiteEtapa(e.getCapacidad(), e.getDesborde(), relojNanos);
+            entradas[i] = new LongAdder();
+            salidas[i] = new LongAdder();
+            esperaEtapa[i] = new HistogramaLatencia();
+            servicioEtapa[i] = new HistogramaLatencia();
+        }
+    }
+
+    // Las marcas también avanzan el estado del pedido (Pedido.publicar/tomar/finalizar):
+    // una transición doble o fuera de orden lanza IllegalStateException en quien la intenta.
+
+    /** Entrada a una etapa: pasa el pedido a EN_COLA y cierra el servicio de la etapa anterior. Se llama antes de publicar. */
+    private void marcarIngreso(Pedido p, int etapa, long ahora) {
+        p.publicar(etapa);
+        cerrarServicio(p, ahora);
+        DiarioTransiciones d = diario;
+        if (d != null) d.ingreso(p, etapa);
+    }
+
+    /** Estado final (verificado o fallido): cierra el servicio y registra la latencia total. Se llama antes de archivar. */
+    private void marcarFinal(Pedido p, EstadoPedido fin, long ahora) {
+        p.finalizar(fin);
+        cerrarServicio(p, ahora);
+        extremoAExtremo.registrar(ahora - p.getNanosCreacion());
+        DiarioTransiciones d = diario;
+        if (d != null) d.finalizado(p, fin);
+    }
+
+    private void cerrarServicio(Pedido p, long ahora) {
+        if (p.getNanosTomado() != 0) {
+            servicioEtapa[p.getEtapaTomado()].registrar(ahora - p.getNanosTomado());
+        }
+        p.marcarIngresoEtapa(ahora);
     }
 
-    // --- Métodos para TOMAR ALEATORIAMENTE (CORREGIDOS) ---
+    /** Toma por un trabajador: pasa el pedido a TOMADO y registra cuánto esperó en la etapa. */
+    private void marcarToma(Pedido p, int etapa, long ahora) {
+        p.tomar(etapa);
+        esperaEtapa[etapa].registrar(ahora - p.getNanosIngresoEtapa());
+        p.marcarTomado(ahora, etapa);
+    }
+
+    // --- Etapas del flujo (por índice) ---
+
+    public int getCantidadEtapas() { return colas.length; }
+    public List<DefinicionEtapa> getEtapas() { return etapas; }
+    public String getNombreEtapa(int etapa) { return nombresEtapa[etapa]; }
 
     /**
-     * Toma un pedido aleatorio de la cola de preparación.
-     * Reemplaza drainTo con un bucle poll().
-     * @return Un pedido aleatorio, o null si la cola está vacía.
+     * Nombre de la cola de la etapa en minúsculas y sin tildes, para etiquetas de métricas
+     * y nombres de locks ("Preparación" -> "preparacion").
      */
-    public Pedido tomarDePreparacionAleatorio() {
-        preparacionLock.lock();
-        try {
-            List<Pedido> tempList = new ArrayList<>();
-            // *** CORRECCIÓN: Usar bucle poll() en lugar de drainTo ***
-            while (true) {
-                Pedido item = pedidosEnPreparacion.poll();
-                if (item == null) {
-                    break; // La cola está vacía
-                }
-                tempList.add(item);
-            }
-            // *** FIN CORRECCIÓN ***
+    public String etiqueta(int etapa) {
+        String sinTildes = Normalizer.normalize(nombresEtapa[etapa], Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return sinTildes.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "_");
+    }
 
-            if (tempList.isEmpty()) {
-                return null;
-            }
+    /**
+     * Índice de la etapa cuyo trabajador o cola tiene ese nombre.
+     * @return El índice, DESTINO_VERIFICADOS o DESTINO_FALLIDOS.
+     * @throws IllegalArgumentException Si no existe.
+     */
+    public int indiceEtapa(String nombre) {
+        if (DefinicionEtapa.VERIFICADOS.equals(nombre)) return DESTINO_VERIFICADOS;
+        if (DefinicionEtapa.FALLIDOS.equals(nombre)) return DESTINO_FALLIDOS;
+        for (int i = 0; i < etapas.size(); i++) {
+            if (etapas.get(i).getNombre().equals(nombre) || nombresEtapa[i].equals(nombre)) return i;
+        }
+        throw new IllegalArgumentException("Etapa inexistente: " + nombre);
+    }
 
-            int randomIndex = random.nextInt(tempList.size());
-            Pedido pedidoSeleccionado = tempList.remove(randomIndex);
+    /** Adónde va un pedido que pasa la etapa: su 'siguiente', o la etapa que sigue en la lista (verificados después de la última). */
+    public int destinoExito(int etapa) {
+        String siguiente = etapas.get(etapa).getSiguiente();
+        if (siguiente != null) return indiceEtapa(siguiente);
+        return etapa + 1 < colas.length ? etapa + 1 : DESTINO_VERIFICADOS;
+    }
 
-            // Volver a añadir los elementos restantes a la cola concurrente
-            // addAll es seguro aquí porque la cola fue vaciada bajo lock
-            pedidosEnPreparacion.addAll(tempList);
+    /** Adónde va un pedido que falla en la etapa. */
+    public int destinoFallo(int etapa) {
+        return indiceEtapa(etapas.get(etapa).getSiguienteSiFalla());
+    }
 
-            return pedidoSeleccionado;
+    /**
+     * Agrega un pedido a la cola de una etapa (no necesita lock externo). Si la etapa tiene
+     * capacidad y está llena, según su política espera, lo manda a fallidos o lo derrama.
+     */
+    public void agregar(int etapa, Pedido p) {
+        LimiteEtapa limite = limites[etapa];
+        if (limite != null && limite.reservar(1) == 0) {
+            desbordar(etapa, p);
+            return;
+        }
+        marcarIngreso(p, etapa, reloj.getAsLong());
+        // Contar antes de publicar: un consumidor puede tomarlo y contar la salida enseguida
+        entradas[etapa].increment();
+        colas[etapa].agregar(p);
+    }
 
-        } finally {
-            preparacionLock.unlock();
+    /**
+     * Agrega un lote a la cola de una etapa: una operación sobre la cola y sobre los contadores.
+     * Con capacidad, se publica por partes a medida que se consigue lugar (sin retener lugares
+     * reservados mientras se espera el resto) y lo que no entra sigue la política de desborde.
+     */
+    public void agregarLote(int etapa, Collection<Pedido> lote) {
+        if (lote.isEmpty()) return;
+        LimiteEtapa limite = limites[etapa];
+        if (limite == null) {
+            marcarIngresoLote(lote, etapa);
+            entradas[etapa].add(lote.size()); // Antes de publicar, como en agregar
+            colas[etapa].agregarLote(lote);
+            return;
+        }
+        List<Pedido> pendientes = lote instanceof List ? (List<Pedido>) lote : new ArrayList<>(lote);
+        int publicados = 0;
+        while (publicados < pendientes.size()) {
+            int lugares = limite.reservar(pendientes.size() - publicados);
+            if (lugares == 0) break;
+            List<Pedido> parte = pendientes.subList(publicados, publicados + lugares);
+            marcarIngresoLote(parte, etapa);
+            entradas[etapa].add(lugares);
+            colas[etapa].agregarLote(parte);
+            publicados += lugares;
+        }
+        for (int i = publicados; i < pendientes.size(); i++) {
+            desbordar(etapa, pendientes.get(i));
         }
     }
 
     /**
-     * Toma un pedido aleatorio de la cola de tránsito.
-     * Reemplaza drainTo con un bucle poll().
-     * @return Un pedido aleatorio, o null si la cola está vacía.
+     * Un pedido que no entró en la etapa llena. Con BLOQUEAR solo pasa si el registro se cerró
+     * o el hilo fue interrumpido esperando: se publica igual, anotado como sin lugar.
      */
-    public Pedido tomarDeTransitoAleatorio() {
-        transitoLock.lock();
-        try {
-            List<Pedido> tempList = new ArrayList<>();
-            // *** CORRECCIÓN: Usar bucle poll() en lugar de drainTo ***
-             while (true) {
-                Pedido item = pedidosEnTransito.poll();
-                if (item == null) {
-                    break;
-                }
-                tempList.add(item);
-            }
-            // *** FIN CORRECCIÓN ***
+    private void desbordar(int etapa, Pedido p) {
+        LimiteEtapa limite = limites[etapa];
+        if (limite.getPolitica() == PoliticaDesborde.RECHAZAR) {
+            limite.contarRechazo();
+            alRechazar.accept(p);
+            agregarAFallidos(p);
+        } else if (limite.getPolitica() == PoliticaDesborde.DERRAMAR) {
+            // Cuenta como entrada desde ya: la profundidad incluye lo derramado
+            marcarIngreso(p, etapa, reloj.getAsLong());
+            entradas[etapa].increment();
+            limite.derramar(p, colas[etapa]);
+        } else {
+            limite.admitirSinLugar(1); // Antes de publicar: su toma no devuelve lugar
+            marcarIngreso(p, etapa, reloj.getAsLong());
+            entradas[etapa].increment();
+            colas[etapa].agregar(p);
+        }
+    }
 
+    /**
+     * Acción para los pedidos rechazados por una etapa llena, antes de mandarlos a fallidos
+     * (MotorEtapas la usa para liberar el casillero del pedido). Se configura antes de arrancar.
+     */
+    public void setAlRechazar(Consumer<Pedido> accion) {
+        this.alRechazar = accion;
+    }
 
-            if (tempList.isEmpty()) {
-                return null;
-            }
+    /** Consola de los trabajadores de esta corrida (por defecto System.out). Se configura antes de arrancar. */
+    public void setSalida(PrintStream salida) {
+        this.salida = salida;
+    }
+
+    public PrintStream getSalida() { return salida; }
 
-            int randomIndex = random.nextInt(tempList.size());
-            Pedido pedidoSeleccionado = tempList.remove(randomIndex);
-            pedidosEnTransito.addAll(tempList); // Re-agregar los restantes
+    /**
+     * Archivo donde quedan los pedidos terminados (por defecto, solo en memoria). Se configura
+     * antes de arrancar: lo archivado en el anterior no pasa al nuevo.
+     */
+    public void setArchivo(ArchivoPedidos archivo) {
+        this.archivo = archivo;
+    }
 
-            return pedidoSeleccionado;
-        } finally {
-            transitoLock.unlock();
+    public ArchivoPedidos getArchivo() { return archivo; }
+
+    /**
+     * Generador de las tomas al azar de las etapas con BolsaAleatoria, para corridas
+     * reproducibles con semilla. Solo para un único hilo (ver BolsaAleatoria.setGeneradorAleatorio).
+     */
+    public void setGeneradorAleatorio(Random generador) {
+        for (ColaEtapa<Pedido> cola : colas) {
+            if (cola instanceof BolsaAleatoria) ((BolsaAleatoria<Pedido>) cola).setGeneradorAleatorio(generador);
         }
     }
 
+    /** Diario donde registrar cada ingreso a una etapa y cada final. Se configura antes de arrancar. */
+    public void setDiario(DiarioTransiciones diario) {
+        this.diario = diario;
+    }
+
+    // --- Recuperación (RecuperacionDiario), antes de arrancar los hilos ---
+
+    /** Suma los pedidos generados y terminados antes de la caída. */
+    void restaurarContadores(long preparados, long verificados, long fallidos) {
+        preparadosCount.add(preparados);
+        cupoReservado.addAndGet((int) preparados);
+        verificadosCount.add(verificados);
+        fallidosCount.add(fallidos);
+    }
+
+    /** Publica un pedido recuperado en una etapa o un destino final (ya contado como generado). */
+    void restaurarPedido(Pedido p, int destino) {
+        p.marcarCreacion(reloj.getAsLong());
+        entregar(destino, p);
+    }
+
+    /** @return La capacidad de la etapa, o null si su cola no tiene límite. */
+    public LimiteEtapa getLimite(int etapa) {
+        return etapa < limites.length ? limites[etapa] : null;
+    }
+
     /**
-     * Toma un pedido aleatorio de la cola de entregados.
-     * Reemplaza drainTo con un bucle poll().
-     * @return Un pedido aleatorio, o null si la cola está vacía.
+     * Entrega un pedido a una etapa o a un estado final.
+     * @param destino Índice de etapa, DESTINO_VERIFICADOS o DESTINO_FALLIDOS.
+     */
+    public void entregar(int destino, Pedido p) {
+        if (destino == DESTINO_VERIFICADOS) agregarAVerificados(p);
+        else if (destino == DESTINO_FALLIDOS) agregarAFallidos(p);
+        else agregar(destino, p);
+    }
+
+    /** Variante por lote de entregar. */
+    public void entregarLote(int destino, Collection<Pedido> lote) {
+        if (destino == DESTINO_VERIFICADOS) agregarLoteAVerificados(lote);
+        else if (destino == DESTINO_FALLIDOS) agregarLoteAFallidos(lote);
+        else agregarLote(destino, lote);
+    }
+
+    /**
+     * Toma un pedido de una etapa según su política, sin esperar.
+     * @return Un pedido, o null si la etapa está vacía.
+     */
+    public Pedido tomar(int etapa) {
+        return contarSalida(colas[etapa].tomar(), etapa);
+    }
+
+    /**
+     * Toma un pedido de una etapa según su política, esperando hasta que haya uno.
+     * @return Un pedido, o null si venció el timeout o el registro se cerró.
+     * @throws InterruptedException Si el hilo es interrumpido mientras espera.
+     */
+    public Pedido tomar(int etapa, long timeout, TimeUnit unidad) throws InterruptedException {
+        return contarSalida(colas[etapa].tomar(timeout, unidad), etapa);
+    }
+
+    /**
+     * Toma hasta 'max' pedidos de una etapa y los agrega a 'destino'. Sin timeout no espera;
+     * con timeout espera solo hasta que haya al menos un pedido.
+     * @return La cantidad de pedidos tomados.
+     */
+    public int tomarLote(int etapa, int max, List<Pedido> destino) {
+        return contarSalidas(destino, colas[etapa].tomarLote(max, destino), etapa);
+    }
+    public int tomarLote(int etapa, int max, List<Pedido> destino, long timeout, TimeUnit unidad) throws InterruptedException {
+        return contarSalidas(destino, colas[etapa].tomarLote(max, destino, timeout, unidad), etapa);
+    }
+
+    /** @return true si la cola de la etapa está vacía (lectura sin lock). */
+    public boolean estaVacia(int etapa) {
+        return colas[etapa].estaVacia() && (limites[etapa] == null || limites[etapa].desbordeVacio());
+    }
+
+    // --- Flujo estándar: métodos con nombre (no necesitan lock externo) ---
+    // Los usan los preparadores, el motor por eventos y los benchmarks.
+
+    /** Entrada de un pedido nuevo: marca su creación y lo publica en la primera etapa. */
+    public void agregarAPreparacion(Pedido p) {
+        p.marcarCreacion(reloj.getAsLong());
+        agregar(ETAPA_PREPARACION, p); // Con capacidad, el preparador recibe la presión acá
+    }
+    public void agregarATransito(Pedido p) { agregar(ETAPA_TRANSITO, p); }
+    public void agregarAEntregados(Pedido p) { agregar(ETAPA_ENTREGADOS, p); }
+    public void agregarAFallidos(Pedido p) {
+        archivar(p, EstadoPedido.FALLIDO);
+        fallidosCount.increment();
+    }
+    public void agregarAVerificados(Pedido p) {
+        archivar(p, EstadoPedido.VERIFICADO);
+        verificadosCount.increment();
+    }
+
+    // --- Variantes por LOTE: un lock y una actualización de contadores por lote ---
+    public void agregarLoteAPreparacion(Collection<Pedido> lote) {
+        long ahora = reloj.getAsLong();
+        for (Pedido p : lote) p.marcarCreacion(ahora);
+        agregarLote(ETAPA_PREPARACION, lote);
+    }
+    public void agregarLoteATransito(Collection<Pedido> lote) { agregarLote(ETAPA_TRANSITO, lote); }
+    public void agregarLoteAEntregados(Collection<Pedido> lote) { agregarLote(ETAPA_ENTREGADOS, lote); }
+    public void agregarLoteAFallidos(Collection<Pedido> lote) {
+        if (lote.isEmpty()) return;
+        archivarLote(lote, EstadoPedido.FALLIDO);
+        fallidosCount.add(lote.size());
+    }
+    public void agregarLoteAVerificados(Collection<Pedido> lote) {
+        if (lote.isEmpty()) return;
+        archivarLote(lote, EstadoPedido.VERIFICADO);
+        verificadosCount.add(lote.size());
+    }
+
+    private void marcarIngresoLote(Collection<Pedido> lote, int etapa) {
+        long ahora = reloj.getAsLong();
+        for (Pedido p : lote) marcarIngreso(p, etapa, ahora);
+    }
+
+    private void archivar(Pedido p, EstadoPedido fin) {
+        long ahora = reloj.getAsLong();
+        marcarFinal(p, fin, ahora);
+        archivo.agregar(p, fin, ahora);
+    }
+
+    private void archivarLote(Collection<Pedido> lote, EstadoPedido fin) {
+        long ahora = reloj.getAsLong();
+        for (Pedido p : lote) marcarFinal(p, fin, ahora);
+        archivo.agregarLote(lote, fin, ahora);
+    }
+
+    /** Cuenta la salida de una etapa y registra la espera si la toma devolvió un pedido. */
+    private Pedido contarSalida(Pedido p, int etapa) {
+        if (p != null) {
+            salidas[etapa].increment();
+            if (limites[etapa] != null) limites[etapa].liberar(1, colas[etapa]);
+            marcarToma(p, etapa, reloj.getAsLong());
+            emitirToma(etapa, 1);
+        }
+        return p;
+    }
+
+    // --- Métodos para TOMAR ALEATORIAMENTE ---
+    // Antes vaciaban la cola completa en una lista bajo lock y la volvían a llenar (O(n) por toma);
+    // ahora la BolsaAleatoria elige y quita en O(1) sin bloquear a los productores de otros segmentos.
+
+    /**
+     * Toma un pedido aleatorio de la etapa de preparación.
+     * @return Un pedido aleatorio, o null si la etapa está vacía.
+     */
+    public Pedido tomarDePreparacionAleatorio() {
+        return tomar(ETAPA_PREPARACION);
+    }
+
+    /**
+     * Toma un pedido aleatorio de la etapa de tránsito.
+     * @return Un pedido aleatorio, o null si la etapa está vacía.
+     */
+    public Pedido tomarDeTransitoAleatorio() {
+        return tomar(ETAPA_TRANSITO);
+    }
+
+    /**
+     * Toma un pedido aleatorio de la etapa de entregados.
+     * @return Un pedido aleatorio, o null si la etapa está vacía.
      */
     public Pedido tomarDeEntregadosAleatorio() {
-        entregadosLock.lock();
-        try {
-            List<Pedido> tempList = new ArrayList<>();
-            // *** CORRECCIÓN: Usar bucle poll() en lugar de drainTo ***
-            while (true) {
-                Pedido item = pedidosEntregados.poll();
-                if (item == null) {
-                    break;
-                }
-                tempList.add(item);
-            }
-             // *** FIN CORRECCIÓN ***
+        return tomar(ETAPA_ENTREGADOS);
+    }
+
+    // --- Tomas aleatorias BLOQUEANTES ---
+    // Estacionan al consumidor hasta que se agregue un pedido a la etapa, venza el timeout
+    // o se llame a cerrar(), en lugar de reintentar con Thread.sleep.
+
+    /**
+     * Toma un pedido aleatorio de preparación, esperando hasta que haya uno.
+     * @return Un pedido aleatorio, o null si venció el timeout o el registro se cerró.
+     * @throws InterruptedException Si el hilo es interrumpido mientras espera.
+     */
+    public Pedido tomarDePreparacion(long timeout, TimeUnit unidad) throws InterruptedException {
+        return tomar(ETAPA_PREPARACION, timeout, unidad);
+    }
+
+    /**
+     * Toma un pedido aleatorio de tránsito, esperando hasta que haya uno.
+     * @return Un pedido aleatorio, o null si venció el timeout o el registro se cerró.
+     * @throws InterruptedException Si el hilo es interrumpido mientras espera.
+     */
+    public Pedido tomarDeTransito(long timeout, TimeUnit unidad) throws InterruptedException {
+        return tomar(ETAPA_TRANSITO, timeout, unidad);
+    }
+
+    /**
+     * Toma un pedido aleatorio de entregados, esperando hasta que haya uno.
+     * @return Un pedido aleatorio, o null si venció el timeout o el registro se cerró.
+     * @throws InterruptedException Si el hilo es interrumpido mientras espera.
+     */
+    public Pedido tomarDeEntregados(long timeout, TimeUnit unidad) throws InterruptedException {
+        return tomar(ETAPA_ENTREGADOS, timeout, unidad);
+    }
+
+    // --- Tomas aleatorias por LOTE ---
+    // Cada pedido del lote se elige al azar, igual que en las tomas individuales.
+    // Sin timeout no esperan; con timeout esperan solo hasta que haya al menos un pedido.
+
+    /**
+     * Toma hasta 'max' pedidos aleatorios de preparación y los agrega a 'destino'.
+     * @return La cantidad de pedidos tomados.
+     */
+    public int tomarLoteDePreparacion(int max, List<Pedido> destino) {
+        return tomarLote(ETAPA_PREPARACION, max, destino);
+    }
+    public int tomarLoteDePreparacion(int max, List<Pedido> destino, long timeout, TimeUnit unidad) throws InterruptedException {
+        return tomarLote(ETAPA_PREPARACION, max, destino, timeout, unidad);
+    }
 
+    /**
+     * Toma hasta 'max' pedidos aleatorios de tránsito y los agrega a 'destino'.
+     * @return La cantidad de pedidos tomados.
+     */
+    public int tomarLoteDeTransito(int max, List<Pedido> destino) {
+        return tomarLote(ETAPA_TRANSITO, max, destino);
+    }
+    public int tomarLoteDeTransito(int max, List<Pedido> destino, long timeout, TimeUnit unidad) throws InterruptedException {
+        return tomarLote(ETAPA_TRANSITO, max, destino, timeout, unidad);
+    }
 
-            if (tempList.isEmpty()) {
-                return null;
+    /**
+     * Toma hasta 'max' pedidos aleatorios de entregados y los agrega a 'destino'.
+     * @return La cantidad de pedidos tomados.
+     */
+    public int tomarLoteDeEntregados(int max, List<Pedido> destino) {
+        return tomarLote(ETAPA_ENTREGADOS, max, destino);
+    }
+    public int tomarLoteDeEntregados(int max, List<Pedido> destino, long timeout, TimeUnit unidad) throws InterruptedException {
+        return tomarLote(ETAPA_ENTREGADOS, max, destino, timeout, unidad);
+    }
+
+    /** Los 'cantidad' pedidos tomados quedaron al final de 'destino'. */
+    private int contarSalidas(List<Pedido> destino, int cantidad, int etapa) {
+        if (cantidad > 0) {
+            salidas[etapa].add(cantidad);
+            if (limites[etapa] != null) limites[etapa].liberar(cantidad, colas[etapa]);
+            long ahora = reloj.getAsLong();
+            for (int i = destino.size() - cantidad; i < destino.size(); i++) {
+                marcarToma(destino.get(i), etapa, ahora);
             }
+            emitirToma(etapa, cantidad);
+        }
+        return cantidad;
+    }
 
-            int randomIndex = random.nextInt(tempList.size());
-            Pedido pedidoSeleccionado = tempList.remove(randomIndex);
-            pedidosEntregados.addAll(tempList); // Re-agregar los restantes
+    /** Evento de JFR de la toma; si no está habilitado no suma los contadores. */
+    private void emitirToma(int etapa, int tomados) {
+        EventoTomaRegistro evento = new EventoTomaRegistro();
+        if (!evento.shouldCommit()) return;
+        evento.etapa = nombresEtapa[etapa];
+        evento.tomados = tomados;
+        evento.restantes = getProfundidad(etapa);
+        evento.commit();
+    }
 
-            return pedidoSeleccionado;
-        } finally {
-            entregadosLock.unlock();
+    /**
+     * Señaliza el fin de la simulación: despierta a los consumidores bloqueados.
+     * Las etapas siguen aceptando y entregando pedidos para que puedan vaciarse.
+     */
+    public void cerrar() {
+        for (ColaEtapa<Pedido> cola : colas) cola.cerrar();
+        for (LimiteEtapa limite : limites) {
+            if (limite != null) limite.cerrar();
         }
     }
 
-    // Métodos para obtener contadores
-    public int getCantidadFallidos() { return fallidosCount.get(); }
-    public int getCantidadVerificados() { return verificadosCount.get(); }
-    public int getCantidadEnPreparacion() { return pedidosEnPreparacion.size(); } // O(N)
-    public int getCantidadEnTransito() { return pedidosEnTransito.size(); } // O(N)
-    public int getCantidadEntregados() { return pedidosEntregados.size(); } // O(N)
+    // Métodos para obtener contadores (sin recorrer colas ni tomar locks)
+    public int getCantidadFallidos() { return fallidosCount.intValue(); }
+    public int getCantidadVerificados() { return verificadosCount.intValue(); }
+    public int getCantidadEnPreparacion() { return getProfundidad(ETAPA_PREPARACION); }
+    public int getCantidadEnTransito() { return getProfundidad(ETAPA_TRANSITO); }
+    public int getCantidadEntregados() { return getProfundidad(ETAPA_ENTREGADOS); }
+
+    /**
+     * Pedidos esperando en la cola de una etapa (0 si el flujo no tiene esa etapa).
+     * Las entradas se cuentan antes de publicar el pedido y las salidas después de tomarlo,
+     * así que toda salida visible tiene su entrada ya contada. Leyendo primero las salidas,
+     * el resultado nunca es negativo.
+     */
+    public int getProfundidad(int etapa) {
+        if (etapa >= colas.length) return 0;
+        long sal = salidas[etapa].sum();
+        return (int) (entradas[etapa].sum() - sal);
+    }
 
     // Control de generación
-    public int incrementarPreparados() { return preparadosCount.incrementAndGet(); }
-    public int getCantidadPreparados() { return preparadosCount.get(); }
+    public void incrementarPreparados() { preparadosCount.increment(); }
+    public void incrementarPreparados(int cantidad) { preparadosCount.add(cantidad); }
+    public int getCantidadPreparados() { return preparadosCount.intValue(); }
+
+    /**
+     * Reserva hasta 'cantidad' pedidos del objetivo de generación, atómicamente.
+     * Lo reservado y no preparado debe devolverse con devolverCupo.
+     * @param cantidad Pedidos que se quieren preparar.
+     * @param total Objetivo de pedidos de la corrida.
+     * @return Pedidos reservados, entre 0 (objetivo ya cubierto) y 'cantidad'.
+     */
+    public int reservarCupo(int cantidad, int total) {
+        while (true) {
+            int actual = cupoReservado.get();
+            int otorgado = Math.min(cantidad, total - actual);
+            if (otorgado <= 0) return 0;
+            if (cupoReservado.compareAndSet(actual, actual + otorgado)) return otorgado;
+        }
+    }
+
+    /** Devuelve al objetivo pedidos reservados que no se llegaron a preparar. */
+    public void devolverCupo(int cantidad) {
+        if (cantidad > 0) cupoReservado.addAndGet(-cantidad);
+    }
+
+    /**
+     * Devuelve una foto coherente de todos los contadores.
+     * Como todos los contadores son monótonos, si dos lecturas completas seguidas dan
+     * exactamente los mismos valores, esos valores coexistieron en un mismo instante
+     * (entre ambas lecturas nada cambió). Se reintenta hasta lograrlo o agotar los intentos.
+     * @return La instantánea; esCoherente() indica si se logró la doble lectura igual.
+     */
+    public InstantaneaRegistro getInstantanea() {
+        int largo = 3 + 2 * colas.length;
+        long[] anterior = leerContadores(new long[largo]);
+        long[] actual = new long[largo];
+        boolean coherente = false;
+        for (int i = 0; i < MAX_INTENTOS_INSTANTANEA; i++) {
+            leerContadores(actual);
+            if (Arrays.equals(anterior, actual)) {
+                coherente = true;
+                break;
+            }
+            long[] tmp = anterior;
+            anterior = actual;
+            actual = tmp;
+        }
+        long[] v = coherente ? actual : anterior;
+        int[] profundidades = new int[colas.length];
+        for (int i = 0; i < colas.length; i++) {
+            profundidades[i] = (int) (v[3 + 2 * i] - v[4 + 2 * i]);
+        }
+        return new InstantaneaRegistro((int) v[0], (int) v[1], (int) v[2], profundidades, coherente);
+    }
+
+    private long[] leerContadores(long[] destino) {
+        destino[0] = preparadosCount.sum();
+        destino[1] = verificadosCount.sum();
+        destino[2] = fallidosCount.sum();
+        for (int i = 0; i < colas.length; i++) {
+            // Salidas primero, como en getProfundidad: sin coherencia, la profundidad igual no es negativa
+            destino[4 + 2 * i] = salidas[i].sum();
+            destino[3 + 2 * i] = entradas[i].sum();
+        }
+        return destino;
+    }
+
+    /**
+     * Pedidos que entraron a una etapa desde el inicio (monótono): la tasa de llegada a la etapa.
+     * @param etapa Índice de la etapa (0 si el flujo no la tiene).
+     */
+    public long getTotalEntradas(int etapa) {
+        if (etapa < 0) throw new IllegalArgumentException("Etapa inválida: " + etapa);
+        return etapa < colas.length ? entradas[etapa].sum() : 0;
+    }
+
+    /**
+     * Pedidos que salieron de una etapa desde el inicio (monótono), para calcular tasas por etapa.
+     * @param etapa Índice de la etapa (0 si el flujo no la tiene).
+     */
+    public long getTotalSalidas(int etapa) {
+        if (etapa < 0) throw new IllegalArgumentException("Etapa inválida: " + etapa);
+        return etapa < colas.length ? salidas[etapa].sum() : 0;
+    }
+
+    public ActividadTrabajadores getActividad() { return actividad; }
+
+    // --- Lectura de latencias (aproximada mientras la simulación corre) ---
+    public HistogramaLatencia getHistogramaEspera(int etapa) { return esperaEtapa[etapa]; }
+    public HistogramaLatencia getHistogramaServicio(int etapa) { return servicioEtapa[etapa]; }
+    public HistogramaLatencia getHistogramaExtremoAExtremo() { return extremoAExtremo; }
+
+    /** Una línea por histograma: extremo a extremo y espera/servicio de cada etapa. */
+    public String getResumenLatencias() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Latencia extremo a extremo: ").append(extremoAExtremo.resumen());
+        for (int i = 0; i < nombresEtapa.length; i++) {
+            sb.append(System.lineSeparator()).append("Espera en ").append(nombresEtapa[i]).append(": ").append(esperaEtapa[i].resumen());
+            sb.append(System.lineSeparator()).append("Servicio de ").append(nombresEtapa[i]).append(": ").append(servicioEtapa[i].resumen());
+        }
+        return sb.toString();
+    }
 
      // Verifica si todas las colas de procesamiento están vacías
     public boolean todasLasColasProcesamientoVacias() {
-        // isEmpty() es preferible a size() == 0 para rendimiento O(1)
-        return pedidosEnPreparacion.isEmpty() &&
-               pedidosEnTransito.isEmpty() &&
-               pedidosEntregados.isEmpty();
+        for (int i = 0; i < colas.length; i++) {
+            if (!estaVacia(i)) return false;
+        }
+        return true;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,59 @@
+// ResultadoSimulacion.java
+
+/**
+ * Lo que deja una corrida de Simulacion: la foto final del registro y las medidas que se
+ * comparan entre configuraciones (throughput, tasa de fallo, uso de casilleros y latencia).
+ */
+public final class ResultadoSimulacion {
+    private final ConfiguracionSimulacion configuracion;
+    private final InstantaneaRegistro foto;
+    private final long duracionMs;
+    private final boolean sinCasilleros;
+    private final double utilizacionCasilleros;
+    private final int casillerosFueraDeServicio;
+    private final int totalCasilleros;
+    private final long latenciaP50Nanos;
+    private final long latenciaP99Nanos;
+
+    ResultadoSimulacion(ConfiguracionSimulacion configuracion, InstantaneaRegistro foto, long duracionMs,
+                        boolean sinCasilleros, double utilizacionCasilleros, int casillerosFueraDeServicio,
+                        int totalCasilleros, long latenciaP50Nanos, long latenciaP99Nanos) {
+        this.configuracion = configuracion;
+        this.foto = foto;
+        this.duracionMs = duracionMs;
+        this.sinCasilleros = sinCasilleros;
+        this.utilizacionCasilleros = utilizacionCasilleros;
+        this.casillerosFueraDeServicio = casillerosFueraDeServicio;
+        this.totalCasilleros = totalCasilleros;
+        this.latenciaP50Nanos = latenciaP50Nanos;
+        this.latenciaP99Nanos = latenciaP99Nanos;
+    }
+
+    public ConfiguracionSimulacion getConfiguracion() { return configuracion; }
+    public InstantaneaRegistro getFoto() { return foto; }
+    public long getDuracionMs() { return duracionMs; }
+    public boolean isSinCasilleros() { return sinCasilleros; }
+    public int getCasillerosFueraDeServicio() { return casillerosFueraDeServicio; }
+    public int getTotalCasilleros() { return totalCasilleros; }
+    public long getLatenciaP50Nanos() { return latenciaP50Nanos; }
+    public long getLatenciaP99Nanos() { return latenciaP99Nanos; }
+
+    /** Pedidos finalizados (verificados o fallidos) por segundo de corrida. */
+    public double getThroughput() {
+        return duracionMs > 0 ? foto.getFinalizados() * 1000.0 / duracionMs : 0;
+    }
+
+    /** Fracción de los pedidos finalizados que fallaron. */
+    public double getTasaFallo() {
+        int finalizados = foto.getFinalizados();
+        return finalizados > 0 ? (double) foto.getFallidos() / finalizados : 0;
+    }
+
+    /** Fracción media de casilleros ocupados durante la corrida (muestreada). */
+    public double getUtilizacionCasilleros() { return utilizacionCasilleros; }
+
+    /** true si generados = finalizados + restantes. */
+    public boolean isBalanceCorrecto() {
+        return foto.getGenerados() == foto.getFinalizados() + foto.getRestantes();
+    }
+}
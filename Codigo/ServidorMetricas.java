@@ -0,0 +1,200 @@
+// ServidorMetricas.java
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Endpoint HTTP opcional (/metrics) con el estado de la simulación en formato de texto de Prometheus.
+ * Usa solo el HttpServer del JDK y escucha en loopback.
+ *
+ * Cada scrape lee contadores que ya se mantienen sin locks: la instantánea del registro (LongAdder),
+ * los contadores volatile de las franjas de la matriz, los histogramas de latencia y la actividad
+ * de cada trabajador. No toma matrizLock ni recorre colas ni casilleros, así que se puede
+ * consultar cada segundo sin frenar a los trabajadores.
+ */
+public class ServidorMetricas {
+    private static final double[] CUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final RegistroPedidos registro;
+    private final MatrizCasilleros matriz;
+    private HttpServer servidor;
+    private ExecutorService executor;
+
+    public ServidorMetricas(RegistroPedidos registro, MatrizCasilleros matriz) {
+        this.registro = registro;
+        this.matriz = matriz;
+    }
+
+    /**
+     * Empieza a atender en http://127.0.0.1:puerto/metrics.
+     * @param puerto Puerto TCP; 0 elige uno libre (ver getPuerto).
+     * @throws IOException Si no se puede abrir el puerto.
+     */
+    public void iniciar(int puerto) throws IOException {
+        servidor = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), puerto), 0);
+        servidor.createContext("/metrics", this::atender);
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "servidor-metricas");
+            t.setDaemon(true);
+            return t;
+        });
+        servidor.setExecutor(executor);
+        servidor.start();
+    }
+
+    public int getPuerto() {
+        return servidor.getAddress().getPort();
+    }
+
+    public void detener() {
+        if (servidor == null) return;
+        servidor.stop(0);
+        executor.shutdownNow();
+        servidor = null;
+    }
+
+    private void atender(HttpExchange intercambio) throws IOException {
+        try {
+            if (!"GET".equals(intercambio.getRequestMethod())) {
+                intercambio.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] cuerpo = generarTexto().getBytes(StandardCharsets.UTF_8);
+            intercambio.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            intercambio.sendResponseHeaders(200, cuerpo.length);
+            try (OutputStream os = intercambio.getResponseBody()) {
+                os.write(cuerpo);
+            }
+        } finally {
+            intercambio.close();
+        }
+    }
+
+    /** Arma el texto de un scrape. */
+    String generarTexto() {
+        StringBuilder sb = new StringBuilder(4096);
+        InstantaneaRegistro foto = registro.getInstantanea();
+
+        // --- Pedidos ---
+        metrica(sb, "simulacion_pedidos_generados_total", "counter", "Pedidos generados por los preparadores.");
+        valor(sb, "simulacion_pedidos_generados_total", null, foto.getGenerados());
+        metrica(sb, "simulacion_pedidos_finalizados_total", "counter", "Pedidos que llegaron a un estado final.");
+        valor(sb, "simulacion_pedidos_finalizados_total", "resultado=\"verificado\"", foto.getVerificados());
+        valor(sb, "simulacion_pedidos_finalizados_total", "resultado=\"fallido\"", foto.getFallidos());
+        metrica(sb, "simulacion_pedidos_en_proceso", "gauge", "Pedidos tomados por un trabajador y aún no entregados a la etapa siguiente.");
+        valor(sb, "simulacion_pedidos_en_proceso", null, foto.getEnProceso());
+
+        // --- Etapas ---
+        int etapas = registro.getCantidadEtapas();
+        metrica(sb, "simulacion_etapa_profundidad", "gauge", "Pedidos esperando en cada etapa.");
+        for (int i = 0; i < etapas; i++) {
+            valor(sb, "simulacion_etapa_profundidad", etapa(i), foto.getProfundidad(i));
+        }
+        metrica(sb, "simulacion_etapa_salidas_total", "counter", "Pedidos tomados de cada etapa por un trabajador.");
+        for (int i = 0; i < etapas; i++) {
+            valor(sb, "simulacion_etapa_salidas_total", etapa(i), registro.getTotalSalidas(i));
+        }
+        metrica(sb, "simulacion_etapa_llena_segundos_total", "counter", "Tiempo que cada etapa con capacidad acotada estuvo llena.");
+        for (int i = 0; i < etapas; i++) {
+            LimiteEtapa limite = registro.getLimite(i);
+            if (limite != null) valor(sb, "simulacion_etapa_llena_segundos_total", etapa(i), limite.getNanosLlena() / 1e9);
+        }
+        metrica(sb, "simulacion_etapa_productores_bloqueados_segundos_total", "counter", "Tiempo que los productores esperaron lugar en cada etapa (sumado entre productores).");
+        for (int i = 0; i < etapas; i++) {
+            LimiteEtapa limite = registro.getLimite(i);
+            if (limite != null) valor(sb, "simulacion_etapa_productores_bloqueados_segundos_total", etapa(i), limite.getNanosBloqueado() / 1e9);
+        }
+        metrica(sb, "simulacion_etapa_desbordes_total", "counter", "Pedidos que no entraron en la etapa llena.");
+        for (int i = 0; i < etapas; i++) {
+            LimiteEtapa limite = registro.getLimite(i);
+            if (limite == null) continue;
+            valor(sb, "simulacion_etapa_desbordes_total", etapa(i) + ",destino=\"fallidos\"", limite.getRechazados());
+            valor(sb, "simulacion_etapa_desbordes_total", etapa(i) + ",destino=\"derrame\"", limite.getDerramados());
+        }
+
+        // --- Casilleros (contadores de las franjas, sin recorrer la matriz) ---
+        metrica(sb, "simulacion_casilleros", "gauge", "Casilleros por estado.");
+        valor(sb, "simulacion_casilleros", "estado=\"vacio\"", matriz.getCantidadLibres());
+        valor(sb, "simulacion_casilleros", "estado=\"ocupado\"", matriz.getCantidadOcupados());
+        valor(sb, "simulacion_casilleros", "estado=\"fuera_de_servicio\"", matriz.getCantidadFueraDeServicio());
+        metrica(sb, "simulacion_casilleros_total", "gauge", "Casilleros de la matriz.");
+        valor(sb, "simulacion_casilleros_total", null, matriz.getTotalCasilleros());
+
+        // --- Latencias ---
+        metrica(sb, "simulacion_latencia_extremo_a_extremo_segundos", "summary", "Desde que el pedido entra a preparación hasta un estado final.");
+        resumen(sb, "simulacion_latencia_extremo_a_extremo_segundos", null, registro.getHistogramaExtremoAExtremo());
+        metrica(sb, "simulacion_latencia_espera_segundos", "summary", "Espera de un pedido en cada etapa hasta que lo toma un trabajador.");
+        for (int i = 0; i < etapas; i++) {
+            resumen(sb, "simulacion_latencia_espera_segundos", etapa(i), registro.getHistogramaEspera(i));
+        }
+        metrica(sb, "simulacion_latencia_servicio_segundos", "summary", "Desde la toma hasta la entrega a la etapa siguiente.");
+        for (int i = 0; i < etapas; i++) {
+            resumen(sb, "simulacion_latencia_servicio_segundos", etapa(i), registro.getHistogramaServicio(i));
+        }
+
+        // --- Trabajadores ---
+        metrica(sb, "simulacion_trabajador_procesados_total", "counter", "Pedidos procesados por cada trabajador.");
+        for (ActividadTrabajador a : registro.getActividad().getTrabajadores()) {
+            valor(sb, "simulacion_trabajador_procesados_total", trabajador(a), a.getProcesados());
+        }
+        metrica(sb, "simulacion_trabajador_ocupado_segundos_total", "counter", "Tiempo que cada trabajador pasó procesando (incluida su demora).");
+        for (ActividadTrabajador a : registro.getActividad().getTrabajadores()) {
+            valor(sb, "simulacion_trabajador_ocupado_segundos_total", trabajador(a), a.getNanosOcupado() / 1e9);
+        }
+        metrica(sb, "simulacion_trabajador_estado", "gauge", "Estado actual: 0 esperando, 1 trabajando, 2 terminado.");
+        for (ActividadTrabajador a : registro.getActividad().getTrabajadores()) {
+            valor(sb, "simulacion_trabajador_estado", trabajador(a), a.getEstado());
+        }
+        return sb.toString();
+    }
+
+    private String etapa(int i) {
+        return "etapa=\"" + registro.etiqueta(i) + "\"";
+    }
+
+    private static String trabajador(ActividadTrabajador a) {
+        return "trabajador=\"" + escapar(a.getNombre()) + "\",rol=\"" + escapar(a.getRol()) + "\"";
+    }
+
+    private static String escapar(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static void metrica(StringBuilder sb, String nombre, String tipo, String ayuda) {
+        sb.append("# HELP ").append(nombre).append(' ').append(ayuda).append('\n');
+        sb.append("# TYPE ").append(nombre).append(' ').append(tipo).append('\n');
+    }
+
+    private static void valor(StringBuilder sb, String nombre, String etiquetas, long v) {
+        linea(sb, nombre, etiquetas).append(v).append('\n');
+    }
+
+    private static void valor(StringBuilder sb, String nombre, String etiquetas, double v) {
+        linea(sb, nombre, etiquetas).append(String.format(Locale.ROOT, "%.6f", v)).append('\n');
+    }
+
+    private static StringBuilder linea(StringBuilder sb, String nombre, String etiquetas) {
+        sb.append(nombre);
+        if (etiquetas != null) sb.append('{').append(etiquetas).append('}');
+        return sb.append(' ');
+    }
+
+    /** Summary de Prometheus: cuantiles en segundos más _sum y _count. */
+    private static void resumen(StringBuilder sb, String nombre, String etiquetas, HistogramaLatencia h) {
+        long[] p = h.percentiles(CUANTILES);
+        String prefijo = etiquetas == null ? "" : etiquetas + ",";
+        for (int i = 0; i < CUANTILES.length; i++) {
+            valor(sb, nombre, prefijo + "quantile=\"" + CUANTILES[i] + "\"", p[i] / 1e9);
+        }
+        valor(sb, nombre + "_sum", etiquetas, h.getSuma() / 1e9);
+        valor(sb, nombre + "_count", etiquetas, h.getCantidad());
+    }
+}
@@ -0,0 +1,215 @@
+// Simulacion.java
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Una corrida completa de la simulación con su propia matriz, registro, logger y hilos, a
+ * partir de una ConfiguracionSimulacion. Antes era el cuerpo de Main.main con las constantes;
+ * al ser instanciable se pueden correr varias a la vez (ver BarridoParametros).
+ *
+ * Lo que sigue siendo global entre corridas del mismo proceso: los IDs de Pedido (únicos en
+ * todo el proceso) y las estadísticas de FabricaLocks, que se acumulan por nombre de lock.
+ */
+public class Simulacion {
+    private final ConfiguracionSimulacion config;
+
+    /**
+     * @param config Configuración de la corrida; no debe modificarse mientras corre.
+     */
+    public Simulacion(ConfiguracionSimulacion config) {
+        this.config = config;
+    }
+
+    /**
+     * Corre la simulación hasta procesar todos los pedidos (o quedarse sin casilleros) y
+     * escribe el informe final en el log de la configuración.
+     * @return El resultado, con la foto final del registro.
+     */
+    public ResultadoSimulacion ejecutar() {
+        PrintStream salida = config.getSalida(); // Consola de esta corrida
+        salida.println("Iniciando simulación logística...");
+        long startTime = System.nanoTime();
+
+        // 1. Crear Recursos Compartidos
+        // Asegúrate de que MatrizCasilleros maneje la NoAvailableLockersException
+        // En modo ZONAS, una zona por preparador: cada uno ocupa de la suya sin competir
+        MatrizCasilleros matriz = new MatrizCasilleros(config.getFilas(), config.getColumnas(), config.getModoConcurrencia(),
+                TipoAlmacenamiento.OBJETOS, config.getPreparadores(), salida);
+        AtomicBoolean running = new AtomicBoolean(true);
+        RegistroPedidos registro = new RegistroPedidos(System::nanoTime, config.flujo());
+        registro.setSalida(salida); // Los trabajadores anuncian inicio y fin en la consola de la corrida
+        if (config.getArchivoPedidos() != null) {
+            registro.setArchivo(new ArchivoPedidos(Path.of(config.getArchivoPedidos()), ArchivoPedidos.BLOQUES_EN_MEMORIA));
+        }
+        // Asegúrate de que LoggerSistema tenga el método logFinal modificado
+        LoggerSistema logger = new LoggerSistema(registro, config.getArchivoLog());
+
+        // 2. Iniciar Logger Periódico
+        logger.iniciarLogPeriodico(config.getIntervaloLogMs());
+        logger.logMensaje(matriz.getHuellaMemoria());
+        // Antes de crear los hilos: si la corrida anterior murió, se sigue desde su diario
+        DiarioTransiciones diario = config.getArchivoDiario() != null ? abrirDiario(matriz, registro, logger) : null;
+        MotorEtapas motor = new MotorEtapas(registro, matriz, running);
+        logger.logMensaje(motor.describir());
+        ExportadorMetricas metricas = null;
+        if (config.getArchivoMetricas() != null) {
+            metricas = new ExportadorMetricas(new RecolectorMetricas(registro, matriz, config.getConstanteEwmaSeg()),
+                    config.getArchivoMetricas(), config.getFormatoMetricas());
+            metricas.iniciar(config.getIntervaloMetricasMs());
+        }
+        ServidorMetricas servidorMetricas = null;
+        if (config.getPuertoMetricas() >= 0) {
+            servidorMetricas = new ServidorMetricas(registro, matriz);
+            try {
+                servidorMetricas.iniciar(config.getPuertoMetricas());
+                logger.logMensaje("Métricas Prometheus en http://127.0.0.1:" + servidorMetricas.getPuerto() + "/metrics");
+            } catch (IOException e) {
+                System.err.println("No se pudo iniciar el servidor de métricas: " + e.getMessage());
+                servidorMetricas = null;
+            }
+        }
+
+        // 3. Crear y Ejecutar Hilos usando ExecutorService
+        // *** NUEVO FLAG: Indica si la detención fue causada por falta de casilleros ***
+        AtomicBoolean stoppedDueToNoLockers = new AtomicBoolean(false);
+        // Usamos un ExecutorService para gestionar los hilos
+        ExecutorService executor = config.getModoHilos().crearExecutor("trabajador-");
+
+        // Lanzar Hilos Preparadores
+        // *** Pasar el nuevo flag al constructor de PreparadorPedido ***
+        for (int i = 0; i < config.getPreparadores(); i++) {
+            executor.submit(new PreparadorPedido(registro, matriz, config.getDemoraPreparador(), config.getVariacionDemora(),
+                    config.getTotalPedidos(), running, stoppedDueToNoLockers, config.getTamanoLote()));
+        }
+        // Lanzar los trabajadores de las etapas (despacho, entrega y verificación)
+        motor.iniciar(executor);
+        RebalanceadorEtapas rebalanceador = null;
+        if (config.getIntervaloRebalanceoMs() > 0) {
+            rebalanceador = new RebalanceadorEtapas(motor, logger);
+            rebalanceador.iniciar(config.getIntervaloRebalanceoMs());
+        }
+
+        // 4. Lógica de Espera y Detención
+        // Esperar mientras la simulación esté 'running' (no detenida por falta de casilleros o interrupción)
+        // Y (no se hayan generado todos los pedidos O aún queden pedidos en las colas intermedias)
+        // *** Condición del bucle modificada para incluir running.get() ***
+        // En cada vuelta se muestrea la ocupación de casilleros para el resultado
+        long muestras = 0;
+        double sumaOcupacion = 0;
+        while (running.get() && (registro.getCantidadPreparados() < config.getTotalPedidos() || !registro.todasLasColasProcesamientoVacias())) {
+            try {
+                 // Comprobación periódica para no consumir CPU excesivamente
+                Thread.sleep(100); // Aumentado ligeramente el sleep para reducir carga
+                sumaOcupacion += (double) matriz.getCantidadOcupados() / matriz.getTotalCasilleros();
+                muestras++;
+                // Opcional: Añadir un tiempo máximo de espera para evitar bloqueos infinitos
+                /*
+                 System.out.printf("Estado: Run=%s, Prep=%d/%d, PrepQ=%d, TranQ=%d, EntrQ=%d, Fall=%d, Verif=%d%n",
+                      running.get(), registro.getCantidadPreparados(), config.getTotalPedidos(),
+                      registro.getCantidadEnPreparacion(), registro.getCantidadEnTransito(), registro.getCantidadEntregados(),
+                      registro.getCantidadFallidos(), registro.getCantidadVerificados());
+                */
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                System.err.println("Hilo principal interrumpido durante espera.");
+                running.set(false); // Señalizar detención si el main se interrumpe
+                break; // Salir del bucle de espera
+            }
+        }
+
+        // 5. Señalizar a los hilos que deben detenerse (si no lo hizo ya el Preparador)
+        // Determinar por qué salimos del bucle while
+        if (stoppedDueToNoLockers.get()) {
+             salida.println("Detención señalizada debido a la falta de casilleros disponibles.");
+             // 'running' ya fue puesto a false por el PreparadorPedido
+        } else if (!running.get()) {
+             // 'running' fue puesto a false por otra razón (ej: interrupción del main)
+             salida.println("Detención señalizada por interrupción u otra causa externa.");
+        } else {
+            // El bucle terminó porque se cumplió la condición de finalización normal
+             salida.println("Objetivo de pedidos alcanzado o colas intermedias vacías. Señalizando detención normal...");
+             running.set(false); // Asegura que todos los hilos que dependen de 'running' terminen
+        }
+
+        // Despertar a los hilos estacionados en las etapas o esperando casillero,
+        // para que noten la detención sin esperar a que venza su timeout
+        registro.cerrar();
+        matriz.cerrar();
+
+        // 6. Detener el ExecutorService y esperar finalización de tareas en curso
+        salida.println("Iniciando apagado del ExecutorService...");
+        executor.shutdown(); // No acepta nuevas tareas, permite finalizar las actuales
+        try {
+            // Esperar un tiempo prudencial para que los hilos terminen limpiamente
+            if (!executor.awaitTermination(60, TimeUnit.SECONDS)) { // Espera hasta 1 minuto
+                System.err.println("Los hilos no terminaron en el tiempo esperado (60s), forzando detención...");
+                executor.shutdownNow(); // Intenta interrumpir los hilos en ejecución
+                 if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                     System.err.println("ExecutorService no pudo ser terminado forzosamente.");
+                 }
+            } else {
+                salida.println("Todos los hilos han terminado correctamente.");
+            }
+        } catch (InterruptedException e) {
+            System.err.println("Interrumpido mientras se esperaba la finalización de los hilos.");
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        // 7. Finalizar y Reportar
+        long endTime = System.nanoTime();
+        long durationMs = TimeUnit.NANOSECONDS.toMillis(endTime - startTime);
+
+        salida.println("Simulación completada.");
+        if (rebalanceador != null) rebalanceador.detener(); // Deja en el log los activos finales
+        if (metricas != null) metricas.detener(); // Escribe la última captura y cierra el archivo de métricas
+        if (servidorMetricas != null) servidorMetricas.detener();
+        if (diario != null) {
+            diario.detener(); // Lo marca cerrado limpio: la próxima corrida no recupera
+            logger.logMensaje(diario.resumen());
+        }
+        try {
+            registro.getArchivo().close(); // Con desborde, el archivo queda completo en disco
+        } catch (IOException e) {
+            System.err.println("No se pudo cerrar el archivo de pedidos: " + e.getMessage());
+        }
+        logger.detenerLogPeriodico(); // Detener el log periódico antes del log final
+        // *** Pasar el flag 'stoppedDueToNoLockers' al método logFinal ***
+        logger.logFinal(matriz, durationMs, stoppedDueToNoLockers.get());
+
+
+        HistogramaLatencia latencia = registro.getHistogramaExtremoAExtremo();
+        return new ResultadoSimulacion(config, registro.getInstantanea(), durationMs, stoppedDueToNoLockers.get(),
+                muestras > 0 ? sumaOcupacion / muestras : 0, matriz.getCantidadFueraDeServicio(),
+                matriz.getTotalCasilleros(), latencia.percentil(0.50), latencia.percentil(0.99));
+    }
+
+    /**
+     * Si el diario de la configuración quedó abierto (la corrida anterior no terminó),
+     * reconstruye matriz y colas desde él; después conecta el diario para esta corrida, que
+     * sigue agregando al mismo archivo o empieza uno nuevo.
+     */
+    private DiarioTransiciones abrirDiario(MatrizCasilleros matriz, RegistroPedidos registro, LoggerSistema logger) {
+        Path archivo = Path.of(config.getArchivoDiario());
+        RecuperacionDiario recuperacion = null;
+        try {
+            recuperacion = RecuperacionDiario.leer(archivo, config.getFilas(), config.getColumnas());
+        } catch (IOException e) {
+            System.err.println("No se pudo leer el diario " + archivo + ": " + e.getMessage());
+        }
+        DiarioTransiciones diario = new DiarioTransiciones(archivo, config.getFilas(), config.getColumnas());
+        diario.iniciar(config.getIntervaloDiarioMs(), recuperacion != null ? recuperacion.getFin() : 0);
+        registro.setDiario(diario);
+        matriz.setDiario(diario);
+        if (recuperacion != null) {
+            recuperacion.aplicar(matriz, registro);
+            config.getSalida().println(recuperacion.resumen());
+            logger.logMensaje(recuperacion.resumen());
+        }
+        return diario;
+    }
+}
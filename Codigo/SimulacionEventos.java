@@ -0,0 +1,300 @@
+// SimulacionEventos.java
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Motor alternativo de simulación por eventos discretos, con reloj simulado.
+ * Usa los mismos MatrizCasilleros, RegistroPedidos, Pedido y el mismo flujo de etapas
+ * (List de DefinicionEtapa) que el motor con hilos, pero en lugar de dormir cada trabajador
+ * agenda el momento en que vuelve a quedar libre; el reloj salta de evento en evento, así
+ * que millones de pedidos se simulan en segundos.
+ *
+ * Cada trabajador de etapa se comporta como TrabajadorEtapa: toma de la cola de su etapa,
+ * decide el resultado con la probabilidad de la etapa, resuelve el casillero si la etapa lo
+ * indica, entrega el pedido a registro.destinoExito o destinoFallo y queda ocupado durante
+ * una demora de la DistribucionDemora de la etapa. Los preparadores ocupan un casillero y
+ * publican en la primera etapa, de a un pedido. Si no hay trabajo (o no hay casillero libre,
+ * para los preparadores) el trabajador queda ocioso hasta que llegue, en lugar de sondear.
+ * Todo corre en un solo hilo, así que las transiciones de Pedido nunca compiten; por lo mismo
+ * no se admiten etapas con capacidad y política BLOQUEAR (el único hilo se bloquearía a sí
+ * mismo), ni se usan los límites de rebalanceo: cada etapa tiene getTrabajadores() trabajadores.
+ */
+public class SimulacionEventos {
+    static final String ARCHIVO_LOG = "simulacion_eventos.log";
+
+    // Etapa de los preparadores, que no toman de ninguna cola
+    private static final int PREPARADOR = -1;
+
+    private static final class Trabajador {
+        final int etapa; // Índice en registro.getEtapas(), o PREPARADOR
+        final DistribucionDemora demora;
+
+        Trabajador(int etapa, DistribucionDemora demora) {
+            this.etapa = etapa;
+            this.demora = demora;
+        }
+    }
+
+    /** El trabajador queda libre en 'tiempoMs' y vuelve a buscar trabajo. */
+    private static final class Evento implements Comparable<Evento> {
+        final long tiempoMs;
+        final long secuencia; // Desempate FIFO entre eventos del mismo instante
+        final Trabajador trabajador;
+
+        Evento(long tiempoMs, long secuencia, Trabajador trabajador) {
+            this.tiempoMs = tiempoMs;
+            this.secuencia = secuencia;
+            this.trabajador = trabajador;
+        }
+
+        @Override
+        public int compareTo(Evento otro) {
+            if (tiempoMs != otro.tiempoMs) return Long.compare(tiempoMs, otro.tiempoMs);
+            return Long.compare(secuencia, otro.secuencia);
+        }
+    }
+
+    private final MatrizCasilleros matriz;
+    private final RegistroPedidos registro;
+    private final List<DefinicionEtapa> etapas;
+    private final int totalPedidos;
+    private final Random random;
+    // Destinos de cada etapa, resueltos una vez (como en TrabajadorEtapa)
+    private final int[] destinoExito;
+    private final int[] destinoFallo;
+    private final List<Pedido> lote = new ArrayList<>();
+    private final List<Pedido> aExito = new ArrayList<>();
+    private final List<Pedido> aFallo = new ArrayList<>();
+
+    private final PriorityQueue<Evento> agenda = new PriorityQueue<>();
+    private final List<ArrayDeque<Trabajador>> ociosos = new ArrayList<>(); // Preparadores y uno por etapa
+    private long relojMs = 0;
+    private long secuencia = 0;
+    private long eventosProcesados = 0;
+    private boolean sinCasilleros = false;
+
+    /**
+     * Crea la simulación con su propio RegistroPedidos para el flujo dado, que toma las marcas
+     * de tiempo de los pedidos del reloj simulado (así las latencias quedan en tiempo simulado).
+     * El mismo generador con semilla decide los resultados, las demoras y las elecciones al azar
+     * de la matriz y de las etapas, así que con la misma semilla (y una matriz nueva) la corrida
+     * es reproducible.
+     * @param etapas Flujo de etapas (por ejemplo, ConfiguracionSimulacion.flujo()).
+     * @param preparadores Cantidad de preparadores.
+     * @param demoraPreparador Demora de cada preparación.
+     * @param semilla Semilla del generador aleatorio.
+     * @throws IllegalArgumentException Si una etapa tiene capacidad con política BLOQUEAR.
+     */
+    public SimulacionEventos(MatrizCasilleros matriz, List<DefinicionEtapa> etapas, int totalPedidos,
+                             int preparadores, DistribucionDemora demoraPreparador, long semilla) {
+        for (DefinicionEtapa e : etapas) {
+            if (e.getCapacidad() > 0 && e.getDesborde() == PoliticaDesborde.BLOQUEAR) {
+                throw new IllegalArgumentException("La etapa " + e.getNombre()
+                        + " tiene capacidad con BLOQUEAR: en un solo hilo no hay quien libere lugar.");
+            }
+        }
+        this.matriz = matriz;
+        this.registro = new RegistroPedidos(() -> relojMs * 1_000_000L, etapas);
+        this.etapas = registro.getEtapas();
+        this.totalPedidos = totalPedidos;
+        this.random = new Random(semilla);
+        matriz.setGeneradorAleatorio(random);
+        registro.setGeneradorAleatorio(random);
+        // Un pedido rechazado por una etapa llena va a fallidos: su casillero queda libre
+        registro.setAlRechazar(this::liberarRechazado);
+
+        int n = this.etapas.size();
+        this.destinoExito = new int[n];
+        this.destinoFallo = new int[n];
+        ociosos.add(new ArrayDeque<>()); // Preparadores
+        for (int i = 0; i < n; i++) {
+            destinoExito[i] = registro.destinoExito(i);
+            destinoFallo[i] = registro.destinoFallo(i);
+            ociosos.add(new ArrayDeque<>());
+        }
+        agregarTrabajadores(PREPARADOR, preparadores, demoraPreparador);
+        for (int i = 0; i < n; i++) {
+            DefinicionEtapa e = this.etapas.get(i);
+            agregarTrabajadores(i, e.getTrabajadores(), e.getDemora());
+        }
+    }
+
+    /** Agrega 'cantidad' trabajadores de una etapa, todos libres en el instante 0. */
+    private void agregarTrabajadores(int etapa, int cantidad, DistribucionDemora demora) {
+        for (int i = 0; i < cantidad; i++) {
+            programar(new Trabajador(etapa, demora), 0);
+        }
+    }
+
+    /**
+     * Procesa eventos hasta que no quede ninguno: todos los trabajadores ociosos o terminados.
+     * @return El tiempo simulado final en milisegundos.
+     */
+    public long ejecutar() {
+        Evento evento;
+        while ((evento = agenda.poll()) != null) {
+            relojMs = evento.tiempoMs;
+            eventosProcesados++;
+            atender(evento.trabajador);
+        }
+        return relojMs;
+    }
+
+    private void atender(Trabajador t) {
+        if (t.etapa == PREPARADOR) {
+            preparar(t);
+        } else {
+            procesarEtapa(t);
+        }
+    }
+
+    private void preparar(Trabajador t) {
+        // Objetivo alcanzado o sin casilleros: el preparador termina y no se vuelve a agendar
+        if (sinCasilleros || registro.getCantidadPreparados() >= totalPedidos) return;
+
+        int casilleroId;
+        try {
+            casilleroId = matriz.ocuparCasilleroAleatorio();
+        } catch (NoHayCasilleros e) {
+            System.err.println("[t=" + relojMs + " ms simulados] " + e.getMessage());
+            sinCasilleros = true;
+            return;
+        }
+        if (casilleroId == -1) { esperar(t); return; } // Todos ocupados: esperar a que se libere uno
+
+        Pedido nuevoPedido = new Pedido();
+        nuevoPedido.asignarCasillero(casilleroId);
+        registro.incrementarPreparados();
+        registro.agregarAPreparacion(nuevoPedido);
+        despertar(RegistroPedidos.ETAPA_PREPARACION, 1);
+        programar(t, relojMs + t.demora.muestrearMs(random));
+    }
+
+    /**
+     * Toma hasta tamanoLote pedidos de la etapa, decide cada uno por separado y los entrega
+     * con una operación por destino; el trabajador queda ocupado la suma de las demoras.
+     */
+    private void procesarEtapa(Trabajador t) {
+        int etapa = t.etapa;
+        lote.clear();
+        int cantidad = registro.tomarLote(etapa, etapas.get(etapa).getTamanoLote(), lote);
+        if (cantidad == 0) { esperar(t); return; }
+
+        for (Pedido pedido : lote) {
+            (procesar(etapa, pedido) ? aExito : aFallo).add(pedido);
+        }
+        entregar(destinoExito[etapa], aExito);
+        entregar(destinoFallo[etapa], aFallo);
+
+        long demora = 0;
+        for (int i = 0; i < cantidad; i++) demora += t.demora.muestrearMs(random);
+        programar(t, relojMs + demora);
+    }
+
+    /**
+     * Decide el resultado del pedido y resuelve su casillero si la etapa lo indica, en el
+     * mismo orden que TrabajadorEtapa: primero el pedido suelta la referencia y después la
+     * matriz cambia el casillero.
+     * @return true si la etapa tuvo éxito.
+     */
+    private boolean procesar(int etapa, Pedido pedido) {
+        DefinicionEtapa definicion = etapas.get(etapa);
+        int casilleroId = pedido.getCasilleroIdAsignado();
+        if (definicion.isLiberaCasillero() && casilleroId < 0) {
+            System.err.println("[t=" + relojMs + " ms simulados] Pedido " + pedido.getId() + " sin casillero asignado en " + definicion.getNombre() + "!");
+            return false;
+        }
+        boolean exito = random.nextDouble() < definicion.getProbExito();
+        if (definicion.isLiberaCasillero()) {
+            pedido.liberarCasillero();
+            // Éxito: el casillero vuelve a estar libre. Fallo: queda fuera de servicio.
+            if (exito) {
+                matriz.liberarCasillero(casilleroId);
+            } else {
+                matriz.ponerFueraDeServicio(casilleroId);
+            }
+            // En ambos casos cambia la disponibilidad: un casillero libre o uno menos en servicio
+            despertar(PREPARADOR, 1);
+        }
+        return exito;
+    }
+
+    /** Entrega los pedidos y, si el destino es una etapa, despierta a un ocioso por pedido. */
+    private void entregar(int destino, List<Pedido> pedidos) {
+        if (pedidos.isEmpty()) return;
+        registro.entregarLote(destino, pedidos);
+        if (destino >= 0) despertar(destino, pedidos.size());
+        pedidos.clear();
+    }
+
+    /** RECHAZAR: el pedido fue a fallidos sin pasar por la etapa; si tenía casillero, se libera. */
+    private void liberarRechazado(Pedido pedido) {
+        int casilleroId = pedido.getCasilleroIdAsignado();
+        if (casilleroId < 0) return;
+        pedido.liberarCasillero();
+        matriz.liberarCasillero(casilleroId);
+        despertar(PREPARADOR, 1);
+    }
+
+    private void programar(Trabajador t, long tiempoMs) {
+        agenda.add(new Evento(tiempoMs, secuencia++, t));
+    }
+
+    private void esperar(Trabajador t) {
+        ociosos.get(t.etapa + 1).add(t);
+    }
+
+    /** Despierta hasta 'cantidad' trabajadores ociosos de la etapa (o preparadores) en el instante actual. */
+    private void despertar(int etapa, int cantidad) {
+        ArrayDeque<Trabajador> cola = ociosos.get(etapa + 1);
+        for (int i = 0; i < cantidad; i++) {
+            Trabajador t = cola.poll();
+            if (t == null) return;
+            programar(t, relojMs);
+        }
+    }
+
+    public RegistroPedidos getRegistro() { return registro; }
+    public boolean isSinCasilleros() { return sinCasilleros; }
+    public long getEventosProcesados() { return eventosProcesados; }
+
+    /**
+     * Corre la simulación por eventos con la configuración de Main (el flujo de
+     * ConfiguracionSimulacion.flujo()).
+     * Uso: java SimulacionEventos [totalPedidos=Main.TOTAL_PEDIDOS_A_PROCESAR] [semilla=aleatoria] [filas] [columnas]
+     * Cada despacho fallido deja un casillero fuera de servicio para siempre, así que para
+     * millones de pedidos hace falta una matriz proporcional (p. ej. 400x400 para 10^6 con 0.85).
+     */
+    public static void main(String[] args) {
+        int totalPedidos = args.length > 0 ? Integer.parseInt(args[0]) : Main.TOTAL_PEDIDOS_A_PROCESAR;
+        long semilla = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+        int filas = args.length > 2 ? Integer.parseInt(args[2]) : Main.NUM_FILAS_CASILLEROS;
+        int columnas = args.length > 3 ? Integer.parseInt(args[3]) : Main.NUM_COLS_CASILLEROS;
+        System.out.println("Iniciando simulación por eventos (" + totalPedidos + " pedidos, semilla " + semilla + ")...");
+        long inicio = System.nanoTime();
+
+        ConfiguracionSimulacion config = new ConfiguracionSimulacion();
+        MatrizCasilleros matriz = new MatrizCasilleros(filas, columnas);
+        SimulacionEventos sim = new SimulacionEventos(matriz, config.flujo(), totalPedidos, config.getPreparadores(),
+                DistribucionDemora.uniforme(config.getDemoraPreparador(), config.getVariacionDemora()), semilla);
+        RegistroPedidos registro = sim.getRegistro();
+        LoggerSistema logger = new LoggerSistema(registro, ARCHIVO_LOG);
+        logger.abrirArchivo();
+        logger.logMensaje("Simulación por eventos: " + totalPedidos + " pedidos, semilla " + semilla
+                + ". El tiempo del informe final es tiempo simulado.");
+
+        long tiempoSimuladoMs = sim.ejecutar();
+        long realMs = (System.nanoTime() - inicio) / 1_000_000;
+
+        System.out.println("Simulación por eventos completada.");
+        logger.logMensaje(String.format("Tiempo real: %d ms | Eventos procesados: %d", realMs, sim.getEventosProcesados()));
+        logger.logFinal(matriz, tiempoSimuladoMs, sim.isSinCasilleros());
+        System.out.println("Log guardado en: " + ARCHIVO_LOG);
+
+        Main.imprimirResumenConsola(registro.getInstantanea(), tiempoSimuladoMs, sim.isSinCasilleros());
+        System.out.printf("(Tiempo simulado. Tiempo real: %.3f segundos, %d eventos)%n", realMs / 1000.0, sim.getEventosProcesados());
+    }
+}
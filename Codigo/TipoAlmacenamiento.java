@@ -0,0 +1,14 @@
+// TipoAlmacenamiento.java
+/**
+ * Forma en que MatrizCasilleros guarda el estado de cada casillero.
+ */
+public enum TipoAlmacenamiento {
+    /** Un objeto Casillero por celda en un Casillero[][] (representación original). */
+    OBJETOS,
+    /**
+     * Estado y contador de uso empaquetados en un AtomicIntegerArray indexado por ID lineal
+     * (4 bytes por casillero). El índice de libres de la matriz suma 8 bytes más por casillero
+     * en ambos modos; getHuellaMemoria lo informa por separado.
+     */
+    COMPACTO
+}
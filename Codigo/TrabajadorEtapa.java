@@ -0,0 +1,167 @@
+// TrabajadorEtapa.java
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Trabajador genérico de una etapa del flujo: toma un pedido de la cola de su etapa (según su
+ * política), decide éxito o fallo con la probabilidad de la etapa, resuelve el casillero si la
+ * etapa lo indica, lo entrega al destino que corresponde y duerme una demora de la distribución
+ * de la etapa. Reemplaza a los antiguos DespachadorPedido, EntregadorPedido y VerificadorPedido,
+ * que eran este mismo bucle con la cola y los destinos fijos.
+ */
+public class TrabajadorEtapa implements Runnable {
+    // Máximo tiempo estacionado esperando un pedido antes de volver a mirar 'running'
+    private static final long ESPERA_MAX_MS = 100;
+
+    private final RegistroPedidos registro;
+    private final MatrizCasilleros matriz;
+    private final int etapa;
+    private final DefinicionEtapa definicion;
+    private final String nombreCola;
+    private final int destinoExito;
+    private final int destinoFallo;
+    private final Random random = new Random();
+    private final AtomicBoolean running;
+    private final ActividadTrabajador actividad; // Para las métricas por trabajador
+    // Rebalanceo: solo toma pedidos si 'numero' < activos de la etapa (null = siempre activo)
+    private final CapacidadEtapa capacidad;
+    private final int numero;
+    // Modo por lotes: hasta 'tamanoLote' pedidos por interacción con el registro (1 = de a uno)
+    private final int tamanoLote;
+    private final List<Pedido> lote;
+    private final List<Pedido> aExito;
+    private final List<Pedido> aFallo;
+
+    /**
+     * @param reg Registro cuyo flujo incluye la etapa.
+     * @param mat Matriz de casilleros (solo se usa si la etapa libera casilleros).
+     * @param etapa Índice de la etapa en reg.getEtapas().
+     * @param running Se pone en false para que el trabajador termine al vaciar su cola.
+     */
+    public TrabajadorEtapa(RegistroPedidos reg, MatrizCasilleros mat, int etapa, AtomicBoolean running) {
+        this(reg, mat, etapa, running, null, 0);
+    }
+
+    /**
+     * @param capacidad Capacidad de la etapa que ajusta RebalanceadorEtapas (null = siempre activo).
+     * @param numero Número del trabajador dentro de su etapa (0, 1, 2...).
+     */
+    public TrabajadorEtapa(RegistroPedidos reg, MatrizCasilleros mat, int etapa, AtomicBoolean running,
+                           CapacidadEtapa capacidad, int numero) {
+        this.capacidad = capacidad;
+        this.numero = numero;
+        this.registro = reg;
+        this.matriz = mat;
+        this.etapa = etapa;
+        this.definicion = reg.getEtapas().get(etapa);
+        if (definicion.isLiberaCasillero() && mat == null) {
+            throw new IllegalArgumentException("La etapa " + definicion.getNombre() + " libera casilleros y no tiene matriz.");
+        }
+        this.nombreCola = reg.getNombreEtapa(etapa);
+        this.destinoExito = reg.destinoExito(etapa);
+        this.destinoFallo = reg.destinoFallo(etapa);
+        this.running = running;
+        this.actividad = reg.getActividad().nuevo(definicion.getNombre());
+        this.tamanoLote = definicion.getTamanoLote();
+        this.lote = new ArrayList<>(tamanoLote);
+        this.aExito = new ArrayList<>(tamanoLote);
+        this.aFallo = new ArrayList<>(tamanoLote);
+    }
+
+    @Override
+    public void run() {
+        registro.getSalida().println(Thread.currentThread().getName() + " iniciado (" + definicion.getNombre() + ").");
+        actividad.iniciar(Thread.currentThread().getName());
+        try {
+            // Continuar mientras esté corriendo o haya pedidos por procesar en la cola de la etapa
+            while (running.get() || !registro.estaVacia(etapa)) {
+                // Estacionado mientras el rebalanceo le dé la capacidad a otra etapa
+                if (capacidad != null && !capacidad.esperarActivacion(numero, ESPERA_MAX_MS, TimeUnit.MILLISECONDS)) {
+                    continue;
+                }
+                if (tamanoLote > 1) {
+                    procesarLote();
+                    continue;
+                }
+                Pedido pedido = registro.tomar(etapa, ESPERA_MAX_MS, TimeUnit.MILLISECONDS);
+                if (pedido == null) continue;
+
+                actividad.inicioTrabajo();
+                // Sin lock: la toma lo dejó en TOMADO y este hilo es su único dueño hasta entregarlo
+                registro.entregar(procesar(pedido) ? destinoExito : destinoFallo, pedido);
+                dormir(1);
+                actividad.finTrabajo(1);
+                // Si !running.get() y la cola está vacía, el bucle terminará
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            registro.getSalida().println(Thread.currentThread().getName() + " interrumpido.");
+        }
+        actividad.terminar();
+        registro.getSalida().println(Thread.currentThread().getName() + " terminado.");
+    }
+
+    /**
+     * Toma hasta 'tamanoLote' pedidos de una vez, decide éxito o fallo de cada uno por separado
+     * y los entrega con una operación por destino. Duerme la suma de las demoras.
+     */
+    private void procesarLote() throws InterruptedException {
+        lote.clear();
+        int cantidad = registro.tomarLote(etapa, tamanoLote, lote, ESPERA_MAX_MS, TimeUnit.MILLISECONDS);
+        if (cantidad == 0) return;
+        actividad.inicioTrabajo();
+
+        for (Pedido pedido : lote) {
+            (procesar(pedido) ? aExito : aFallo).add(pedido);
+        }
+        registro.entregarLote(destinoExito, aExito);
+        registro.entregarLote(destinoFallo, aFallo);
+        aExito.clear();
+        aFallo.clear();
+        dormir(cantidad);
+        actividad.finTrabajo(cantidad);
+    }
+
+    /**
+     * Decide el resultado del pedido (del que este hilo es dueño), resuelve el casillero si la
+     * etapa lo indica y emite el evento de JFR antes de que se entregue.
+     * @return true si la etapa tuvo éxito.
+     */
+    private boolean procesar(Pedido pedido) {
+        int casilleroId = pedido.getCasilleroIdAsignado();
+        if (definicion.isLiberaCasillero() && casilleroId < 0) {
+            System.err.println(Thread.currentThread().getName() + " encontró Pedido " + pedido.getId() + " sin casillero asignado en " + definicion.getNombre() + "!");
+            EventoTransicionPedido.emitir(EventoTransicionPedido.FALLIDO, pedido, -1, nombreCola);
+            return false;
+        }
+        boolean exito = random.nextDouble() < definicion.getProbExito();
+        if (definicion.isLiberaCasillero()) {
+            // Primero el pedido suelta la referencia y recién después la matriz cambia el
+            // casillero: cuando otro preparador puede ocuparlo, ningún pedido lo tiene asignado.
+            // El cambio de etapa (entregar) viene después, así que quien tome el pedido en la
+            // etapa siguiente ya lo ve sin casillero.
+            pedido.liberarCasillero();
+            // Éxito: el casillero vuelve a estar libre. Fallo: queda fuera de servicio.
+            if (exito) {
+                matriz.liberarCasillero(casilleroId);
+            } else {
+                matriz.ponerFueraDeServicio(casilleroId);
+            }
+        }
+        EventoTransicionPedido.emitir(exito ? definicion.getTransicion() : EventoTransicionPedido.FALLIDO,
+                pedido, casilleroId, nombreCola);
+        return exito;
+    }
+
+    /** Duerme la suma de 'cantidad' demoras de la distribución de la etapa (una por pedido). */
+    private void dormir(int cantidad) throws InterruptedException {
+        long total = 0;
+        for (int i = 0; i < cantidad; i++) {
+            total += definicion.getDemora().muestrearMs(random);
+        }
+        Thread.sleep(total);
+    }
+}